@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# Startup-time benchmark: context refresh time of the app jar with and without AOT / AppCDS.
+#
+#   mvn -Pcds package && scripts/startup-benchmark.sh [runs]
+#
+# Every run starts the JVM with -Dspring.context.exit=onRefresh (exits once the context is refreshed, so no
+# Elasticsearch is needed) and measures the wall-clock time of the whole process. Prints the median per variant.
+set -euo pipefail
+
+RUNS="${1:-10}"
+TARGET="$(cd "$(dirname "$0")/../target" && pwd)"
+JAR="$(ls "$TARGET"/spring-learning-*.jar | grep -v original | head -1)"
+ARCHIVE="$TARGET/app-cds.jsa"
+
+median_ms() {
+    local name="$1"; shift
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        local start end
+        start=$(date +%s%N)
+        java "$@" -Dspring.context.exit=onRefresh -jar "$JAR" > /dev/null 2>&1
+        end=$(date +%s%N)
+        times+=($(( (end - start) / 1000000 )))
+    done
+    local sorted
+    sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    printf '%-12s median %5d ms  (min %d, max %d, %d runs)\n' "$name" \
+        "${sorted[$(( RUNS / 2 ))]}" "${sorted[0]}" "${sorted[$(( RUNS - 1 ))]}" "$RUNS"
+}
+
+median_ms "plain"
+median_ms "aot" -Dspring.aot.enabled=true
+if [[ -f "$ARCHIVE" ]]; then
+    median_ms "cds" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto
+    median_ms "aot+cds" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -Dspring.aot.enabled=true
+else
+    echo "No $ARCHIVE - build it with: mvn -Pcds package"
+fi
@@ -1,15 +1,26 @@
 package com.spring.elasticsearch.learning;
 
+import com.spring.elasticsearch.learning.configuration.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
+@ImportRuntimeHints(NativeHints.class)
 public class ElasticSearchLearningApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(ElasticSearchLearningApplication.class, args);
+		SpringApplication application = new SpringApplication(ElasticSearchLearningApplication.class);
+		// Records the startup steps (bean creation, refresh phases) - StartupTimingLogger logs the slowest ones ....
+		if (Boolean.getBoolean("orders.startup.record-steps")) {
+			application.setApplicationStartup(new BufferingApplicationStartup(10_000));
+		}
+		application.run(args);
 	}
 
 }
@@ -0,0 +1,60 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.RequestDeadline;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.UUID;
+
+/**
+ * Starts the RequestDeadline of a request: the endpoint's @LatencyBudget (or the default budget), lowered by the
+ * X-Request-Budget-Ms header if the caller sent one. The request id (X-Opaque-Id) is echoed back in the response.
+ */
+public class DeadlineInterceptor implements HandlerInterceptor {
+
+    private final long defaultBudgetMillis;
+
+    public DeadlineInterceptor(long defaultBudgetMillis) {
+        this.defaultBudgetMillis = defaultBudgetMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async re-dispatch of the same request: keep the deadline that is already running ....
+        if (request.getAttribute(RequestDeadline.ATTRIBUTE) != null) {
+            return true;
+        }
+
+        long budget = defaultBudgetMillis;
+        if (handler instanceof HandlerMethod handlerMethod) {
+            LatencyBudget latencyBudget = handlerMethod.getMethodAnnotation(LatencyBudget.class);
+            if (latencyBudget != null) {
+                budget = latencyBudget.millis();
+            }
+        }
+        String requested = request.getHeader("X-Request-Budget-Ms");
+        if (requested != null) {
+            try {
+                long requestedBudget = Long.parseLong(requested.trim());
+                if (requestedBudget > 0 && (budget <= 0 || requestedBudget < budget)) {
+                    budget = requestedBudget;
+                }
+            } catch (NumberFormatException ignored) {
+                // Invalid header: keep the endpoint budget ....
+            }
+        }
+        if (budget <= 0) {
+            return true;
+        }
+
+        String opaqueId = request.getHeader("X-Opaque-Id");
+        if (opaqueId == null || opaqueId.isBlank()) {
+            opaqueId = UUID.randomUUID().toString();
+        }
+        request.setAttribute(RequestDeadline.ATTRIBUTE, new RequestDeadline(budget, opaqueId));
+        response.setHeader("X-Opaque-Id", opaqueId);
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.RequestDeadline;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds "X-Timed-Out: true" to responses built from partial Elasticsearch results (the search hit its "timeout").
+ * The body has the usual shape, the header tells the caller it may be incomplete.
+ */
+@ControllerAdvice
+public class DeadlineResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && servletRequest.getServletRequest().getAttribute(RequestDeadline.ATTRIBUTE) instanceof RequestDeadline deadline
+                && deadline.isTimedOut()) {
+            response.getHeaders().set("X-Timed-Out", "true");
+        }
+        return body;
+    }
+}
@@ -0,0 +1,199 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Connection settings of the Elasticsearch clients (orders.elasticsearch.*).
+ *
+ * Bound at startup from application.yml, and again by ElasticsearchClientReloader whenever the reload file
+ * changes - so everything here (nodes, credentials, truststore, pool sizes, timeouts) can be retuned without
+ * a restart.
+ */
+@ConfigurationProperties(prefix = "orders.elasticsearch")
+public class ElasticsearchClientProperties {
+
+    // e.g. https://es-1:9200 - requests are spread over all nodes ....
+    private List<String> hosts = new ArrayList<>(List.of("https://localhost:9200"));
+
+    private String username;
+
+    private String password;
+
+    private final Truststore truststore = new Truststore();
+
+    // false only for local dev certificates that don't match the host name ....
+    private boolean verifyHostname = true;
+
+    private int connectTimeoutMs = 1000;
+
+    private int socketTimeoutMs = 30000;
+
+    // Max wait for a pooled connection, -1 = no limit ....
+    private int connectionRequestTimeoutMs = -1;
+
+    // Connection pool size per client (bulkhead): search, analytics, ingest ....
+    private Map<String, Integer> maxConnections = new LinkedHashMap<>(Map.of("search", 30, "analytics", 10, "ingest", 10));
+
+    // 0 = one I/O dispatcher thread per core (client default) ....
+    private int ioThreads = 0;
+
+    private final Reload reload = new Reload();
+
+    public static class Truststore {
+
+        // Empty = JVM default trust store ....
+        private String path;
+
+        private String password;
+
+        private String type = "PKCS12";
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+    }
+
+    public static class Reload {
+
+        // YAML file with orders.elasticsearch.* overrides, watched for changes. Empty = no hot reload ....
+        private String file;
+
+        private long pollIntervalMs = 5000;
+
+        // How long in-flight requests may keep the replaced client open before it is closed anyway ....
+        private long drainTimeoutMs = 30000;
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public long getPollIntervalMs() {
+            return pollIntervalMs;
+        }
+
+        public void setPollIntervalMs(long pollIntervalMs) {
+            this.pollIntervalMs = pollIntervalMs;
+        }
+
+        public long getDrainTimeoutMs() {
+            return drainTimeoutMs;
+        }
+
+        public void setDrainTimeoutMs(long drainTimeoutMs) {
+            this.drainTimeoutMs = drainTimeoutMs;
+        }
+    }
+
+    public int maxConnections(String client) {
+        return maxConnections.getOrDefault(client, 10);
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(List<String> hosts) {
+        this.hosts = hosts;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Truststore getTruststore() {
+        return truststore;
+    }
+
+    public boolean isVerifyHostname() {
+        return verifyHostname;
+    }
+
+    public void setVerifyHostname(boolean verifyHostname) {
+        this.verifyHostname = verifyHostname;
+    }
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public int getSocketTimeoutMs() {
+        return socketTimeoutMs;
+    }
+
+    public void setSocketTimeoutMs(int socketTimeoutMs) {
+        this.socketTimeoutMs = socketTimeoutMs;
+    }
+
+    public int getConnectionRequestTimeoutMs() {
+        return connectionRequestTimeoutMs;
+    }
+
+    public void setConnectionRequestTimeoutMs(int connectionRequestTimeoutMs) {
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+    }
+
+    public Map<String, Integer> getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Map<String, Integer> maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public Reload getReload() {
+        return reload;
+    }
+}
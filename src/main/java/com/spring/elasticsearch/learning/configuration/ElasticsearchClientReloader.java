@@ -0,0 +1,122 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.models.ElasticsearchClientStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ✅ Hot reload of the Elasticsearch connection settings.
+ *
+ * orders.elasticsearch.reload.file points to a YAML file with orders.elasticsearch.* overrides, e.g.
+ *
+ *   orders:
+ *     elasticsearch:
+ *       max-connections:
+ *         analytics: 20
+ *       socket-timeout-ms: 15000
+ *
+ * The file is polled (modification time) every reload.poll-interval-ms. On a change the settings are bound again
+ * (file first, then application.yml / env / system properties), every client is rebuilt and swapped in behind the
+ * ElasticsearchOperations the services use, and the previous clients are drained (ElasticsearchTransports).
+ * POST /orders/elasticsearch/reload does the same on demand.
+ *
+ * 🔑 Remember: a file that can't be read or bound, or a client that can't be built, is logged and leaves the
+ * current clients in place.
+ */
+@Component
+public class ElasticsearchClientReloader {
+
+    private static final Logger logger = LogManager.getLogger(ElasticsearchClientReloader.class);
+
+    @Autowired
+    private ElasticsearchTransports transports;
+
+    @Autowired
+    private ElasticsearchClientProperties properties;
+
+    @Autowired
+    private ConfigurableEnvironment environment;
+
+    private long lastModified = -1;
+    private long reloads;
+    private Instant lastReloadAt;
+    private String lastReloadError;
+
+    @Scheduled(fixedDelayString = "${orders.elasticsearch.reload.poll-interval-ms:5000}")
+    public synchronized void pollReloadFile() {
+        Path file = reloadFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            // A file already present at startup is applied by the first poll (right after the context refreshed) ....
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+            lastModified = modified;
+        } catch (IOException e) {
+            logger.warn("Could not check {}: {}", file, e.getMessage());
+            return;
+        }
+        reload();
+    }
+
+    public synchronized ElasticsearchClientStatus reload() {
+        try {
+            ElasticsearchClientProperties newProperties = bind(reloadFile());
+            transports.reload(newProperties);
+            reloads++;
+            lastReloadError = null;
+            logger.info("Elasticsearch clients reloaded: hosts {}, max connections {}",
+                    newProperties.getHosts(), newProperties.getMaxConnections());
+        } catch (IOException | RuntimeException e) {
+            lastReloadError = e.getMessage();
+            logger.error("Elasticsearch client reload failed, keeping the current clients", e);
+        }
+        lastReloadAt = Instant.now();
+        return getStatus();
+    }
+
+    public synchronized ElasticsearchClientStatus getStatus() {
+        ElasticsearchClientProperties current = transports.currentProperties();
+        return new ElasticsearchClientStatus(current.getHosts(), current.getMaxConnections(), current.getConnectTimeoutMs(),
+                current.getSocketTimeoutMs(), current.getConnectionRequestTimeoutMs(), properties.getReload().getFile(),
+                reloads, lastReloadAt, lastReloadError);
+    }
+
+    private ElasticsearchClientProperties bind(Path file) throws IOException {
+        List<ConfigurationPropertySource> sources = new ArrayList<>();
+        if (file != null && Files.exists(file)) {
+            List<PropertySource<?>> fileSources = new YamlPropertySourceLoader().load("elasticsearch-reload", new FileSystemResource(file));
+            ConfigurationPropertySources.from(fileSources).forEach(sources::add);
+        }
+        ConfigurationPropertySources.get(environment).forEach(sources::add);
+
+        return new Binder(sources)
+                .bind("orders.elasticsearch", ElasticsearchClientProperties.class)
+                .orElseGet(ElasticsearchClientProperties::new);
+    }
+
+    private Path reloadFile() {
+        String file = properties.getReload().getFile();
+        return file == null || file.isBlank() ? null : Path.of(file);
+    }
+}
@@ -2,66 +2,59 @@ package com.spring.elasticsearch.learning.configuration;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.transport.ElasticsearchTransport;
-import co.elastic.clients.transport.rest_client.RestClientTransport;
-import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.spring.elasticsearch.learning.service.ElasticsearchResilience;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponseInterceptor;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestClientBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
 
-import javax.net.ssl.SSLContext;
-import java.io.FileInputStream;
-import java.security.KeyStore;
-
 @Configuration
+@EnableConfigurationProperties(ElasticsearchClientProperties.class)
 public class ElasticsearchConfig {
 
+    /**
+     * Interactive search (term lookups, pagination) - also used by the repositories.
+     *
+     * ✅ Bulkheads: search, analytics and ingest each get their own RestClient (own connection pool) and their own
+     * template, so a burst of dashboard aggregations can't take the connections customer lookups need.
+     * 🔑 Remember: connection settings come from orders.elasticsearch.* (ElasticsearchClientProperties). The clients
+     * are created on their first request and can be rebuilt live (ElasticsearchTransports / ElasticsearchClientReloader),
+     * so nothing here loads the truststore or connects while the context starts.
+     */
     @Bean
-    public ElasticsearchTemplate elasticsearchTemplate() throws Exception {
-
-        // 1. Load PKCS12 truststore
-        KeyStore truststore = KeyStore.getInstance("PKCS12");
-        try (FileInputStream fis = new FileInputStream("/Users/rahulsoni/elasticsearch-9.1.3/elastic-ca/ca/elastic-truststore.p12")) {
-            truststore.load(fis, "mypassword".toCharArray());
-        }
-
-        // 2. Build SSLContext with truststore
-        SSLContext sslContext = SSLContexts.custom()
-                .loadTrustMaterial(truststore, null)
-                .build();
-
-        // 3. Setup basic auth
-        BasicCredentialsProvider creds = new BasicCredentialsProvider();
-        creds.setCredentials(AuthScope.ANY,
-                new UsernamePasswordCredentials("elastic", "PEk9XgEl8Pwp-hijYzMU"));
+    @Primary
+    public ElasticsearchTemplate elasticsearchTemplate(ElasticsearchTransports transports, ElasticsearchResilience resilience) {
+        return resilientTemplate(transports.transport("search"), resilience);
+    }
 
-        // 4. Build RestClient
-        RestClientBuilder builder = RestClient.builder(
-                        new org.apache.http.HttpHost("localhost", 9200, "https"))
-                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
-                        .setSSLContext(sslContext)
-                        .setDefaultCredentialsProvider(creds)
-                        .setSSLHostnameVerifier((hostname, session) -> true)); // 👈 disables hostname verification for local dev
+    /**
+     * Heavy dashboard aggregations.
+     */
+    @Bean
+    public ElasticsearchTemplate analyticsElasticsearchTemplate(ElasticsearchTransports transports, ElasticsearchResilience resilience) {
+        return resilientTemplate(transports.transport("analytics"), resilience);
+    }
 
-        RestClient restClient = builder.build();
+    /**
+     * Writes: bulk indexing, status updates, bulk load sessions.
+     */
+    @Bean
+    public ElasticsearchTemplate ingestElasticsearchTemplate(ElasticsearchTransports transports, ElasticsearchResilience resilience) {
+        return resilientTemplate(transports.transport("ingest"), resilience);
+    }
 
-        // 5. Build transport & ElasticsearchTemplate
-        // Build transport
-        ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+    private ElasticsearchTemplate resilientTemplate(ElasticsearchTransport transport, ElasticsearchResilience resilience) {
 
 // Wrap transport into ElasticsearchClient
         ElasticsearchClient client = new ElasticsearchClient(transport);
 
-// Pass client to ElasticsearchTemplate
-        return new ElasticsearchTemplate(client);
+// Pass client to ElasticsearchTemplate (every call goes through the resilience layer: limits, shedding, 429 retries)
+        return new ResilientElasticsearchTemplate(client, resilience);
 
     }
 
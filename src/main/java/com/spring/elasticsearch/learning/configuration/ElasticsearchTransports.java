@@ -0,0 +1,174 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.spring.elasticsearch.learning.service.SlowQueryLog;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.ssl.SSLContexts;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Owns the transport of each Elasticsearch client (search, analytics, ingest) and builds them from
+ * ElasticsearchClientProperties.
+ *
+ * The templates in ElasticsearchConfig are created once and never change; what changes on a reload is the
+ * transport behind them (SwappableElasticsearchTransport), so services keep their injected ElasticsearchOperations.
+ *
+ * 🔑 Remember: these are deliberately not ElasticsearchTransport beans - Spring Boot's client auto-configuration
+ * would pick them up (and fail on three candidates).
+ */
+@Component
+public class ElasticsearchTransports {
+
+    @Autowired
+    private ElasticsearchClientProperties initialProperties;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    private final JacksonJsonpMapper jsonpMapper = new JacksonJsonpMapper();
+
+    private final Map<String, SwappableElasticsearchTransport> transports = new ConcurrentHashMap<>();
+
+    private volatile ElasticsearchClientProperties properties;
+
+    public synchronized SwappableElasticsearchTransport transport(String client) {
+        return transports.computeIfAbsent(client, name ->
+                new SwappableElasticsearchTransport(name, jsonpMapper, factory(currentProperties(), name)));
+    }
+
+    public ElasticsearchClientProperties currentProperties() {
+        ElasticsearchClientProperties current = properties;
+        return current != null ? current : initialProperties;
+    }
+
+    /**
+     * ✅ Rebuilds every transport from the new settings and swaps them in - all or nothing: every client is built
+     * first, and if one of them can't be (unreachable truststore, bad host) the ones already built are closed and
+     * nothing is swapped, so the three clients never run on different settings.
+     */
+    public synchronized void reload(ElasticsearchClientProperties newProperties) {
+        Map<SwappableElasticsearchTransport, ElasticsearchTransport> built = new LinkedHashMap<>();
+        try {
+            for (SwappableElasticsearchTransport transport : transports.values()) {
+                built.put(transport, factory(newProperties, transport.getName()).get());
+            }
+        } catch (RuntimeException e) {
+            built.values().forEach(ElasticsearchTransports::closeQuietly);
+            throw e;
+        }
+
+        built.forEach((transport, replacement) -> transport.swap(factory(newProperties, transport.getName()),
+                replacement, newProperties.getReload().getDrainTimeoutMs()));
+        properties = newProperties;
+    }
+
+    private static void closeQuietly(ElasticsearchTransport transport) {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            // nothing was sent through it ....
+        }
+    }
+
+    private Supplier<ElasticsearchTransport> factory(ElasticsearchClientProperties settings, String client) {
+        return () -> {
+            try {
+                ElasticsearchTransport transport = new ProfilingTransport(client,
+                        new RestClientTransport(restClient(settings, settings.maxConnections(client)), jsonpMapper));
+                return slowQueryLog.isEnabled() ? new QueryObservingTransport(client, transport, slowQueryLog) : transport;
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create the " + client + " Elasticsearch client", e);
+            }
+        };
+    }
+
+    private RestClient restClient(ElasticsearchClientProperties settings, int maxConnections) throws Exception {
+
+        // 1. + 2. SSLContext from the configured truststore (or the JVM default trust store)
+        SSLContext sslContext = sslContext(settings.getTruststore());
+
+        // 3. Setup basic auth
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        if (settings.getUsername() != null && !settings.getUsername().isBlank()) {
+            creds.setCredentials(AuthScope.ANY,
+                    new UsernamePasswordCredentials(settings.getUsername(), settings.getPassword()));
+        }
+
+        // 4. Build RestClient (the pool is shared by all nodes of this client)
+        HttpHost[] hosts = settings.getHosts().stream().map(HttpHost::create).toArray(HttpHost[]::new);
+        RestClientBuilder builder = RestClient.builder(hosts)
+                .setRequestConfigCallback(requestConfig -> requestConfig
+                        .setConnectTimeout(settings.getConnectTimeoutMs())
+                        .setSocketTimeout(settings.getSocketTimeoutMs())
+                        .setConnectionRequestTimeout(settings.getConnectionRequestTimeoutMs()))
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    httpClientBuilder
+                            .setSSLContext(sslContext)
+                            .setDefaultCredentialsProvider(creds)
+                            .setMaxConnTotal(maxConnections)
+                            .setMaxConnPerRoute(maxConnections);
+                    if (settings.getIoThreads() > 0) {
+                        httpClientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                .setIoThreadCount(settings.getIoThreads())
+                                .build());
+                    }
+                    if (slowQueryLog.isEnabled()) {
+                        // Response size for the slow-query log, without serializing the typed response again ....
+                        httpClientBuilder.addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                            HttpRequest request = HttpCoreContext.adapt(context).getRequest();
+                            Header callId = request == null ? null : request.getFirstHeader(SlowQueryLog.CALL_ID_HEADER);
+                            if (callId != null) {
+                                slowQueryLog.recordResponseBytes(callId.getValue(),
+                                        response.getEntity() == null ? 0 : response.getEntity().getContentLength());
+                            }
+                        });
+                    }
+                    if (!settings.isVerifyHostname()) {
+                        httpClientBuilder.setSSLHostnameVerifier((hostname, session) -> true); // 👈 local dev only
+                    }
+                    return httpClientBuilder;
+                });
+
+        return builder.build();
+    }
+
+    private static SSLContext sslContext(ElasticsearchClientProperties.Truststore truststoreSettings) throws Exception {
+        if (truststoreSettings.getPath() == null || truststoreSettings.getPath().isBlank()) {
+            return SSLContexts.createDefault();
+        }
+
+        // 1. Load truststore
+        KeyStore truststore = KeyStore.getInstance(truststoreSettings.getType());
+        char[] password = truststoreSettings.getPassword() == null ? null : truststoreSettings.getPassword().toCharArray();
+        try (FileInputStream fis = new FileInputStream(truststoreSettings.getPath())) {
+            truststore.load(fis, password);
+        }
+
+        // 2. Build SSLContext with truststore
+        return SSLContexts.custom()
+                .loadTrustMaterial(truststore, null)
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.server.ResponseStatusException;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Bounded pool used to fan out per-customer queries of the batch endpoints.
+     * corePoolSize == maxPoolSize caps the number of concurrent requests we send to Elasticsearch,
+     * the queue absorbs the rest of a batch and anything beyond it is rejected (reported as a failure).
+     * The batch request itself runs on the search bulkhead; its request context (deadline, profiling, ...) is
+     * handed on to the per-customer queries like for any bulkhead task.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchQueryExecutor(@Value("${orders.batch.concurrency:8}") int concurrency,
+                                                     @Value("${orders.batch.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("batch-query-");
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Bulkheads for request handling: interactive search, analytics aggregations and ingest each run on their own
+     * bounded pool. When a pool and its queue are full the request is rejected (503) instead of waiting behind
+     * another traffic class.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor searchRequestExecutor(@Value("${orders.bulkhead.search.threads:32}") int threads,
+                                                        @Value("${orders.bulkhead.search.queue-capacity:200}") int queueCapacity) {
+        return bulkheadExecutor("search-", threads, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor analyticsRequestExecutor(@Value("${orders.bulkhead.analytics.threads:8}") int threads,
+                                                           @Value("${orders.bulkhead.analytics.queue-capacity:50}") int queueCapacity) {
+        return bulkheadExecutor("analytics-", threads, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor ingestRequestExecutor(@Value("${orders.bulkhead.ingest.threads:16}") int threads,
+                                                        @Value("${orders.bulkhead.ingest.queue-capacity:500}") int queueCapacity) {
+        return bulkheadExecutor("ingest-", threads, queueCapacity);
+    }
+
+    /**
+     * Spring MVC async executor: writes the StreamingResponseBody endpoints (and any other async handler output).
+     * Without it MVC falls back to SimpleAsyncTaskExecutor, one new unbounded thread per streamed response.
+     * A full pool answers 503 (ResponseStatusException passes through ThreadPoolTaskExecutor, which only wraps
+     * RejectedExecutionException) instead of piling up threads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor(@Value("${orders.bulkhead.streaming.threads:16}") int threads,
+                                                   @Value("${orders.bulkhead.streaming.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Streaming response pool is full");
+        });
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs SearchTaskCanceller's drain: a single thread, and at most one drain is ever queued (it batches every
+     * pending request id), so abandoned requests never spawn threads. No request context on purpose.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor searchCancelExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("search-cancel-");
+        executor.initialize();
+        return executor;
+    }
+
+    private ThreadPoolTaskExecutor bulkheadExecutor(String threadNamePrefix, int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+}
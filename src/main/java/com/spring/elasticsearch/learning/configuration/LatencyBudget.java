@@ -0,0 +1,17 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Latency budget of an endpoint in milliseconds (see DeadlineInterceptor / RequestDeadline).
+ * Callers may ask for less with the X-Request-Budget-Ms header, never for more.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LatencyBudget {
+
+    long millis();
+}
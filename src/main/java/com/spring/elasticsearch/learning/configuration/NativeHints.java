@@ -0,0 +1,43 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.models.KeywordCounts;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.util.ClassUtils;
+
+/**
+ * ✅ Reflection / resource hints for AOT processing and GraalVM native images.
+ *
+ * Spring AOT already covers the beans and the Spring Data repository. What it can't see is reflection done by
+ * Jackson and the Spring Data mapping layer on our own types: OrderDocument (entity mapping) and every DTO that is
+ * read from / written to JSON. This registrar runs at build time (process-aot), so it simply scans the models
+ * package instead of keeping a list that goes stale with every new DTO.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final String MODELS_PACKAGE = "com.spring.elasticsearch.learning.models";
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+        for (BeanDefinition candidate : scanner.findCandidateComponents(MODELS_PACKAGE)) {
+            Class<?> type = ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader);
+            // Fields, constructors, accessors and record components - recursively for the types they reference ....
+            bindingHints.registerReflectionHints(hints.reflection(), type);
+        }
+
+        // @JsonSerialize(using = KeywordCounts.Serializer.class) is instantiated reflectively by Jackson ....
+        hints.reflection().registerType(TypeReference.of(KeywordCounts.class.getName() + "$Serializer"),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+        hints.resources().registerPattern("log4j2.yaml");
+    }
+}
@@ -0,0 +1,40 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.models.ProfiledResponse;
+import com.spring.elasticsearch.learning.service.QueryProfiling;
+import jakarta.servlet.DispatcherType;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Wraps the JSON body of a ?profile=true request as { "result": <usual body>, "profile": [ ... ] }.
+ * Requests without profile=true (and error responses) keep their usual shape.
+ */
+@ControllerAdvice
+public class ProfiledResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && servletRequest.getServletRequest().getDispatcherType() != DispatcherType.ERROR
+                && servletRequest.getServletRequest().getAttribute(QueryProfiling.ATTRIBUTE) instanceof QueryProfiling profiling
+                && !(body instanceof ProfiledResponse)) {
+            return new ProfiledResponse(body, profiling.getProfiles());
+        }
+        return body;
+    }
+}
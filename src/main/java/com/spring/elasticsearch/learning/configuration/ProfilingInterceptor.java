@@ -0,0 +1,22 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.QueryProfiling;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Starts the QueryProfiling of a request sent with ?profile=true. ProfiledResponseAdvice (or the streaming endpoints)
+ * return the collected profiles next to the usual body.
+ */
+public class ProfilingInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async re-dispatch of the same request: keep the profiles collected so far ....
+        if (request.getAttribute(QueryProfiling.ATTRIBUTE) == null && "true".equalsIgnoreCase(request.getParameter("profile"))) {
+            request.setAttribute(QueryProfiling.ATTRIBUTE, new QueryProfiling());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.util.ApiTypeHelper;
+import com.spring.elasticsearch.learning.service.QueryProfiling;
+import jakarta.json.stream.JsonParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ✅ Turns on the ES search profiler for the searches of a ?profile=true request (see QueryProfiling).
+ *
+ * Spring Data's NativeQuery has no "profile" setting, so the typed SearchRequest is rebuilt right above the
+ * RestClientTransport with "profile": true, and the "profile" section of the response is condensed into the
+ * request's QueryProfiling. Requests without profiling (and every non-search request) pass through untouched.
+ *
+ * 🔑 Remember: this sits below QueryObservingTransport, so the slow-query fingerprint of a profiled search is the
+ * same as the one of the regular search.
+ */
+public class ProfilingTransport implements ElasticsearchTransport {
+
+    private final String client;
+    private final ElasticsearchTransport delegate;
+
+    public ProfilingTransport(String client, ElasticsearchTransport delegate) {
+        this.client = client;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        QueryProfiling profiling = QueryProfiling.current();
+        if (profiling == null || !(request instanceof SearchRequest searchRequest)) {
+            return delegate.performRequest(request, endpoint, options);
+        }
+        SearchRequest profiled = withProfile(searchRequest);
+        ResponseT response = delegate.performRequest(cast(profiled), endpoint, options);
+        record(profiling, profiled, response);
+        return response;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        QueryProfiling profiling = QueryProfiling.current();
+        if (profiling == null || !(request instanceof SearchRequest searchRequest)) {
+            return delegate.performRequestAsync(request, endpoint, options);
+        }
+        SearchRequest profiled = withProfile(searchRequest);
+        return delegate.performRequestAsync(this.<RequestT>cast(profiled), endpoint, options)
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        record(profiling, profiled, response);
+                    }
+                });
+    }
+
+    /**
+     * Copy of the request with "profile": true. The body goes through JSON (withJson), the URL parameters
+     * (index, routing, preference, request_cache, ...) are not part of the body and are copied one by one.
+     */
+    private SearchRequest withProfile(SearchRequest request) {
+        if (Boolean.TRUE.equals(request.profile())) {
+            return request;
+        }
+        JsonpMapper mapper = delegate.jsonpMapper();
+        String body = JsonpUtils.toJsonString(request, mapper);
+        return SearchRequest.of(b -> {
+            try (JsonParser parser = mapper.jsonProvider().createParser(new StringReader(body))) {
+                b.withJson(parser, mapper);
+            }
+            b.index(request.index())
+                    .allowNoIndices(request.allowNoIndices())
+                    .allowPartialSearchResults(request.allowPartialSearchResults())
+                    .batchedReduceSize(request.batchedReduceSize())
+                    .ccsMinimizeRoundtrips(request.ccsMinimizeRoundtrips())
+                    .ignoreThrottled(request.ignoreThrottled())
+                    .ignoreUnavailable(request.ignoreUnavailable())
+                    .maxConcurrentShardRequests(request.maxConcurrentShardRequests())
+                    .preFilterShardSize(request.preFilterShardSize())
+                    .preference(request.preference())
+                    .q(request.q())
+                    .requestCache(request.requestCache())
+                    .routing(request.routing())
+                    .scroll(request.scroll())
+                    .searchType(request.searchType())
+                    .timeout(request.timeout())
+                    .profile(true);
+            if (ApiTypeHelper.isDefined(request.expandWildcards())) {
+                b.expandWildcards(request.expandWildcards());
+            }
+            return b;
+        });
+    }
+
+    private void record(QueryProfiling profiling, SearchRequest request, Object response) {
+        if (response instanceof SearchResponse<?> searchResponse) {
+            profiling.record(client, request, searchResponse);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <RequestT> RequestT cast(SearchRequest request) {
+        return (RequestT) request;
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
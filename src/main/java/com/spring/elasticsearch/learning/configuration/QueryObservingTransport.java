@@ -0,0 +1,82 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.spring.elasticsearch.learning.service.SlowQueryLog;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ Times every request of one Elasticsearch client and hands request + response to the SlowQueryLog.
+ *
+ * Sits right above the RestClientTransport, so it sees the typed request (rendered DSL, endpoint, index) and the
+ * typed response (took, shards) of every call - whichever template method or raw client call sent it.
+ * Each request carries an X-Slow-Query-Call id, so the RestClient's response interceptor can hand the HTTP
+ * Content-Length of exactly this call to the SlowQueryLog.
+ */
+public class QueryObservingTransport implements ElasticsearchTransport {
+
+    private final String client;
+    private final ElasticsearchTransport delegate;
+    private final SlowQueryLog slowQueryLog;
+
+    private static final AtomicLong CALL_IDS = new AtomicLong();
+
+    public QueryObservingTransport(String client, ElasticsearchTransport delegate, SlowQueryLog slowQueryLog) {
+        this.client = client;
+        this.delegate = delegate;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        TransportOptions observed = withCallId(options);
+        long start = System.nanoTime();
+        ResponseT response = null;
+        Throwable error = null;
+        try {
+            response = delegate.performRequest(request, endpoint, observed);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            slowQueryLog.record(client, endpoint, request, observed, delegate.jsonpMapper(), System.nanoTime() - start, response, error);
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        TransportOptions observed = withCallId(options);
+        long start = System.nanoTime();
+        return delegate.performRequestAsync(request, endpoint, observed).whenComplete((response, error) ->
+                slowQueryLog.record(client, endpoint, request, observed, delegate.jsonpMapper(), System.nanoTime() - start, response, error));
+    }
+
+    // No options means the transport's defaults: start from those so nothing else changes ....
+    private TransportOptions withCallId(TransportOptions options) {
+        String callId = client + "-" + CALL_IDS.incrementAndGet();
+        return (options != null ? options : delegate.options()).with(b -> b.addHeader(SlowQueryLog.CALL_ID_HEADER, callId));
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,23 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.CapturedRequestContext;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Copies the caller's request-scoped values (CapturedRequestContext) at submit time and installs them on the
+ * bulkhead thread running the task, so deadline / preference lookups still work off the Tomcat thread.
+ *
+ * 🔑 Remember: the servlet's RequestAttributes are deliberately not handed over - they become unusable as soon as
+ * the Tomcat thread leaves the handler, which happens before a queued task starts.
+ */
+public class RequestContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        CapturedRequestContext context = CapturedRequestContext.capture();
+        if (context == null) {
+            return runnable;
+        }
+        return () -> context.run(runnable);
+    }
+}
@@ -0,0 +1,193 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import com.spring.elasticsearch.learning.service.AdaptiveConcurrencyLimiter;
+import com.spring.elasticsearch.learning.service.ElasticsearchResilience;
+import com.spring.elasticsearch.learning.service.OperationType;
+import com.spring.elasticsearch.learning.service.RequestDeadline;
+import com.spring.elasticsearch.learning.service.RequestDeadlineExceededException;
+import org.apache.http.client.config.RequestConfig;
+import org.elasticsearch.client.RequestOptions;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.AbstractElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.IndexedObjectInformation;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BaseQuery;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateResponse;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * ElasticsearchTemplate whose every request goes through ElasticsearchResilience.
+ *
+ * ✅ Why a subclass: all template operations (and the repositories built on it) end up in execute(ClientCallback),
+ * so wrapping that single method covers operations.search, repository.save and raw client calls alike.
+ * The overridden high-level methods only tag the call with its OperationType:
+ * - searches carrying aggregations -> AGGREGATION (low priority, shed first)
+ * - index / bulk / update / delete -> INGEST
+ * - everything else -> SEARCH (or whatever ElasticsearchResilience.withOperationType set)
+ *
+ * Calls made inside ElasticsearchResilience.untracked(...) take no limiter slot and are sent once.
+ *
+ * It also applies the RequestDeadline of the current request (search timeout, socket timeout, X-Opaque-Id)
+ * and flags the deadline when ES answered with "timed_out": true (partial results).
+ */
+public class ResilientElasticsearchTemplate extends ElasticsearchTemplate {
+
+    private static final double SEARCH_TIMEOUT_SHARE = 0.8;
+
+    private final ElasticsearchClient client;
+    private final ElasticsearchResilience resilience;
+
+    public ResilientElasticsearchTemplate(ElasticsearchClient client, ElasticsearchResilience resilience) {
+        super(client);
+        this.client = client;
+        this.resilience = resilience;
+    }
+
+    private ResilientElasticsearchTemplate(ElasticsearchClient client, ElasticsearchConverter converter,
+                                           ElasticsearchResilience resilience) {
+        super(client, converter);
+        this.client = client;
+        this.resilience = resilience;
+    }
+
+    @Override
+    protected AbstractElasticsearchTemplate doCopy() {
+        return new ResilientElasticsearchTemplate(client, getElasticsearchConverter(), resilience);
+    }
+
+    @Override
+    public <T> T execute(ClientCallback<T> callback) {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new RequestDeadlineExceededException("Latency budget of " + deadline.getBudgetMillis() + " ms exhausted");
+        }
+
+        OperationType type = ElasticsearchResilience.currentOperationType();
+        boolean untracked = ElasticsearchResilience.isUntracked();
+        AdaptiveConcurrencyLimiter limiter = null;
+        if (untracked) {
+            resilience.admitUntracked(type);
+        } else {
+            limiter = resilience.admit(type);
+        }
+        try {
+            return super.execute(es -> untracked
+                    ? call(callback, es, deadline)
+                    : resilience.callWithRetry(type, () -> call(callback, es, deadline)));
+        } catch (RuntimeException e) {
+            if (deadline != null && isSocketTimeout(e)) {
+                throw new RequestDeadlineExceededException("Elasticsearch did not answer within the latency budget of "
+                        + deadline.getBudgetMillis() + " ms", e);
+            }
+            throw e;
+        } finally {
+            if (limiter != null) {
+                limiter.release();
+            }
+        }
+    }
+
+    private static <T> T call(ClientCallback<T> callback, ElasticsearchClient es, RequestDeadline deadline) throws IOException {
+        T result = callback.doWithClient(withDeadline(es, deadline));
+        if (deadline != null && result instanceof SearchResponse<?> response && response.timedOut()) {
+            deadline.markTimedOut();
+        }
+        return result;
+    }
+
+    @Override
+    public <T> SearchHits<T> search(Query query, Class<T> clazz, IndexCoordinates index) {
+        // Search "timeout" slightly below the remaining budget, so ES answers with partial results before our socket gives up ....
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null && query.getTimeout() == null && query instanceof BaseQuery baseQuery) {
+            baseQuery.setTimeout(Duration.ofMillis(Math.max(1, (long) (deadline.remainingMillis() * SEARCH_TIMEOUT_SHARE))));
+        }
+
+        OperationType type = query instanceof NativeQuery nativeQuery && !nativeQuery.getAggregations().isEmpty()
+                ? OperationType.AGGREGATION
+                : ElasticsearchResilience.currentOperationType();
+        return ElasticsearchResilience.withOperationType(type, () -> super.search(query, clazz, index));
+    }
+
+    @Override
+    public String doIndex(IndexQuery query, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.doIndex(query, index));
+    }
+
+    @Override
+    public List<IndexedObjectInformation> doBulkOperation(List<?> queries, BulkOptions bulkOptions, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.doBulkOperation(queries, bulkOptions, index));
+    }
+
+    @Override
+    public void bulkUpdate(List<UpdateQuery> queries, BulkOptions bulkOptions, IndexCoordinates index) {
+        ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> {
+            super.bulkUpdate(queries, bulkOptions, index);
+            return null;
+        });
+    }
+
+    @Override
+    public UpdateResponse update(UpdateQuery updateQuery, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.update(updateQuery, index));
+    }
+
+    @Override
+    public ByQueryResponse updateByQuery(UpdateQuery updateQuery, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.updateByQuery(updateQuery, index));
+    }
+
+    @Override
+    protected String doDelete(String id, String routing, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.doDelete(id, routing, index));
+    }
+
+    @Override
+    public ByQueryResponse delete(Query query, Class<?> clazz, IndexCoordinates index) {
+        return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> super.delete(query, clazz, index));
+    }
+
+    // Per-request socket timeout = remaining budget, plus the X-Opaque-Id used to find / cancel the ES task ....
+    private static ElasticsearchClient withDeadline(ElasticsearchClient es, RequestDeadline deadline) {
+        if (deadline == null) {
+            return es;
+        }
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remainingMillis()));
+        RequestOptions.Builder options = es._transportOptions() instanceof RestClientOptions restClientOptions
+                ? restClientOptions.restClientRequestOptions().toBuilder()
+                : RequestOptions.DEFAULT.toBuilder();
+        options.setRequestConfig(RequestConfig.custom()
+                .setSocketTimeout(remaining)
+                .setConnectionRequestTimeout(remaining)
+                .build());
+        options.addHeader("X-Opaque-Id", deadline.getOpaqueId());
+        return es.withTransportOptions(new RestClientOptions(options.build()));
+    }
+
+    private static boolean isSocketTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
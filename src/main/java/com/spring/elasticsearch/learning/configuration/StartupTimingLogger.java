@@ -0,0 +1,55 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+
+/**
+ * ✅ Logs how long startup took and which optimizations were active, e.g.
+ *
+ *   Ready in 2140 ms (JVM uptime 2630 ms) - AOT: true, CDS archive: true
+ *
+ * With -Dorders.startup.record-steps=true the startup steps are buffered (BufferingApplicationStartup) and the
+ * slowest ones are logged too - the first place to look when startup gets slower.
+ */
+@Component
+public class StartupTimingLogger implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LogManager.getLogger(StartupTimingLogger.class);
+
+    private static final int SLOWEST_STEPS = 15;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        boolean cds = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+        logger.info("Ready in {} ms (JVM uptime {} ms) - AOT: {}, CDS archive: {}",
+                event.getTimeTaken() == null ? -1 : event.getTimeTaken().toMillis(),
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                AotDetector.useGeneratedArtifacts(), cds);
+
+        ApplicationStartup startup = context.getApplicationStartup();
+        if (startup instanceof BufferingApplicationStartup buffering) {
+            StartupTimeline timeline = buffering.getBufferedTimeline();
+            timeline.getEvents().stream()
+                    .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                    .limit(SLOWEST_STEPS)
+                    .forEach(step -> logger.info("Startup step {} ms: {} {}", step.getDuration().toMillis(),
+                            step.getStartupStep().getName(), step.getStartupStep().getTags()));
+        }
+    }
+}
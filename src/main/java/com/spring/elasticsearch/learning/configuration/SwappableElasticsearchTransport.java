@@ -0,0 +1,186 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Transport that sits between the ElasticsearchClient (and so the ElasticsearchTemplate the services use) and the
+ * real RestClientTransport, so the real one can be built late and replaced live.
+ *
+ * - lazy: the real transport (RestClient, TLS truststore, connection pool) is built on the first request.
+ *   The client / template beans only need the JSON mapper, so the context refreshes without touching the
+ *   truststore or the network - also what the CDS / AOT training run (exits right after refresh) relies on.
+ * - swap(): a new transport built from new settings (ElasticsearchClientReloader) replaces the current one
+ *   atomically. It is built by the caller before swap(), so settings that can't produce a transport are never kept. New requests go to the new one; the old one is drained - closed once its in-flight requests
+ *   completed (or the drain timeout passed).
+ */
+public class SwappableElasticsearchTransport implements ElasticsearchTransport {
+
+    private static final Logger logger = LogManager.getLogger(SwappableElasticsearchTransport.class);
+
+    private final String name;
+    private final JsonpMapper jsonpMapper;
+
+    private volatile Supplier<ElasticsearchTransport> factory;
+    private volatile Generation current;
+
+    // One built transport + the requests currently using it ....
+    private static final class Generation {
+        final ElasticsearchTransport transport;
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile boolean closed;
+
+        Generation(ElasticsearchTransport transport) {
+            this.transport = transport;
+        }
+    }
+
+    public SwappableElasticsearchTransport(String name, JsonpMapper jsonpMapper, Supplier<ElasticsearchTransport> factory) {
+        this.name = name;
+        this.jsonpMapper = jsonpMapper;
+        this.factory = factory;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        Generation generation = acquire();
+        try {
+            return generation.transport.performRequest(request, endpoint, options);
+        } finally {
+            generation.inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        Generation generation = acquire();
+        try {
+            return generation.transport.performRequestAsync(request, endpoint, options)
+                    .whenComplete((response, error) -> generation.inFlight.decrementAndGet());
+        } catch (RuntimeException e) {
+            generation.inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return jsonpMapper;
+    }
+
+    @Override
+    public TransportOptions options() {
+        return generation().transport.options();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isInitialized() {
+        return current != null;
+    }
+
+    /**
+     * ✅ Installs a transport already built from newFactory (so a bad configuration fails before anything changes)
+     * and keeps newFactory for later rebuilds. The previous transport, if any, is drained on a background thread.
+     */
+    public void swap(Supplier<ElasticsearchTransport> newFactory, ElasticsearchTransport replacement, long drainTimeoutMs) {
+        Generation old;
+        synchronized (this) {
+            old = current;
+            current = new Generation(replacement);
+            factory = newFactory;
+        }
+        if (old == null) {
+            logger.info("Elasticsearch transport '{}' initialized from the reloaded settings", name);
+            return;
+        }
+        logger.info("Elasticsearch transport '{}' swapped, draining the previous one ({} in flight)", name, old.inFlight.get());
+
+        Thread drain = new Thread(() -> drainAndClose(old, drainTimeoutMs), "es-transport-drain-" + name);
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Generation generation = current;
+        if (generation != null) {
+            generation.closed = true;
+            generation.transport.close();
+        }
+    }
+
+    // Counts the request on the current generation; retries if that generation was closed in between ....
+    private Generation acquire() {
+        while (true) {
+            Generation generation = generation();
+            generation.inFlight.incrementAndGet();
+            if (!generation.closed) {
+                return generation;
+            }
+            generation.inFlight.decrementAndGet();
+        }
+    }
+
+    private Generation generation() {
+        Generation generation = current;
+        if (generation == null) {
+            synchronized (this) {
+                generation = current;
+                if (generation == null) {
+                    long start = System.nanoTime();
+                    generation = new Generation(factory.get());
+                    current = generation;
+                    logger.info("Elasticsearch transport '{}' initialized in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return generation;
+    }
+
+    private void drainAndClose(Generation old, long drainTimeoutMs) {
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        try {
+            while (true) {
+                if (old.inFlight.get() == 0) {
+                    old.closed = true;
+                    // A request that counted itself before seeing "closed" keeps the transport open a little longer ....
+                    if (old.inFlight.get() == 0) {
+                        break;
+                    }
+                    old.closed = false;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    old.closed = true;
+                    logger.warn("Elasticsearch transport '{}' closed with {} requests still in flight after {} ms",
+                            name, old.inFlight.get(), drainTimeoutMs);
+                    break;
+                }
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            old.closed = true;
+        }
+
+        try {
+            old.transport.close();
+            logger.info("Previous Elasticsearch transport '{}' drained and closed", name);
+        } catch (IOException e) {
+            logger.warn("Closing the previous Elasticsearch transport '{}' failed: {}", name, e.getMessage());
+        }
+    }
+}
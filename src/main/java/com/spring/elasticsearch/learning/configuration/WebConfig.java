@@ -0,0 +1,66 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.RequestDeadline;
+import com.spring.elasticsearch.learning.service.SearchTaskCanceller;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private SearchTaskCanceller searchTaskCanceller;
+
+    @Autowired
+    @Qualifier("mvcAsyncExecutor")
+    private ThreadPoolTaskExecutor mvcAsyncExecutor;
+
+    // Budget of endpoints without @LatencyBudget. 0 = no deadline ....
+    @Value("${orders.deadline.default-budget-ms:30000}")
+    private long defaultBudgetMillis;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new DeadlineInterceptor(defaultBudgetMillis));
+        registry.addInterceptor(new ProfilingInterceptor());
+    }
+
+    /**
+     * Async endpoints (CompletableFuture) get an error callback when the client disconnects:
+     * cancel whatever ES is still running for that request.
+     * StreamingResponseBody output is written on the bounded mvcAsyncExecutor (ExecutorConfig).
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor);
+        configurer.registerDeferredResultInterceptors(new DeferredResultProcessingInterceptor() {
+            @Override
+            public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+                cancelSearchTasks(request);
+                return true;
+            }
+
+            @Override
+            public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+                cancelSearchTasks(request);
+                return true;
+            }
+        });
+    }
+
+    private void cancelSearchTasks(NativeWebRequest request) {
+        if (request.getAttribute(RequestDeadline.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof RequestDeadline deadline) {
+            searchTaskCanceller.cancel(deadline.getOpaqueId());
+        }
+    }
+}
@@ -1,14 +1,45 @@
 package com.spring.elasticsearch.learning.controllers;
 
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import com.spring.elasticsearch.learning.configuration.ElasticsearchClientReloader;
+import com.spring.elasticsearch.learning.configuration.LatencyBudget;
 import com.spring.elasticsearch.learning.models.*;
+import com.spring.elasticsearch.learning.service.AggregationStreamWriter;
+import com.spring.elasticsearch.learning.service.AsyncAggregationSearches;
+import com.spring.elasticsearch.learning.service.BulkLoadSessionService;
+import com.spring.elasticsearch.learning.service.ApproximateAggregations;
+import com.spring.elasticsearch.learning.service.CustomerRevenueLeaderboard;
+import com.spring.elasticsearch.learning.service.ElasticsearchResilience;
+import com.spring.elasticsearch.learning.service.IncrementalOrderAggregations;
+import com.spring.elasticsearch.learning.service.OrderChangeJournalConsumer;
 import com.spring.elasticsearch.learning.service.OrderPaginationAggregations;
+import com.spring.elasticsearch.learning.service.HotCustomerTracker;
+import com.spring.elasticsearch.learning.service.HotOrderStore;
+import com.spring.elasticsearch.learning.service.OrderSearchResultCache;
+import com.spring.elasticsearch.learning.service.StartupWarmup;
+import com.spring.elasticsearch.learning.service.OrderSketchCache;
+import com.spring.elasticsearch.learning.service.OrderStatusService;
+import com.spring.elasticsearch.learning.service.OrderWriteAheadLog;
+import com.spring.elasticsearch.learning.service.OrdersBatchService;
 import com.spring.elasticsearch.learning.service.OrdersPaginationService;
+import com.spring.elasticsearch.learning.service.QueryProfiling;
+import com.spring.elasticsearch.learning.service.RequestBulkheads;
+import com.spring.elasticsearch.learning.service.SlowQueryLog;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/orders")
@@ -20,133 +51,580 @@ public class OrdersPaginationController {
     @Autowired
     OrderPaginationAggregations orderPaginationAggregations;
 
+    @Autowired
+    private OrdersBatchService ordersBatchService;
+
+    @Autowired
+    private AggregationStreamWriter aggregationStreamWriter;
+
+    @Autowired
+    private CustomerRevenueLeaderboard customerRevenueLeaderboard;
+
+    @Autowired
+    private OrderSketchCache orderSketchCache;
+
+    @Autowired
+    private ApproximateAggregations approximateAggregations;
+
+    @Autowired
+    private IncrementalOrderAggregations incrementalOrderAggregations;
+
+    @Autowired
+    private OrderStatusService orderStatusService;
+
+    @Autowired
+    private BulkLoadSessionService bulkLoadSessionService;
+
+    @Autowired
+    private ElasticsearchResilience elasticsearchResilience;
+
+    @Autowired
+    private RequestBulkheads requestBulkheads;
+
+    @Autowired
+    private OrderSearchResultCache orderSearchResultCache;
+
+    @Autowired
+    private HotOrderStore hotOrderStore;
+
+    @Autowired
+    private HotCustomerTracker hotCustomerTracker;
+
+    @Autowired
+    private StartupWarmup startupWarmup;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private ElasticsearchClientReloader elasticsearchClientReloader;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Autowired
+    private AsyncAggregationSearches asyncAggregationSearches;
+
+    // Only present when orders.cdc.enabled=true ....
+    @Autowired(required = false)
+    private OrderChangeJournalConsumer orderChangeJournalConsumer;
+
+    // Only present when orders.wal.enabled=true ....
+    @Autowired(required = false)
+    private OrderWriteAheadLog orderWriteAheadLog;
+
     @PostMapping("/add")
-    public OrderDocument createOrder(@RequestBody OrderDocument order) {
-        return orderService.addOrder(order);
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ResponseEntity<OrderDocument>> createOrder(@RequestBody OrderDocument order) {
+        return requestBulkheads.ingest(() -> {
+            try {
+                AddOrderResult result = orderService.addOrder(order);
+                // 202: in the write-ahead log but not confirmed durable in time - it is still indexed, don't resend ....
+                return ResponseEntity.status(result.confirmed() ? HttpStatus.OK : HttpStatus.ACCEPTED).body(result.order());
+            } catch (IllegalArgumentException e) {
+                // id and order_id disagree ....
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    @PatchMapping("/{id}/status")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ResponseEntity<StatusUpdateResult>> updateOrderStatus(@PathVariable String id, @RequestParam String status) {
+        return requestBulkheads.ingest(() -> {
+            StatusUpdateResult result = orderStatusService.updateStatus(id, status);
+            HttpStatus httpStatus = switch (result.outcome()) {
+                case UPDATED, UNCHANGED -> HttpStatus.OK;
+                case NOT_FOUND -> HttpStatus.NOT_FOUND;
+                case INVALID_TRANSITION -> HttpStatus.UNPROCESSABLE_ENTITY;
+                case CONFLICT -> HttpStatus.CONFLICT;
+            };
+            return ResponseEntity.status(httpStatus).body(result);
+        });
+    }
+
+    @PostMapping("/status/transition")
+    public CompletableFuture<ResponseEntity<StatusTransitionResult>> transitionOrderStatus(@RequestParam String from,
+                                                                                           @RequestParam String to,
+                                                                                           @RequestParam(required = false) String customer) {
+        if (!OrderStatusService.isValidTransition(from, to)) {
+            return CompletableFuture.completedFuture(ResponseEntity.unprocessableEntity().build());
+        }
+        return requestBulkheads.ingest(() -> ResponseEntity.ok(orderStatusService.transitionStatus(from, to, customer)));
+    }
+
+    @PostMapping("/bulk-load/start")
+    public ResponseEntity<BulkLoadSessionStatus> startBulkLoad() {
+        try {
+            return ResponseEntity.ok(bulkLoadSessionService.start());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(bulkLoadSessionService.getStatus());
+        }
+    }
+
+    @PostMapping("/bulk-load/{sessionId}/orders")
+    public ResponseEntity<BulkLoadSessionStatus> submitBulkLoadOrders(@PathVariable String sessionId,
+                                                                      @RequestBody List<OrderDocument> orders) throws InterruptedException {
+        try {
+            return ResponseEntity.ok(bulkLoadSessionService.submit(sessionId, orders));
+        } catch (IllegalStateException e) {
+            // Session finishing / aborted / failed: the orders were not (all) queued ....
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(bulkLoadSessionService.getStatus());
+        }
+    }
+
+    @PostMapping("/bulk-load/{sessionId}/finish")
+    public BulkLoadSessionStatus finishBulkLoad(@PathVariable String sessionId,
+                                                @RequestParam(required = false) Integer forceMergeSegments) throws InterruptedException {
+        return bulkLoadSessionService.finish(sessionId, forceMergeSegments);
+    }
+
+    @PostMapping("/bulk-load/{sessionId}/abort")
+    public BulkLoadSessionStatus abortBulkLoad(@PathVariable String sessionId) throws InterruptedException {
+        return bulkLoadSessionService.abort(sessionId);
+    }
+
+    @GetMapping("/bulk-load/status")
+    public ResponseEntity<BulkLoadSessionStatus> getBulkLoadStatus() {
+        BulkLoadSessionStatus status = bulkLoadSessionService.getStatus();
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
     }
 
     @GetMapping("/fetch-by-customer/{customer}")
-    public List<OrderDocument> getOrdersByCustomer(@PathVariable String customer) {
-        return orderService.getOrdersByCustomerUsingTermQuery(customer);
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getOrdersByCustomer(@PathVariable String customer) {
+        hotCustomerTracker.record(customer);
+        return requestBulkheads.search(() -> orderService.getOrdersByCustomerUsingTermQuery(customer));
     }
 
 
+    /**
+     * Same JSON as /fetch-by-customer, limited to the orders of the last orders.hot-store.window-hours.
+     * Served from the off-heap HotOrderStore without calling Elasticsearch.
+     */
+    @GetMapping(value = "/fetch-by-customer/{customer}", params = "window=recent")
+    public ResponseEntity<StreamingResponseBody> getRecentOrdersByCustomer(@PathVariable String customer) {
+        if (!hotOrderStore.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> hotOrderStore.writeCustomerOrders(customer, out));
+    }
+
+    @PostMapping("/batch/fetch-by-customers")
+    @LatencyBudget(millis = 10000)
+    public CompletableFuture<ResponseEntity<CustomerBatchResponse>> getOrdersForCustomers(@RequestBody List<String> customers) {
+        return requestBulkheads.search(() -> {
+            try {
+                CustomerBatchResponse response = ordersBatchService.getOrdersAndDailySalesForCustomers(customers);
+                hotCustomerTracker.recordAll(customers);
+                return ResponseEntity.ok(response);
+            } catch (IllegalArgumentException e) {
+                // Too many customers in one batch ....
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
     @GetMapping("/match-by-status/{status}")
-    public List<OrderDocument> getOrdersByStatus(@PathVariable String status) {
-        return orderService.getOrdersByStatusUsingMatchQuery(status);
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getOrdersByStatus(@PathVariable String status) {
+        return requestBulkheads.search(() -> orderService.getOrdersByStatusUsingMatchQuery(status));
     }
 
     @GetMapping("/orders-by-range")
-    public List<OrderDocument> getOrdersByRange() {
-        return orderService.getOrdersUsingRangeQuery();
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getOrdersByRange() {
+        return requestBulkheads.search(() -> orderService.getOrdersUsingRangeQuery());
     }
 
     @GetMapping("/combinequeries")
-    public List<OrderDocument> getOrdersByCombiningQueries() {
-        return orderService.getOrdersByCombiningQueries();
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getOrdersByCombiningQueries() {
+        return requestBulkheads.search(() -> orderService.getOrdersByCombiningQueries());
     }
 
 
     @GetMapping("/sort-and-pagination")
-    public List<OrderDocument> getOrdersBySortAndPaginationQueries() {
-        return orderService.getOrdersBySortAndPaginationQueries();
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getOrdersBySortAndPaginationQueries() {
+        return requestBulkheads.search(() -> orderService.getOrdersBySortAndPaginationQueries());
     }
 
     /* ----------------------------------------------------------------------------------------------- */
 
     @GetMapping("/aggs-total-orders-count")
-    public long getOrdersCountByAggregationQueries() {
-        return orderPaginationAggregations.getTotalOrdersCount();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<Long> getOrdersCountByAggregationQueries() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getTotalOrdersCount());
     }
 
     @GetMapping("/aggs-total-revenue")
-    public double getRevenueByAggregationQueries() {
-        return orderPaginationAggregations.getTotalRevenueFromOrders();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<Double> getRevenueByAggregationQueries() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getTotalRevenueFromOrders());
+    }
+
+    @GetMapping(value = "/aggs-total-revenue", params = "mode=incremental")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<Double> getRevenueIncremental() {
+        return requestBulkheads.analytics(() -> incrementalOrderAggregations.getTotalRevenueFromOrders());
     }
 
     @GetMapping("/aggs-total-avg")
-    public double getAverageByAggregationQueries() {
-        return orderPaginationAggregations.getTotalAverageFromOrders();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<Double> getAverageByAggregationQueries() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getTotalAverageFromOrders());
     }
 
     @GetMapping("/aggs-min-max")
-    public MinMax getMinAndMaxAmountFromOrders() {
-        return orderPaginationAggregations.getMinAndMaxAmountFromOrders();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<MinMax> getMinAndMaxAmountFromOrders() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getMinAndMaxAmountFromOrders());
     }
 
     @GetMapping("/aggs-group-by-status")
-    public Map<String, Long> getOrdersGroupedByStatus() {
-        return orderPaginationAggregations.getOrdersGroupedByStatus();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<KeywordCounts> getOrdersGroupedByStatus() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getOrdersGroupedByStatus());
+    }
+
+    @GetMapping(value = "/aggs-group-by-status", params = "mode=incremental")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<KeywordCounts> getOrdersGroupedByStatusIncremental() {
+        return requestBulkheads.analytics(() -> incrementalOrderAggregations.getOrdersGroupedByStatus());
+    }
+
+    @GetMapping(value = "/aggs-group-by-status", params = "mode=approx")
+    @LatencyBudget(millis = 3000)
+    public CompletableFuture<ApproximateAggregationResponse> getOrdersGroupedByStatusApprox(@RequestParam(required = false) Double probability) {
+        return requestBulkheads.analytics(() -> approximateAggregations.getOrdersGroupedByStatus(probability));
     }
 
 
     @GetMapping("/aggs-revenue-by-customer")
-    public List<CustomerRevenueResponse> getRevenuePerCustomer() {
-        return orderPaginationAggregations.getRevenuePerCustomer();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<CustomerRevenueResponse>> getRevenuePerCustomer() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getRevenuePerCustomer());
+    }
+
+    @GetMapping(value = "/aggs-revenue-by-customer", params = "mode=approx")
+    @LatencyBudget(millis = 3000)
+    public CompletableFuture<ApproximateAggregationResponse> getRevenuePerCustomerApprox(@RequestParam(required = false) Double probability) {
+        return requestBulkheads.analytics(() -> approximateAggregations.getRevenuePerCustomer(probability));
     }
 
     @GetMapping("/aggs-revenue-from-paid-orders")
-    public double getTotalRevenueFromPaidOrders() {
-        return orderPaginationAggregations.getTotalRevenueFromPaidOrders();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<Double> getTotalRevenueFromPaidOrders() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getTotalRevenueFromPaidOrders());
     }
 
     @GetMapping("/aggs-filter-multiple-criteria")
-    public RevenueStatsResponse getPaidRevenueStats() {
-        return orderPaginationAggregations.getPaidRevenueStats();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<RevenueStatsResponse> getPaidRevenueStats() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getPaidRevenueStats());
+    }
+
+    @GetMapping(value = "/aggs-filter-multiple-criteria", params = "mode=incremental")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<RevenueStatsResponse> getPaidRevenueStatsIncremental() {
+        return requestBulkheads.analytics(() -> incrementalOrderAggregations.getPaidRevenueStats());
     }
 
     @GetMapping("/aggs-filter-by-status-group-by-customer-nested-sum-aggs")
-    public List<CustomerRevenue> getTopCustomersByRevenue() {
-        return orderPaginationAggregations.getTopCustomersByRevenue();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<CustomerRevenue>> getTopCustomersByRevenue() {
+        // Served from the in-memory leaderboard once it is loaded, the ES aggregation (analytics bulkhead) is the fallback ....
+        List<CustomerRevenue> topCustomers = customerRevenueLeaderboard.getTopCustomers(5);
+        return topCustomers != null
+                ? CompletableFuture.completedFuture(topCustomers)
+                : requestBulkheads.analytics(orderPaginationAggregations::getTopCustomersByRevenue);
     }
 
+    /**
+     * Streams the same JSON as Map<String, CustomerOrderStats> bucket by bucket (see AggregationStreamWriter).
+     * The search runs on the analytics bulkhead before streaming starts, so ES errors still map to a normal error response.
+     * With ?profile=true the buckets are streamed as "result" next to the condensed ES profile of the search.
+     */
     @GetMapping("/aggs-customer-order-stats-last-30-days")
-    public Map<String, CustomerOrderStats> getCustomerOrderStatsLast30Days() {
-        return orderPaginationAggregations.getCustomerOrderStatsLast30Days();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getCustomerOrderStatsLast30Days() {
+        return requestBulkheads.analytics(() -> {
+            Aggregate aggregate = orderPaginationAggregations.getCustomerOrderStatsLast30DaysAggregate();
+            QueryProfiling profiling = QueryProfiling.current();
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> aggregationStreamWriter.writeProfiled(profiling, out, body ->
+                            aggregationStreamWriter.writeKeyedBuckets(aggregate, body, "orderCount",
+                                    new String[]{"avgOrderValue", "maxOrderValue"},
+                                    new String[]{"avg_order_value", "max_order_value"})));
+        });
     }
 
+    /**
+     * Streams the same JSON as Map<String, DailySalesStats> bucket by bucket.
+     */
     @GetMapping("/aggs-daily-sales-for-customer")
-    public Map<String, DailySalesStats> getDailySalesForCustomer() {
-        return orderPaginationAggregations.getDailySalesForCustomer("Alice");
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getDailySalesForCustomer(@RequestParam(defaultValue = "Alice") String customer) {
+        hotCustomerTracker.record(customer);
+        return requestBulkheads.analytics(() -> {
+            Aggregate aggregate = orderPaginationAggregations.getDailySalesForCustomerAggregate(customer);
+            QueryProfiling profiling = QueryProfiling.current();
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> aggregationStreamWriter.writeProfiled(profiling, out, body ->
+                            aggregationStreamWriter.writeKeyedBuckets(aggregate, body, "orderCount",
+                                    new String[]{"totalSales", "avgSales"},
+                                    new String[]{"total_sales", "avg_sales"})));
+        });
+    }
+
+    @GetMapping("/aggs-customer-order-stats-last-30-days/columnar")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ColumnarBuckets> getCustomerOrderStatsLast30DaysColumnar() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getCustomerOrderStatsLast30DaysColumnar());
+    }
+
+    @GetMapping("/aggs-daily-sales-for-customer/columnar")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ColumnarBuckets> getDailySalesForCustomerColumnar(@RequestParam(defaultValue = "Alice") String customer) {
+        hotCustomerTracker.record(customer);
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getDailySalesForCustomerColumnar(customer));
     }
 
     @GetMapping("/aggs-category-stats-last-30-days")
-    public List<CategoryStats> getCategoryStatsLast30Days() {
-        return orderPaginationAggregations.getCategoryStatsLast30Days();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<CategoryStats>> getCategoryStatsLast30Days() {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getCategoryStatsLast30Days());
+    }
+
+    @GetMapping(value = "/aggs-category-stats-last-30-days", params = "mode=approx")
+    @LatencyBudget(millis = 3000)
+    public CompletableFuture<ApproximateAggregationResponse> getCategoryStatsLast30DaysApprox(@RequestParam(required = false) Double probability) {
+        return requestBulkheads.analytics(() -> approximateAggregations.getCategoryStatsLast30Days(probability));
+    }
+
+    /**
+     * Same aggregation as /aggs-category-stats-last-30-days over any number of days, as an ES async search:
+     * 202 + job id while it runs (200 if it finished within orders.async-search.wait-for-completion-ms).
+     * Poll GET /async-search/{id}, or follow GET /async-search/{id}/stream (server-sent events).
+     */
+    @PostMapping("/async-search/category-stats")
+    public ResponseEntity<AsyncSearchJob> submitCategoryStatsAsyncSearch(@RequestParam(defaultValue = "365") int days) {
+        try {
+            AsyncSearchJob job = asyncAggregationSearches.submitCategoryStats(days);
+            return ResponseEntity.status(job.running() ? HttpStatus.ACCEPTED : HttpStatus.OK).body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Runs on the analytics bulkhead: waitMs is capped at orders.async-search.max-wait-ms (short), wait on /stream instead ....
+    @GetMapping("/async-search/{id}")
+    public CompletableFuture<ResponseEntity<AsyncSearchJob>> getAsyncSearch(@PathVariable String id,
+                                                                            @RequestParam(defaultValue = "0") long waitMs) {
+        return requestBulkheads.analytics(() -> ResponseEntity.of(asyncAggregationSearches.get(id, waitMs)));
+    }
+
+    @GetMapping(value = "/async-search/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAsyncSearch(@PathVariable String id) {
+        return asyncAggregationSearches.stream(id);
+    }
+
+    @DeleteMapping("/async-search/{id}")
+    public ResponseEntity<Void> deleteAsyncSearch(@PathVariable String id) {
+        return asyncAggregationSearches.delete(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/aggs-distinct-customers-per-day")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<ColumnarBuckets> getDistinctCustomersPerDay(@RequestParam(defaultValue = "30") int days,
+                                                      @RequestParam(defaultValue = "3000") int precisionThreshold) {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getDistinctCustomersPerDay(days, precisionThreshold));
+    }
+
+    @GetMapping("/aggs-order-value-percentiles-by-category")
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<CategoryPercentiles>> getOrderValuePercentilesByCategory(@RequestParam(defaultValue = "30") int days,
+                                                                        @RequestParam(defaultValue = "50,95,99") List<Double> percents,
+                                                                        @RequestParam(defaultValue = "100") int compression) {
+        return requestBulkheads.analytics(() -> orderPaginationAggregations.getOrderValuePercentilesByCategory(days, percents, compression));
+    }
+
+    /**
+     * The /sketch/* endpoints run on the analytics bulkhead: a closed day that isn't cached (yet) is scanned on the
+     * request thread (see OrderSketchCache).
+     */
+    @GetMapping("/sketch/distinct-customers")
+    @LatencyBudget(millis = 10000)
+    public CompletableFuture<ResponseEntity<DistinctCustomersEstimate>> getDistinctCustomersFromSketches(@RequestParam LocalDate from,
+                                                                                                         @RequestParam LocalDate to) {
+        return requestBulkheads.analytics(() -> {
+            try {
+                return ResponseEntity.ok(orderSketchCache.getDistinctCustomers(from, to));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    @GetMapping("/sketch/order-value-percentiles")
+    @LatencyBudget(millis = 10000)
+    public CompletableFuture<ResponseEntity<OrderValuePercentiles>> getOrderValuePercentilesFromSketches(@RequestParam LocalDate from,
+                                                                                                         @RequestParam LocalDate to,
+                                                                                                         @RequestParam(defaultValue = "50,95,99") List<Double> percents) {
+        return requestBulkheads.analytics(() -> {
+            try {
+                return ResponseEntity.ok(orderSketchCache.getOrderValuePercentiles(from, to, percents));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    @GetMapping("/sketch/order-value-percentiles-by-category")
+    @LatencyBudget(millis = 10000)
+    public CompletableFuture<ResponseEntity<List<CategoryPercentiles>>> getOrderValuePercentilesByCategoryFromSketches(@RequestParam LocalDate from,
+                                                                                                                       @RequestParam LocalDate to,
+                                                                                                                       @RequestParam(defaultValue = "50,95,99") List<Double> percents) {
+        return requestBulkheads.analytics(() -> {
+            try {
+                return ResponseEntity.ok(orderSketchCache.getOrderValuePercentilesByCategory(from, to, percents));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    @GetMapping("/aggs-request-cache-stats")
+    public List<RequestCacheStatsResponse> getRequestCacheStats() {
+        return orderPaginationAggregations.getRequestCacheStats();
+    }
+
+    @GetMapping("/bulkheads/stats")
+    public List<BulkheadStats> getBulkheadStats() {
+        return requestBulkheads.getStats();
+    }
+
+    @GetMapping("/cache/stats")
+    public ResultCacheStats getResultCacheStats() {
+        return orderSearchResultCache.getStats();
+    }
+
+    /**
+     * Warm-up report; 503 until the app is ready (ReadinessState.ACCEPTING_TRAFFIC), so it can back a readiness probe.
+     */
+    @GetMapping("/warmup/status")
+    public ResponseEntity<WarmupReport> getWarmupStatus() {
+        HttpStatus status = applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC
+                ? HttpStatus.OK
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(startupWarmup.getReport());
+    }
+
+    @GetMapping("/elasticsearch/client")
+    public ElasticsearchClientStatus getElasticsearchClientStatus() {
+        return elasticsearchClientReloader.getStatus();
+    }
+
+    /**
+     * Rebuilds the Elasticsearch clients from orders.elasticsearch.* (+ the reload file) and swaps them in live.
+     */
+    @PostMapping("/elasticsearch/reload")
+    public ElasticsearchClientStatus reloadElasticsearchClients() {
+        return elasticsearchClientReloader.reload();
+    }
+
+    /**
+     * Slowest query fingerprints (rolling window), orderBy = p99 | p95 | max | count.
+     */
+    @GetMapping("/slow-queries/top")
+    public List<SlowQueryStats> getSlowestQueries(@RequestParam(defaultValue = "10") int size,
+                                                  @RequestParam(defaultValue = "p99") String orderBy) {
+        return slowQueryLog.top(size, orderBy);
+    }
+
+    @GetMapping("/hot-store/stats")
+    public HotOrderStoreStats getHotOrderStoreStats() {
+        return hotOrderStore.getStats();
+    }
+
+    @GetMapping("/resilience/stats")
+    public List<ResilienceStats> getResilienceStats() {
+        return elasticsearchResilience.getStats();
+    }
+
+    @GetMapping("/cdc/status")
+    public List<ChangeJournalPartitionStatus> getChangeJournalStatus() {
+        return orderChangeJournalConsumer == null ? List.of() : orderChangeJournalConsumer.getStatus();
+    }
+
+    @GetMapping("/wal/status")
+    public ResponseEntity<WriteAheadLogStatus> getWriteAheadLogStatus() {
+        return orderWriteAheadLog == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(orderWriteAheadLog.getStatus());
     }
 
     /* ----------------------------------------------------------------------------------------------- */
 
     @GetMapping("/top")
-    public List<OrderDocument> getTopOrders(@RequestParam(defaultValue = "3") int size) {
-        SearchHits<OrderDocument> searchHits = orderService.getTopOrders(size);
+    @LatencyBudget(millis = 2000)
+    public CompletableFuture<List<OrderDocument>> getTopOrders(@RequestParam(defaultValue = "3") int size) {
+        return requestBulkheads.search(() -> {
+            SearchHits<OrderDocument> searchHits = orderService.getTopOrders(size);
+
+            List<OrderDocument> orderDocumentList = searchHits.stream()
+                    .map(hit -> hit.getContent())
+                    .toList();
 
-        List<OrderDocument> orderDocumentList = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .toList();
+            return orderDocumentList;
+        });
+    }
 
-        return orderDocumentList;
+    /**
+     * Same JSON as /top, limited to the orders of the last orders.hot-store.window-hours (served from the HotOrderStore).
+     */
+    @GetMapping(value = "/top", params = "window=recent")
+    public ResponseEntity<StreamingResponseBody> getRecentTopOrders(@RequestParam(defaultValue = "3") int size) {
+        if (!hotOrderStore.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> hotOrderStore.writeTopOrders(size, out));
     }
 
     @GetMapping("/revenue")
-    public List<OrderDocument> getRevenuePerCustomer2() {
-        SearchHits<OrderDocument> searchHits = orderService.getRevenuePerCustomer();
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<OrderDocument>> getRevenuePerCustomer2() {
+        return requestBulkheads.analytics(() -> {
+            SearchHits<OrderDocument> searchHits = orderService.getRevenuePerCustomer();
 
-        List<OrderDocument> orderDocumentList = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .toList();
+            List<OrderDocument> orderDocumentList = searchHits.stream()
+                    .map(hit -> hit.getContent())
+                    .toList();
 
-        return orderDocumentList;
+            return orderDocumentList;
+        });
     }
 
     @GetMapping("/high-value")
-    public List<OrderDocument> getHighValueOrders(@RequestParam double minAmount) {
-        SearchHits<OrderDocument> searchHits = orderService.getHighValueOrdersPerCustomer(minAmount);
+    @LatencyBudget(millis = 5000)
+    public CompletableFuture<List<OrderDocument>> getHighValueOrders(@RequestParam double minAmount) {
+        return requestBulkheads.analytics(() -> {
+            SearchHits<OrderDocument> searchHits = orderService.getHighValueOrdersPerCustomer(minAmount);
 
-        List<OrderDocument> orderDocumentList = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .toList();
+            List<OrderDocument> orderDocumentList = searchHits.stream()
+                    .map(hit -> hit.getContent())
+                    .toList();
 
-        return orderDocumentList;
+            return orderDocumentList;
+        });
     }
 }
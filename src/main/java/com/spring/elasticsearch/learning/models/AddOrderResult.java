@@ -0,0 +1,4 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO for POST /orders/add: the stored order and whether the write is confirmed (false = accepted by the WAL, not yet confirmed durable)
+public record AddOrderResult(OrderDocument order, boolean confirmed) {}
@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the breakdown of one aggregation of a shard profile, sub-aggregations named "parent > child" (ms)
+public record AggregationTiming(String name, String type, double totalMillis, double initializeMillis,
+                                double collectMillis, double buildAggregationMillis, double reduceMillis) {}
@@ -0,0 +1,9 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+// ✅ DTO returned by the mode=approx endpoints: sampling probability, sample size and the scaled buckets
+public record ApproximateAggregationResponse(double probability,
+                                             long sampledDocCount,
+                                             double estimatedDocCount,
+                                             List<ApproximateBucket> buckets) {}
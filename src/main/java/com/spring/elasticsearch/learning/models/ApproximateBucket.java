@@ -0,0 +1,16 @@
+package com.spring.elasticsearch.learning.models;
+
+/**
+ * ✅ One bucket of a sampled aggregation, scaled back up to the full index.
+ * The *Error fields are ±95% confidence half-widths (value ± error). max is the max seen in the sample,
+ * i.e. a lower bound of the real max.
+ */
+public record ApproximateBucket(String key,
+                                long sampledDocCount,
+                                double docCount,
+                                double docCountError,
+                                double sum,
+                                double sumError,
+                                double avg,
+                                double avgError,
+                                double max) {}
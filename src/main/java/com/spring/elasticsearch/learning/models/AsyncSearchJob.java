@@ -0,0 +1,8 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+// ✅ DTO with the state of one ES async search job and its (possibly partial) category stats, times in epoch ms
+public record AsyncSearchJob(String id, boolean running, boolean partial, long startTimeMillis, Long completionTimeMillis,
+                             long expirationTimeMillis, int totalShards, int completedShards, int failedShards,
+                             List<CategoryStats> result) {}
@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the state and progress of a bulk load session
+public record BulkLoadSessionStatus(String sessionId, String state, long submitted, long indexed, long failed,
+                                    long rejected, int batchSize, int queued, long elapsedMillis, String error) {}
@@ -0,0 +1,26 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Map;
+
+/**
+ * ✅ One write for the _bulk API, keyed by order_id (the document _id), so replaying it is idempotent:
+ * - INDEX: full order document (create or overwrite)
+ * - UPDATE: partial document with ES field names, e.g. { "status": "SHIPPED" }
+ * - DELETE: just the order_id
+ */
+public record BulkOrderOperation(Type type, String orderId, OrderDocument order, Map<String, Object> partialDoc) {
+
+    public enum Type { INDEX, UPDATE, DELETE }
+
+    public static BulkOrderOperation index(OrderDocument order) {
+        return new BulkOrderOperation(Type.INDEX, order.getOrder_id(), order, null);
+    }
+
+    public static BulkOrderOperation update(String orderId, Map<String, Object> partialDoc) {
+        return new BulkOrderOperation(Type.UPDATE, orderId, null, partialDoc);
+    }
+
+    public static BulkOrderOperation delete(String orderId) {
+        return new BulkOrderOperation(Type.DELETE, orderId, null, null);
+    }
+}
@@ -0,0 +1,21 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+/**
+ * ✅ Result of one _bulk request:
+ * - succeeded / failed: items acknowledged / permanently rejected (mapping errors, missing doc on update, ...)
+ * - retryable: items rejected with 429 (write queue full) - send them again after a backoff
+ * - failedOperations: the permanently rejected items themselves (failed == failedOperations.size())
+ */
+public record BulkOutcome(int succeeded, int failed, List<BulkOrderOperation> retryable,
+                          List<BulkOrderOperation> failedOperations, long tookMillis) {
+
+    public static BulkOutcome empty() {
+        return new BulkOutcome(0, 0, List.of(), List.of(), 0);
+    }
+
+    public int rejected() {
+        return retryable.size();
+    }
+}
@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the pool / queue usage and counters of one request bulkhead (search, analytics, ingest)
+public record BulkheadStats(String operationType, int activeThreads, int maxThreads, int queued, int queueCapacity,
+                            long submitted, long completed, long rejected) {}
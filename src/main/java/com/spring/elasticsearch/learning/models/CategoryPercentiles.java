@@ -0,0 +1,6 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Map;
+
+// ✅ DTO with estimated order value percentiles (t-digest) of one category, e.g. {"50.0": 120.0, "95.0": 870.5}
+public record CategoryPercentiles(String category, long orderCount, Map<String, Double> percentiles) {}
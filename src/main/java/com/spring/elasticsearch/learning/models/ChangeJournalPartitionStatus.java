@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the committed position and counters of one change journal partition worker
+public record ChangeJournalPartitionStatus(int partition, String segment, long position,
+                                           long applied, long failed, long retried) {}
@@ -0,0 +1,59 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ✅ Column-oriented result of a bucket aggregation.
+ *
+ * Instead of one DTO (+ map entry) per bucket, every value lives in a primitive array and bucket i is
+ * keys[i] / docCounts[i] / metrics.get(name)[i]. Serialized by Jackson as:
+ *
+ * {
+ *   "keys": ["Alice", "Bob"],
+ *   "docCounts": [12, 7],
+ *   "metrics": {
+ *     "avg_order_value": [310.5, 120.0],
+ *     "max_order_value": [900.0, 250.0]
+ *   }
+ * }
+ */
+public class ColumnarBuckets {
+
+    private static final ColumnarBuckets EMPTY = new ColumnarBuckets(new String[0], new long[0], Collections.emptyMap());
+
+    private final String[] keys;
+    private final long[] docCounts;
+    private final Map<String, double[]> metrics;
+
+    public ColumnarBuckets(String[] keys, long[] docCounts, Map<String, double[]> metrics) {
+        this.keys = keys;
+        this.docCounts = docCounts;
+        this.metrics = metrics;
+    }
+
+    public static ColumnarBuckets empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Allocates all columns up-front for a known bucket count.
+     */
+    public static ColumnarBuckets allocate(int size, String... metricNames) {
+        Map<String, double[]> metrics = new LinkedHashMap<>();
+        for (String metricName : metricNames) {
+            double[] column = new double[size];
+            Arrays.fill(column, Double.NaN);
+            metrics.put(metricName, column);
+        }
+        return new ColumnarBuckets(new String[size], new long[size], metrics);
+    }
+
+    public int size() { return keys.length; }
+
+    public String[] getKeys() { return keys; }
+    public long[] getDocCounts() { return docCounts; }
+    public Map<String, double[]> getMetrics() { return metrics; }
+}
@@ -0,0 +1,20 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Map;
+
+// ✅ DTO for the multi-customer batch endpoint: successful results and per-customer failures side by side
+public class CustomerBatchResponse {
+    private final Map<String, CustomerBatchResult> results;
+    private final Map<String, String> failures;
+    private final long tookMillis;
+
+    public CustomerBatchResponse(Map<String, CustomerBatchResult> results, Map<String, String> failures, long tookMillis) {
+        this.results = results;
+        this.failures = failures;
+        this.tookMillis = tookMillis;
+    }
+
+    public Map<String, CustomerBatchResult> getResults() { return results; }
+    public Map<String, String> getFailures() { return failures; }
+    public long getTookMillis() { return tookMillis; }
+}
@@ -0,0 +1,18 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+import java.util.Map;
+
+// ✅ DTO holding the order list and daily sales of one customer of a batch request
+public class CustomerBatchResult {
+    private final List<OrderDocument> orders;
+    private final Map<String, DailySalesStats> dailySales;
+
+    public CustomerBatchResult(List<OrderDocument> orders, Map<String, DailySalesStats> dailySales) {
+        this.orders = orders;
+        this.dailySales = dailySales;
+    }
+
+    public List<OrderDocument> getOrders() { return orders; }
+    public Map<String, DailySalesStats> getDailySales() { return dailySales; }
+}
@@ -0,0 +1,7 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.time.LocalDate;
+
+// ✅ DTO with an HLL estimate of distinct customers over [from, to] and its ~95% confidence bounds
+public record DistinctCustomersEstimate(LocalDate from, LocalDate to,
+                                        double estimate, double lowerBound, double upperBound) {}
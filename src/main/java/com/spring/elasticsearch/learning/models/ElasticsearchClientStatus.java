@@ -0,0 +1,10 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// ✅ DTO with the active Elasticsearch connection settings (no credentials) and the outcome of the last reload
+public record ElasticsearchClientStatus(List<String> hosts, Map<String, Integer> maxConnections, int connectTimeoutMs,
+                                        int socketTimeoutMs, int connectionRequestTimeoutMs, String reloadFile,
+                                        long reloads, Instant lastReloadAt, String lastReloadError) {}
@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with occupancy and counters of the off-heap hot order store
+public record HotOrderStoreStats(boolean enabled, int capacity, int liveRecords, int customers,
+                                 long offHeapBytes, long writes, long evictions) {}
@@ -0,0 +1,51 @@
+package com.spring.elasticsearch.learning.models;
+
+/**
+ * ✅ Immutable snapshot of the dashboard aggregates kept by IncrementalOrderAggregations.
+ * merge() combines two states covering disjoint sets of orders (the cached state + a delta).
+ */
+public record IncrementalAggregateState(double totalRevenue,
+                                        KeywordCounts statusCounts,
+                                        long paidCount,
+                                        double paidSum,
+                                        double paidMin,
+                                        double paidMax,
+                                        long watermarkMillis,
+                                        long lastFullRecomputeMillis) {
+
+    public IncrementalAggregateState merge(IncrementalAggregateState delta) {
+        return new IncrementalAggregateState(
+                totalRevenue + delta.totalRevenue(),
+                statusCounts.merge(delta.statusCounts()),
+                paidCount + delta.paidCount(),
+                paidSum + delta.paidSum(),
+                paidCount == 0 ? delta.paidMin() : delta.paidCount() == 0 ? paidMin : Math.min(paidMin, delta.paidMin()),
+                paidCount == 0 ? delta.paidMax() : delta.paidCount() == 0 ? paidMax : Math.max(paidMax, delta.paidMax()),
+                delta.watermarkMillis(),
+                lastFullRecomputeMillis);
+    }
+
+    /**
+     * ✅ Applies a known change of already counted orders (overwrite, status change), keeping the watermark.
+     * min / max can't be taken back, they stay until the next full recompute.
+     */
+    public IncrementalAggregateState adjust(double revenueDelta, KeywordCounts statusDelta, long paidCountDelta, double paidSumDelta) {
+        long newPaidCount = paidCount + paidCountDelta;
+        return new IncrementalAggregateState(
+                totalRevenue + revenueDelta,
+                statusCounts.merge(statusDelta),
+                newPaidCount,
+                newPaidCount == 0 ? 0.0 : paidSum + paidSumDelta,
+                newPaidCount == 0 ? 0.0 : paidMin,
+                newPaidCount == 0 ? 0.0 : paidMax,
+                watermarkMillis,
+                lastFullRecomputeMillis);
+    }
+
+    public RevenueStatsResponse paidRevenueStats() {
+        if (paidCount == 0) {
+            return new RevenueStatsResponse(0.0, 0.0, 0.0, 0.0);
+        }
+        return new RevenueStatsResponse(paidSum, paidSum / paidCount, paidMin, paidMax);
+    }
+}
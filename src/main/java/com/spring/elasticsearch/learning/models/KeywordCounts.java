@@ -0,0 +1,148 @@
+package com.spring.elasticsearch.learning.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ✅ Counts keyed by KeywordDictionary code - the primitive replacement of Map<String, Long>
+ * (e.g. order count per status).
+ *
+ * Entries are kept in insertion order in two parallel arrays (code, count) plus a code -> position index,
+ * so there is no boxed Long / Map.Entry per key. Strings only reappear when the counts are written as JSON:
+ * the serializer writes the same object as the Map did ({ "PAID": 12, "PENDING": 3 }).
+ * Values the dictionary can't encode any more (it is full) are counted in a plain String -> Long map instead of
+ * being dropped; they come after the encoded keys.
+ *
+ * 🔑 Remember: not thread-safe while being filled - build it, then publish it (return / volatile field).
+ */
+@JsonSerialize(using = KeywordCounts.Serializer.class)
+public final class KeywordCounts {
+
+    private final KeywordDictionary dictionary;
+
+    private int[] codes;
+    private long[] counts;
+    private int size;
+
+    // code -> position + 1, 0 = not present ....
+    private int[] positions = new int[0];
+
+    // Counts of values without a code (dictionary full), created on first use ....
+    private Map<String, Long> overflow;
+
+    public KeywordCounts(KeywordDictionary dictionary, int expectedSize) {
+        this.dictionary = dictionary;
+        this.codes = new int[Math.max(expectedSize, 4)];
+        this.counts = new long[codes.length];
+    }
+
+    private void add(int code, long count) {
+        if (code >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(code + 1, positions.length * 2));
+        }
+        int position = positions[code] - 1;
+        if (position >= 0) {
+            counts[position] += count;
+            return;
+        }
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        codes[size] = code;
+        counts[size] = count;
+        positions[code] = ++size;
+    }
+
+    public void add(String value, long count) {
+        if (value == null) {
+            return;
+        }
+        int code = dictionary.encode(value);
+        if (code == KeywordDictionary.NOT_ENCODED) {
+            addOverflow(value, count);
+        } else {
+            add(code, count);
+        }
+    }
+
+    public long get(String value) {
+        int code = dictionary.codeOf(value);
+        if (code < 0) {
+            return overflow == null || value == null ? 0 : overflow.getOrDefault(value, 0L);
+        }
+        return code >= positions.length || positions[code] == 0 ? 0 : counts[positions[code] - 1];
+    }
+
+    public int size() {
+        return size + (overflow == null ? 0 : overflow.size());
+    }
+
+    private void addOverflow(String value, long count) {
+        if (overflow == null) {
+            overflow = new LinkedHashMap<>();
+        }
+        overflow.merge(value, count, Long::sum);
+    }
+
+    /**
+     * ✅ New instance with the counts of both (this order first, then keys only present in other).
+     */
+    public KeywordCounts merge(KeywordCounts other) {
+        KeywordCounts merged = new KeywordCounts(dictionary, size + other.size);
+        for (int i = 0; i < size; i++) {
+            merged.add(codes[i], counts[i]);
+        }
+        for (int i = 0; i < other.size; i++) {
+            merged.add(other.codes[i], other.counts[i]);
+        }
+        if (overflow != null) {
+            overflow.forEach(merged::addOverflow);
+        }
+        if (other.overflow != null) {
+            other.overflow.forEach(merged::addOverflow);
+        }
+        return merged;
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(dictionary.decode(codes[i]), counts[i]);
+        }
+        if (overflow != null) {
+            map.putAll(overflow);
+        }
+        return map;
+    }
+
+    static class Serializer extends StdSerializer<KeywordCounts> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(KeywordCounts.class);
+        }
+
+        @Override
+        public void serialize(KeywordCounts value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < value.size; i++) {
+                generator.writeNumberField(value.dictionary.decode(value.codes[i]), value.counts[i]);
+            }
+            if (value.overflow != null) {
+                for (Map.Entry<String, Long> entry : value.overflow.entrySet()) {
+                    generator.writeNumberField(entry.getKey(), entry.getValue());
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ✅ Thread-safe dictionary encoding of low-cardinality keyword values (customer, status, category, ...).
+ *
+ * Every distinct value gets a dense int code, so fixed-width records, counters and indexes can store an int
+ * instead of a String reference, and the String itself exists once no matter how many hits / buckets carried it.
+ * Codes are never reused; decode() is a plain array read.
+ *
+ * 🔑 Remember: a dictionary only grows. Once maxSize values are known, encode() returns -1 (NOT_ENCODED) and
+ * intern() hands the value back unchanged, so an unexpectedly high-cardinality field can't eat the heap.
+ */
+public class KeywordDictionary {
+
+    public static final int NOT_ENCODED = -1;
+
+    private final String name;
+    private final int maxSize;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public KeywordDictionary(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the code of value, encoding it on first use; NOT_ENCODED for null or once the dictionary is full.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NOT_ENCODED;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size == maxSize) {
+                return NOT_ENCODED;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            values = current; // publish the new entry before the code becomes visible ....
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @return the code of value, or NOT_ENCODED if the value was never encoded (nothing can match it).
+     */
+    public int codeOf(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NOT_ENCODED : code;
+    }
+
+    public String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    /**
+     * ✅ Canonical instance of value: the per-hit / per-bucket copy can be dropped right away.
+     */
+    public String intern(String value) {
+        int code = encode(value);
+        return code == NOT_ENCODED ? value : values[code];
+    }
+
+    /**
+     * ✅ Like intern(), but never encodes: the canonical instance if value is already known, otherwise value itself.
+     * For strings that come straight from a request and may not be real keyword values at all.
+     */
+    public String canonical(String value) {
+        int code = codeOf(value);
+        return code == NOT_ENCODED ? value : values[code];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,13 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.Map;
+
+/**
+ * ✅ One line of the change journal (NDJSON):
+ * {"op":"index","order_id":"O-1","order":{"order_id":"O-1","customer":"Alice","order_date":"2024-05-01","totalAmount":120.5,"status":"PAID"}}
+ * {"op":"update","order_id":"O-1","doc":{"status":"SHIPPED"}}
+ * {"op":"delete","order_id":"O-1"}
+ *
+ * "order" uses the same JSON as POST /orders/add, "doc" uses ES field names (e.g. total_amount).
+ */
+public record OrderChangeEvent(String op, String order_id, OrderDocument order, Map<String, Object> doc) {}
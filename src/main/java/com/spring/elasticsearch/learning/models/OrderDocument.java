@@ -1,13 +1,17 @@
 package com.spring.elasticsearch.learning.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 
+import java.time.Instant;
 import java.time.LocalDate;
 
-@Document(indexName = "orders_pagination")
+// Note: createIndex = false because OrdersIndexService creates the index (with the configured index sort) ....
+@Document(indexName = "orders_pagination", createIndex = false)
 public class OrderDocument {
 
     @Id
@@ -29,6 +33,18 @@ public class OrderDocument {
     @Field(type = FieldType.Keyword)
     private String status;
 
+    @Field(type = FieldType.Keyword)
+    private String category;
+
+    // Set by the app when the order is written - used as the watermark of incremental aggregations ....
+    @Field(name = "ingested_at", type = FieldType.Date, format = DateFormat.epoch_millis)
+    private Instant ingestedAt;
+
+    // Position of the record in the order write-ahead log (WAL writes only): a replay of an older record is a noop ....
+    @JsonIgnore
+    @Field(name = "wal_seq", type = FieldType.Long)
+    private Long walSeq;
+
     // Getters & Setters
 
 
@@ -64,6 +80,14 @@ public class OrderDocument {
         this.order_date = order_date;
     }
 
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
     public Double getTotalAmount() {
         return totalAmount;
     }
@@ -79,5 +103,21 @@ public class OrderDocument {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    public Instant getIngestedAt() {
+        return ingestedAt;
+    }
+
+    public void setIngestedAt(Instant ingestedAt) {
+        this.ingestedAt = ingestedAt;
+    }
+
+    public Long getWalSeq() {
+        return walSeq;
+    }
+
+    public void setWalSeq(Long walSeq) {
+        this.walSeq = walSeq;
+    }
 }
 
@@ -0,0 +1,7 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// ✅ DTO with t-digest order value percentiles over [from, to], merged from daily sketches
+public record OrderValuePercentiles(LocalDate from, LocalDate to, long orderCount, Map<String, Double> percentiles) {}
@@ -0,0 +1,6 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+// ✅ DTO wrapping the usual response body of a ?profile=true request with the profiles of the searches it sent
+public record ProfiledResponse(Object result, List<SearchProfileSummary> profile) {}
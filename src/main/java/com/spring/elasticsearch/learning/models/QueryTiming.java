@@ -0,0 +1,4 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the time of one top-level Lucene query of a shard profile (ms)
+public record QueryTiming(String type, String description, double millis) {}
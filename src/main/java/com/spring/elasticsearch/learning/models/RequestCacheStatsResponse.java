@@ -0,0 +1,10 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with shard request cache stats of one node (from GET _nodes/stats/indices/request_cache)
+public record RequestCacheStatsResponse(String nodeId,
+                                        String nodeName,
+                                        long hitCount,
+                                        long missCount,
+                                        long evictions,
+                                        long memorySizeInBytes,
+                                        double hitRate) {}
@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the current concurrency limit and counters of one traffic class (SEARCH / INGEST / AGGREGATION)
+public record ResilienceStats(String operationType, double limit, int inFlight, long rejected,
+                             long retries, long shed, String circuitState) {}
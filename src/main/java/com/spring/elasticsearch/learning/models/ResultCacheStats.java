@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the size and hit / miss counters of both tiers of the order search result cache
+public record ResultCacheStats(int heapEntries, int offHeapEntries, long offHeapBytesUsed, long offHeapCapacity,
+                               long heapHits, long offHeapHits, long misses, long invalidations) {}
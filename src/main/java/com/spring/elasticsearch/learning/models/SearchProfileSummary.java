@@ -0,0 +1,7 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+// ✅ DTO with the condensed ES "profile" of one search sent while handling a ?profile=true request (shards slowest first)
+public record SearchProfileSummary(String client, String index, long tookMillis, boolean timedOut,
+                                   List<ShardProfileSummary> shards) {}
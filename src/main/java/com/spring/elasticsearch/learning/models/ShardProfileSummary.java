@@ -0,0 +1,8 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.util.List;
+
+// ✅ DTO with the time one shard spent on query rewrite, query execution, collectors and aggregations (ms)
+public record ShardProfileSummary(String shard, double totalMillis, double rewriteMillis, double queryMillis,
+                                  String collector, double collectorMillis, List<QueryTiming> queries,
+                                  List<AggregationTiming> aggregations) {}
@@ -0,0 +1,6 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the rolling latency of one query fingerprint (latencies in ms, measured around the HTTP call)
+public record SlowQueryStats(String fingerprint, String client, String request, String normalizedBody, long count,
+                             long slowCount, double p50Millis, double p95Millis, double p99Millis, double maxMillis,
+                             long lastTookMillis) {}
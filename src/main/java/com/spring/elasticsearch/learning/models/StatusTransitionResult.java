@@ -0,0 +1,5 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO for a mass status transition (update_by_query): counters as reported by Elasticsearch
+public record StatusTransitionResult(String from, String to, long total, long updated, long noops,
+                                     long versionConflicts, long tookMillis) {}
@@ -0,0 +1,7 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO for a single status change: outcome, statuses before/after and how many optimistic attempts it took
+public record StatusUpdateResult(String id, Outcome outcome, String previousStatus, String status, int attempts) {
+
+    public enum Outcome { UPDATED, UNCHANGED, NOT_FOUND, INVALID_TRANSITION, CONFLICT }
+}
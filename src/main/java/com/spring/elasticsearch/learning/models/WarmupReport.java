@@ -0,0 +1,8 @@
+package com.spring.elasticsearch.learning.models;
+
+import java.time.Instant;
+import java.util.List;
+
+// ✅ DTO with the outcome of the startup warm-up (StartupWarmup)
+public record WarmupReport(String state, Instant startedAt, long durationMillis, int tasks, int succeeded,
+                           List<String> failed, List<String> notFinished, List<String> hotCustomers) {}
@@ -0,0 +1,6 @@
+package com.spring.elasticsearch.learning.models;
+
+// ✅ DTO with the append / durable / replay positions and counters of the order write-ahead log
+public record WriteAheadLogStatus(long activeSegment, int writePosition, long durableRecords,
+                                  long replaySegment, int replayPosition, long replayed, long failed,
+                                  long quarantined) {}
@@ -0,0 +1,122 @@
+package com.spring.elasticsearch.learning.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ✅ AIMD concurrency limit for one traffic class:
+ * - additive increase: every call answered under the target latency adds 1/limit (about +1 per "window" of calls)
+ * - multiplicative decrease: a 429 or a call slower than the target multiplies the limit by decrease-factor
+ *
+ * Callers that can't get a slot within the acquire timeout are rejected instead of queueing up in front of a
+ * cluster that is already saturated.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double decreaseFactor;
+    private final long targetLatencyMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // Guarded by lock ....
+    private double limit;
+    private int inFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(double initialLimit, double minLimit, double maxLimit,
+                                      double decreaseFactor, long targetLatencyMs) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.decreaseFactor = decreaseFactor;
+        this.targetLatencyMs = targetLatencyMs;
+    }
+
+    public boolean tryAcquire(long timeoutMs) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long latencyMs) {
+        lock.lock();
+        try {
+            if (latencyMs <= targetLatencyMs) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+                released.signal();
+            } else {
+                limit = Math.max(minLimit, limit * decreaseFactor);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onOverload() {
+        lock.lock();
+        try {
+            limit = Math.max(minLimit, limit * decreaseFactor);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double utilization() {
+        lock.lock();
+        try {
+            return inFlight / Math.max(1.0, Math.floor(limit));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,164 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.*;
+import com.spring.elasticsearch.learning.models.ColumnarBuckets;
+import com.spring.elasticsearch.learning.models.KeywordCounts;
+import com.spring.elasticsearch.learning.models.KeywordDictionary;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Shared decoding of aggregation responses into ColumnarBuckets.
+ *
+ * Every method in OrderPaginationAggregations repeats the same walk:
+ * ElasticsearchAggregations → aggregationsAsMap() → ElasticsearchAggregation → Aggregate → buckets → DTO per bucket.
+ * This class does that walk once and writes the bucket values straight into primitive columns:
+ * no intermediate HashMap / DTO per bucket and no boxing of counts and metric values.
+ *
+ * 🔑 Remember: metric sub-aggregations are read generically (sum, avg, min, max, value_count, cardinality),
+ * a missing or empty metric is NaN.
+ */
+public final class AggregationDecoder {
+
+    private AggregationDecoder() {
+    }
+
+    /**
+     * @return the named top-level Aggregate of a search response, or null if ES returned none.
+     */
+    public static Aggregate aggregate(SearchHits<?> searchHits, String name) {
+        if (!(searchHits.getAggregations() instanceof ElasticsearchAggregations aggregations)) {
+            return null;
+        }
+        ElasticsearchAggregation wrapper = aggregations.get(name);
+        return wrapper == null ? null : wrapper.aggregation().getAggregate();
+    }
+
+    /**
+     * ✅ Callback for forEachBucket - receives the values of one bucket without any per-bucket DTO.
+     */
+    @FunctionalInterface
+    public interface BucketVisitor {
+        void visit(int index, String key, long docCount, Map<String, Aggregate> subAggregations);
+    }
+
+    /**
+     * Decodes a terms (string / long / double terms) or date_histogram aggregation.
+     * Keys are the string form of the bucket key (key_as_string for dates).
+     */
+    public static ColumnarBuckets decodeBuckets(Aggregate aggregate, String... metricNames) {
+        int size = bucketCount(aggregate);
+        if (size == 0) {
+            return ColumnarBuckets.empty();
+        }
+
+        ColumnarBuckets columns = ColumnarBuckets.allocate(size, metricNames);
+        forEachBucket(aggregate, (i, key, docCount, subAggregations) -> {
+            columns.getKeys()[i] = key;
+            columns.getDocCounts()[i] = docCount;
+            for (String metricName : metricNames) {
+                columns.getMetrics().get(metricName)[i] = metricValue(subAggregations.get(metricName));
+            }
+        });
+        return columns;
+    }
+
+    /**
+     * ✅ Doc count per bucket key of a terms aggregation, keys encoded with the given dictionary
+     * (no String -> Long map entry per bucket, see KeywordCounts).
+     */
+    public static KeywordCounts keywordCounts(Aggregate aggregate, KeywordDictionary dictionary) {
+        KeywordCounts counts = new KeywordCounts(dictionary, bucketCount(aggregate));
+        forEachBucket(aggregate, (i, key, docCount, subAggregations) -> counts.add(key, docCount));
+        return counts;
+    }
+
+    /**
+     * @return number of buckets of a terms / date_histogram aggregation, 0 for anything else.
+     */
+    public static int bucketCount(Aggregate aggregate) {
+        if (aggregate == null) {
+            return 0;
+        }
+        switch (aggregate._kind()) {
+            case Sterms:        return aggregate.sterms().buckets().array().size();
+            case Lterms:        return aggregate.lterms().buckets().array().size();
+            case Dterms:        return aggregate.dterms().buckets().array().size();
+            case DateHistogram: return aggregate.dateHistogram().buckets().array().size();
+            default:            return 0;
+        }
+    }
+
+    /**
+     * Visits the buckets of a terms (string / long / double terms) or date_histogram aggregation in response order.
+     * Unexpected aggregation types are ignored (no bucket is visited).
+     */
+    public static void forEachBucket(Aggregate aggregate, BucketVisitor visitor) {
+        if (aggregate == null) {
+            return;
+        }
+
+        switch (aggregate._kind()) {
+            case Sterms: {
+                List<StringTermsBucket> buckets = aggregate.sterms().buckets().array();
+                for (int i = 0; i < buckets.size(); i++) {
+                    StringTermsBucket bucket = buckets.get(i);
+                    visitor.visit(i, bucket.key().stringValue(), bucket.docCount(), bucket.aggregations());
+                }
+                break;
+            }
+            case Lterms: {
+                List<LongTermsBucket> buckets = aggregate.lterms().buckets().array();
+                for (int i = 0; i < buckets.size(); i++) {
+                    LongTermsBucket bucket = buckets.get(i);
+                    String key = bucket.keyAsString() != null ? bucket.keyAsString() : String.valueOf(bucket.key());
+                    visitor.visit(i, key, bucket.docCount(), bucket.aggregations());
+                }
+                break;
+            }
+            case Dterms: {
+                List<DoubleTermsBucket> buckets = aggregate.dterms().buckets().array();
+                for (int i = 0; i < buckets.size(); i++) {
+                    DoubleTermsBucket bucket = buckets.get(i);
+                    String key = bucket.keyAsString() != null ? bucket.keyAsString() : String.valueOf(bucket.key());
+                    visitor.visit(i, key, bucket.docCount(), bucket.aggregations());
+                }
+                break;
+            }
+            case DateHistogram: {
+                List<DateHistogramBucket> buckets = aggregate.dateHistogram().buckets().array();
+                for (int i = 0; i < buckets.size(); i++) {
+                    DateHistogramBucket bucket = buckets.get(i);
+                    String key = bucket.keyAsString() != null ? bucket.keyAsString() : String.valueOf(bucket.key());
+                    visitor.visit(i, key, bucket.docCount(), bucket.aggregations());
+                }
+                break;
+            }
+            default:
+                // unexpected type — nothing to visit
+                break;
+        }
+    }
+
+    /**
+     * Reads a single-value metric aggregation, NaN if the type is not a single-value metric.
+     */
+    public static double metricValue(Aggregate aggregate) {
+        if (aggregate == null) {
+            return Double.NaN;
+        }
+        switch (aggregate._kind()) {
+            case Sum:         return aggregate.sum().value();
+            case Avg:         return aggregate.avg().value();
+            case Min:         return aggregate.min().value();
+            case Max:         return aggregate.max().value();
+            case ValueCount:  return aggregate.valueCount().value();
+            case Cardinality: return aggregate.cardinality().value();
+            default:          return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ✅ Streams bucket aggregations to the HTTP response with a Jackson JsonGenerator.
+ *
+ * Output has the same shape the Map based endpoints produce:
+ *
+ * {
+ *   "Alice": { "orderCount": 3, "avgOrderValue": 310.5, "maxOrderValue": 900.0 },
+ *   "Bob":   { ... }
+ * }
+ *
+ * ✅ Why: building Map<String, CustomerOrderStats> first means the whole response exists twice on the heap
+ * (DTOs + Jackson buffer) before the first byte is sent. Here every bucket is written (and flushed in chunks)
+ * as soon as it is read from the Aggregate, so time-to-first-byte and peak heap no longer grow with bucket count.
+ */
+@Component
+public class AggregationStreamWriter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Writes one JSON object per bucket, keyed by the bucket key.
+     *
+     * @param docCountField JSON field holding the bucket doc_count (e.g. "orderCount")
+     * @param jsonFields    JSON field names, same order as metricNames
+     * @param metricNames   sub-aggregation names (single-value metrics) to write into jsonFields
+     */
+    public void writeKeyedBuckets(Aggregate aggregate, OutputStream out,
+                                  String docCountField, String[] jsonFields, String[] metricNames) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            try {
+                AggregationDecoder.forEachBucket(aggregate, (index, key, docCount, subAggregations) -> {
+                    try {
+                        generator.writeObjectFieldStart(key);
+                        generator.writeNumberField(docCountField, docCount);
+                        for (int i = 0; i < metricNames.length; i++) {
+                            generator.writeNumberField(jsonFields[i],
+                                    AggregationDecoder.metricValue(subAggregations.get(metricNames[i])));
+                        }
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Streamed bodies bypass ProfiledResponseAdvice: with ?profile=true this writes the same envelope by hand,
+     * { "result": <streamed body>, "profile": [ ... ] }. Without profiling the body is written as is.
+     *
+     * @param profiling QueryProfiling.current(), read on the thread that ran the search
+     */
+    public void writeProfiled(QueryProfiling profiling, OutputStream out, StreamingResponseBody body) throws IOException {
+        if (profiling == null) {
+            body.writeTo(out);
+            return;
+        }
+        // The generators close their target when done: keep the response stream open for the rest of the envelope ....
+        OutputStream unclosable = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        out.write("{\"result\":".getBytes(StandardCharsets.UTF_8));
+        body.writeTo(unclosable);
+        out.write(",\"profile\":".getBytes(StandardCharsets.UTF_8));
+        objectMapper.writeValue(unclosable, profiling.getProfiles());
+        out.write('}');
+    }
+}
@@ -0,0 +1,191 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.ApproximateAggregationResponse;
+import com.spring.elasticsearch.learning.models.ApproximateBucket;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Sampled ("mode=approx") variants of the dashboard aggregations.
+ *
+ * GET orders_pagination/_search
+ * {
+ *   "size": 0,
+ *   "aggs": {
+ *     "sampled": {
+ *       "random_sampler": { "probability": 0.1, "seed": 42 },
+ *       "aggs": {
+ *         "by_key": {
+ *           "terms": { "field": "customer", "size": 5 },
+ *           "aggs": { "amount": { "extended_stats": { "field": "total_amount" } } }
+ *         }
+ *       }
+ *     }
+ *   }
+ * }
+ *
+ * random_sampler only looks at ~probability of the matching docs (it skips the rest instead of scoring them),
+ * so the aggregation cost drops roughly linearly with the probability. ES already scales the results of its
+ * sub-aggregations by 1/p when it finalizes the sample: bucket doc_count, sum and sum_of_squares come back as
+ * estimates of the full values and are used as is (avg / std_deviation are ratios, unaffected). Only the
+ * doc_count of the random_sampler itself is the raw sample size and is divided by p here.
+ *
+ * Error bounds (95%, Bernoulli sampling with probability p), computed on the sample, i.e. after undoing the
+ * scaling: n = doc_count * p docs of the bucket in the sample, Σx² = sum_of_squares * p:
+ * - count: 1.96 * sqrt(n * (1 - p)) / p
+ * - sum:   1.96 * sqrt((1 - p) * Σx²) / p
+ * - avg:   1.96 * std_deviation / sqrt(n) * sqrt(1 - p)
+ *
+ * 🔑 Remember:
+ * - probability must be in (0, 0.5] (or exactly 1 = no sampling), per ES.
+ * - the Java client (8.10) has no typed random_sampler, so the request uses Aggregation._custom(...) and the
+ *   response is read from the raw JSON of the custom aggregate (typed keys: "sterms#by_key", "extended_stats#amount").
+ * - a fixed seed makes the sample (and therefore the request) repeatable, so it can still use the request cache.
+ */
+@Service
+public class ApproximateAggregations {
+
+    private static final double Z_95 = 1.96;
+
+    @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Value("${orders.approx.default-probability:0.1}")
+    private double defaultProbability;
+
+    @Value("${orders.approx.seed:42}")
+    private int seed;
+
+    /**
+     * Sampled version of getRevenuePerCustomer(): top 5 customers with order count and revenue.
+     */
+    public ApproximateAggregationResponse getRevenuePerCustomer(Double probability) {
+        return sampledTermsStats(null, "customer", 5, probability);
+    }
+
+    /**
+     * Sampled version of getOrdersGroupedByStatus(): order count per status.
+     */
+    public ApproximateAggregationResponse getOrdersGroupedByStatus(Double probability) {
+        return sampledTermsStats(null, "status", 10, probability);
+    }
+
+    /**
+     * Sampled version of getCategoryStatsLast30Days(): PAID orders of the last 330 days per category.
+     */
+    public ApproximateAggregationResponse getCategoryStatsLast30Days(Double probability) {
+        Query boolQuery = Query.of(q -> q
+                .bool(b -> b
+                        .must(
+                                Query.of(q1 -> q1.term(t -> t.field("status").value("PAID"))),
+                                Query.of(q2 -> q2.range(r -> r.field("order_date").gte(JsonData.of(CacheableDateMath.startOfDayDaysAgo(330)))))
+                        )
+                )
+        );
+        return sampledTermsStats(boolQuery, "category", 5, probability);
+    }
+
+    private ApproximateAggregationResponse sampledTermsStats(Query filter, String field, int size, Double requestedProbability) {
+        double probability = requestedProbability != null ? requestedProbability : defaultProbability;
+        if (!(probability > 0 && probability <= 0.5) && probability != 1.0) {
+            throw new IllegalArgumentException("probability must be in (0, 0.5] or 1, got " + probability);
+        }
+
+        // ✅ Step 1: terms + extended_stats (extended_stats gives sum_of_squares for the error bounds) ....
+        Aggregation byKeyAgg = Aggregation.of(a -> a
+                .terms(t -> t.field(field).size(size))
+                .aggregations("amount", Aggregation.of(sub -> sub.extendedStats(es -> es.field("total_amount"))))
+        );
+
+        // ✅ Step 2: wrap it in random_sampler (not typed in this client version → _custom) ....
+        Aggregation sampledAgg = Aggregation.of(a -> a
+                ._custom("random_sampler", Map.of("probability", probability, "seed", seed))
+                .aggregations("by_key", byKeyAgg)
+        );
+
+        NativeQuery query = OrderPaginationAggregations.aggregationQuery()
+                .withQuery(filter != null ? filter : Query.of(q -> q.matchAll(m -> m)))
+                .withAggregation("sampled", sampledAgg)
+                .build();
+
+        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+        Aggregate sampled = AggregationDecoder.aggregate(searchHits, "sampled");
+        if (sampled == null || !sampled._isCustom()) {
+            return new ApproximateAggregationResponse(probability, 0, 0, List.of());
+        }
+
+        // ✅ Step 3: read the sample - only the sampler's own doc_count is unscaled ....
+        JsonObject sampledJson = sampled._custom().toJson().asJsonObject();
+        long sampledDocCount = longValue(sampledJson, "doc_count");
+
+        List<ApproximateBucket> buckets = new ArrayList<>();
+        JsonObject byKey = typedKey(sampledJson, "by_key");
+        if (byKey != null) {
+            for (JsonValue bucketValue : byKey.getJsonArray("buckets")) {
+                buckets.add(scaleBucket(bucketValue.asJsonObject(), probability));
+            }
+        }
+
+        return new ApproximateAggregationResponse(probability, sampledDocCount, sampledDocCount / probability, buckets);
+    }
+
+    // Bucket values are already scaled by ES, only the error bounds need the sample back (see class comment) ....
+    private ApproximateBucket scaleBucket(JsonObject bucket, double p) {
+        String key = bucket.get("key") instanceof JsonNumber number ? number.toString() : bucket.getString("key");
+        long docCount = longValue(bucket, "doc_count");
+        long n = Math.round(docCount * p);
+
+        JsonObject amount = typedKey(bucket, "amount");
+        double sum = doubleValue(amount, "sum");
+        double sumOfSquares = doubleValue(amount, "sum_of_squares") * p;
+        double avg = doubleValue(amount, "avg");
+        double stdDeviation = doubleValue(amount, "std_deviation");
+        double max = doubleValue(amount, "max");
+
+        double docCountError = Z_95 * Math.sqrt(n * (1 - p)) / p;
+        double sumError = Z_95 * Math.sqrt((1 - p) * sumOfSquares) / p;
+        double avgError = n == 0 ? Double.NaN : Z_95 * stdDeviation / Math.sqrt(n) * Math.sqrt(1 - p);
+
+        return new ApproximateBucket(key, n, docCount, docCountError, sum, sumError, avg, avgError, max);
+    }
+
+    // With typed_keys, sub-aggregations are keyed "<type>#<name>" - find ours by name ....
+    private static JsonObject typedKey(JsonObject json, String name) {
+        if (json == null) {
+            return null;
+        }
+        for (Map.Entry<String, JsonValue> entry : json.entrySet()) {
+            if (entry.getKey().endsWith("#" + name) && entry.getValue().getValueType() == JsonValue.ValueType.OBJECT) {
+                return entry.getValue().asJsonObject();
+            }
+        }
+        return null;
+    }
+
+    private static long longValue(JsonObject json, String field) {
+        return json != null && json.get(field) instanceof JsonNumber number ? number.longValue() : 0L;
+    }
+
+    // Metrics of empty buckets come back as null → NaN ....
+    private static double doubleValue(JsonObject json, String field) {
+        return json != null && json.get(field) instanceof JsonNumber number ? number.doubleValue() : Double.NaN;
+    }
+}
@@ -0,0 +1,285 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ShardStatistics;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearch;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearchDocumentResponseBase;
+import com.spring.elasticsearch.learning.models.AsyncSearchJob;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ✅ Long-running analytics aggregations as Elasticsearch async searches: submit, then poll / stream by id.
+ *
+ * POST orders_pagination/_async_search?wait_for_completion_timeout=1s&keep_alive=1d&keep_on_completion=true&batched_reduce_size=5
+ * {
+ *   "size": 0,
+ *   "query": { "bool": { "must": [ { "term": { "status": "PAID" } }, { "range": { "order_date": { "gte": ... } } } ] } },
+ *   "aggs": { "orders_by_category": { "terms": { "field": "category", "size": 5 }, "aggs": { ... } } }
+ * }
+ *
+ * GET    _async_search/<id>     -> { "id": ..., "is_running": true, "is_partial": true, "response": { "_shards": ..., "aggregations": ... } }
+ * DELETE _async_search/<id>
+ *
+ * 🔑 Remember:
+ * - ES keeps running the search (and keeps the result for keep_alive) after submit returns, so no request thread or
+ *   HTTP connection waits on a heavy job - only the short submit and the non-blocking polls reach ES.
+ * - partial aggregations show up every batched_reduce_size shard results; until the first partial reduce the result is empty.
+ * - the stream endpoint polls from a small scheduler of its own, the SSE connection itself holds no thread.
+ *   A plain poll (get) waits at most orders.async-search.max-wait-ms: it holds a bulkhead thread while it waits,
+ *   so a client that wants to wait for the result follows the stream instead.
+ * - only ids submitted by this instance can be read or deleted (until ES expires them) - any other async search
+ *   of the cluster answers 404. Jobs submitted before a restart are not reachable any more.
+ * - all calls are ElasticsearchResilience.untracked: a poll waiting for completion isn't a slow search for the
+ *   AIMD limiter, and a submit is never retried (a 503 after ES accepted it would start a second job). The submit
+ *   is still shed like any aggregation while the cluster is overloaded.
+ */
+@Service
+public class AsyncAggregationSearches {
+
+    private static final Logger logger = LogManager.getLogger(AsyncAggregationSearches.class);
+
+    @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    // How long ES keeps a job (running or finished) after the last submit / get ....
+    @Value("${orders.async-search.keep-alive:1d}")
+    private String keepAlive;
+
+    // Submit waits this long so short jobs come back finished in one round trip ....
+    @Value("${orders.async-search.wait-for-completion-ms:1000}")
+    private long waitForCompletionMillis;
+
+    @Value("${orders.async-search.max-wait-ms:500}")
+    private long maxWaitMillis;
+
+    @Value("${orders.async-search.batched-reduce-size:5}")
+    private long batchedReduceSize;
+
+    @Value("${orders.async-search.max-days:3650}")
+    private int maxDays;
+
+    @Value("${orders.async-search.stream.poll-interval-ms:1000}")
+    private long streamPollIntervalMillis;
+
+    @Value("${orders.async-search.stream.timeout-ms:600000}")
+    private long streamTimeoutMillis;
+
+    @Value("${orders.async-search.stream.threads:2}")
+    private int streamThreads;
+
+    private ScheduledExecutorService pollers;
+
+    // Jobs submitted by this instance: id -> expiration time (epoch ms) reported by ES ....
+    private final Map<String, Long> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        pollers = Executors.newScheduledThreadPool(Math.max(1, streamThreads), runnable -> {
+            Thread thread = new Thread(runnable, "async-search-poller-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollers.shutdownNow();
+    }
+
+    /**
+     * ✅ Submits the category stats (same DSL as getCategoryStatsLast30Days) over the last "days" days.
+     */
+    public AsyncSearchJob submitCategoryStats(int days) {
+        if (days < 1 || days > maxDays) {
+            throw new IllegalArgumentException("days must be between 1 and " + maxDays);
+        }
+        String indexName = operations.getIndexCoordinatesFor(OrderDocument.class).getIndexName();
+
+        AsyncSearchJob job = ElasticsearchResilience.untracked(OperationType.AGGREGATION, () ->
+                toJob(template().execute(client -> client.asyncSearch().submit(s -> s
+                        .index(indexName)
+                        .size(0)
+                        .query(OrderPaginationAggregations.paidOrdersSince(days))
+                        .aggregations("orders_by_category", OrderPaginationAggregations.categoryStatsAggregation())
+                        .waitForCompletionTimeout(millis(waitForCompletionMillis))
+                        .keepAlive(Time.of(t -> t.time(keepAlive)))
+                        .keepOnCompletion(true)
+                        .batchedReduceSize(batchedReduceSize), Void.class))));
+
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(expiration -> expiration < now);
+        jobs.put(job.id(), job.expirationTimeMillis());
+        return job;
+    }
+
+    /**
+     * ✅ Current state of a job, waiting up to waitMillis (capped at orders.async-search.max-wait-ms) for it to finish.
+     *
+     * @return empty if the id isn't a job of this instance or ES doesn't know it (deleted or past keep_alive)
+     */
+    public Optional<AsyncSearchJob> get(String id, long waitMillis) {
+        if (!isOwnJob(id)) {
+            return Optional.empty();
+        }
+        long wait = Math.min(Math.max(0, waitMillis), maxWaitMillis);
+        try {
+            return Optional.of(ElasticsearchResilience.untracked(OperationType.SEARCH, () ->
+                    toJob(template().execute(client -> client.asyncSearch().get(g -> {
+                        g.id(id);
+                        if (wait > 0) {
+                            g.waitForCompletionTimeout(millis(wait));
+                        }
+                        return g;
+                    }, Void.class)))));
+        } catch (RuntimeException e) {
+            if (isNotFound(e)) {
+                jobs.remove(id);
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * ✅ Cancels a running job / frees the stored result.
+     *
+     * @return false if the id isn't a job of this instance or ES doesn't know it
+     */
+    public boolean delete(String id) {
+        if (!isOwnJob(id)) {
+            return false;
+        }
+        try {
+            ElasticsearchResilience.untracked(OperationType.SEARCH, () ->
+                    template().execute(client -> client.asyncSearch().delete(d -> d.id(id))));
+            jobs.remove(id);
+            return true;
+        } catch (RuntimeException e) {
+            if (isNotFound(e)) {
+                jobs.remove(id);
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean isOwnJob(String id) {
+        Long expiration = jobs.get(id);
+        if (expiration != null && expiration < System.currentTimeMillis()) {
+            jobs.remove(id);
+            return false;
+        }
+        return expiration != null;
+    }
+
+    /**
+     * ✅ Pushes the job state as server-sent events every poll interval: "progress" while it runs, then one "done"
+     * (or "error" / "not-found") event before the stream completes.
+     */
+    public SseEmitter stream(String id) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        AtomicReference<ScheduledFuture<?>> poll = new AtomicReference<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        Runnable stop = () -> {
+            stopped.set(true);
+            ScheduledFuture<?> future = poll.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(error -> stop.run());
+
+        poll.set(pollers.scheduleWithFixedDelay(() -> {
+            if (stopped.get()) {
+                return;
+            }
+            try {
+                Optional<AsyncSearchJob> job = get(id, 0);
+                if (job.isEmpty()) {
+                    emitter.send(SseEmitter.event().name("not-found").data(id));
+                    stop.run();
+                    emitter.complete();
+                } else if (job.get().running()) {
+                    emitter.send(SseEmitter.event().name("progress").data(job.get()));
+                } else {
+                    emitter.send(SseEmitter.event().name("done").data(job.get()));
+                    stop.run();
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                // Client went away: the job keeps running in ES and can still be fetched by id ....
+                stop.run();
+                emitter.completeWithError(e);
+            } catch (RuntimeException e) {
+                logger.warn("Polling async search {} failed: {}", id, e.getMessage());
+                stop.run();
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(String.valueOf(e.getMessage())));
+                    emitter.complete();
+                } catch (IOException sendFailed) {
+                    emitter.completeWithError(sendFailed);
+                }
+            }
+        }, 0, streamPollIntervalMillis, TimeUnit.MILLISECONDS));
+        // The first poll may already have finished the stream before the future was published ....
+        if (stopped.get()) {
+            stop.run();
+        }
+
+        return emitter;
+    }
+
+    private AsyncSearchJob toJob(AsyncSearchDocumentResponseBase<Void> response) {
+        AsyncSearch<Void> search = response.response();
+        ShardStatistics shards = search.shards();
+        int total = shards.total().intValue();
+        int failed = shards.failed().intValue();
+        int completed = shards.successful().intValue() + failed + (shards.skipped() == null ? 0 : shards.skipped().intValue());
+
+        return new AsyncSearchJob(response.id(), response.isRunning(), response.isPartial(),
+                response.startTimeInMillis(), response.completionTimeInMillis(), response.expirationTimeInMillis(),
+                total, Math.min(completed, total), failed,
+                OrderPaginationAggregations.categoryStats(search.aggregations().get("orders_by_category")));
+    }
+
+    private ElasticsearchTemplate template() {
+        return (ElasticsearchTemplate) operations;
+    }
+
+    private static Time millis(long millis) {
+        return Time.of(t -> t.time(millis + "ms"));
+    }
+
+    private static boolean isNotFound(RuntimeException e) {
+        return (e instanceof ElasticsearchException ese && ese.status() == 404)
+                || (e.getCause() instanceof ElasticsearchException cause && cause.status() == 404);
+    }
+}
@@ -0,0 +1,415 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.elasticsearch.learning.models.BulkLoadSessionStatus;
+import com.spring.elasticsearch.learning.models.BulkOrderOperation;
+import com.spring.elasticsearch.learning.models.BulkOutcome;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ✅ Managed "bulk load session" for large backfills into orders_pagination.
+ *
+ * start:
+ * PUT orders_pagination/_settings
+ * { "index": { "refresh_interval": "-1", "number_of_replicas": "0" } }
+ *
+ * load: orders submitted to the session are queued and indexed by parallel _bulk workers (OrderBulkIndexer).
+ * The batch size adapts to the cluster (AIMD): it grows by batch-step while _bulk answers under target-latency-ms
+ * without rejections, and is halved on a 429 or a slow response.
+ *
+ * finish:
+ * PUT orders_pagination/_settings          <- original refresh_interval / number_of_replicas
+ * POST orders_pagination/_refresh
+ * POST orders_pagination/_forcemerge?max_num_segments=1   (optional)
+ *
+ * 🔑 Remember:
+ * - refresh_interval=-1 means nothing indexed during the session is searchable until the final refresh.
+ * - batches go through OrderBulkIndexer.bulkLoad(): no per-batch mirrors or cache clears, finish / abort
+ *   invalidate the search cache and the incremental aggregations once.
+ * - replicas=0 means no redundancy during the load; the replicas are rebuilt (file copy) when restored.
+ * - abort, a worker failing for good, and a crash all restore the original settings: they are written to
+ *   orders.bulk-load.state-file when the session starts and restored on the next startup if still there.
+ * - that restore runs as an ApplicationRunner right after OrdersIndexService (no ES call while beans are created),
+ *   and before StartupWarmup, so the warm-up and the first requests already see the original refresh_interval.
+ */
+@Service
+@Order(1)
+public class BulkLoadSessionService implements ApplicationRunner {
+
+    private static final Logger logger = LogManager.getLogger(BulkLoadSessionService.class);
+
+    @Autowired
+    @Qualifier("ingestElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private OrderBulkIndexer orderBulkIndexer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IncrementalOrderAggregations incrementalOrderAggregations;
+
+    @Autowired
+    private OrderSearchResultCache orderSearchResultCache;
+
+    @Value("${orders.bulk-load.workers:4}")
+    private int workers;
+
+    @Value("${orders.bulk-load.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${orders.bulk-load.initial-batch-size:500}")
+    private int initialBatchSize;
+
+    @Value("${orders.bulk-load.min-batch-size:100}")
+    private int minBatchSize;
+
+    @Value("${orders.bulk-load.max-batch-size:10000}")
+    private int maxBatchSize;
+
+    @Value("${orders.bulk-load.batch-step:250}")
+    private int batchStep;
+
+    @Value("${orders.bulk-load.target-latency-ms:1000}")
+    private long targetLatencyMs;
+
+    @Value("${orders.bulk-load.max-retries:8}")
+    private int maxRetries;
+
+    @Value("${orders.bulk-load.state-file:./bulk-load-session.json}")
+    private String stateFile;
+
+    private final AtomicReference<Session> active = new AtomicReference<>();
+
+    private volatile BulkLoadSessionStatus lastStatus;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        restoreAfterCrash();
+    }
+
+    /**
+     * ✅ A previous session that didn't finish (JVM crash / kill) left its original settings behind: restore them.
+     */
+    public void restoreAfterCrash() {
+        Path path = Path.of(stateFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Map<?, ?> original = objectMapper.readValue(path.toFile(), Map.class);
+            applySettings((String) original.get("refresh_interval"), (String) original.get("number_of_replicas"));
+            Files.deleteIfExists(path);
+            logger.warn("Restored index settings left by an unfinished bulk load session: {}", original);
+        } catch (Exception e) {
+            logger.error("Could not restore index settings from {}", path.toAbsolutePath(), e);
+        }
+    }
+
+    public BulkLoadSessionStatus start() {
+        Session session = new Session();
+        if (!active.compareAndSet(null, session)) {
+            throw new IllegalStateException("A bulk load session is already running: " + active.get().id);
+        }
+
+        try {
+            Settings settings = indexOps().getSettings(true).flatten();
+            session.originalRefreshInterval = settingOrDefault(settings, "index.refresh_interval", "1s");
+            session.originalReplicas = settingOrDefault(settings, "index.number_of_replicas", "1");
+
+            Files.writeString(Path.of(stateFile), objectMapper.writeValueAsString(Map.of(
+                    "refresh_interval", session.originalRefreshInterval,
+                    "number_of_replicas", session.originalReplicas)));
+            applySettings("-1", "0");
+        } catch (IOException | RuntimeException e) {
+            active.set(null);
+            throw new IllegalStateException("Could not start bulk load session: " + e.getMessage(), e);
+        }
+
+        session.startWorkers();
+        logger.info("Bulk load session {} started (refresh_interval was {}, replicas {})",
+                session.id, session.originalRefreshInterval, session.originalReplicas);
+        return session.status("RUNNING");
+    }
+
+    /**
+     * ✅ Queues orders for the session; blocks (backpressure) while the queue is full.
+     * Rejected (IllegalStateException) once finish / abort stopped accepting: the workers may already be gone,
+     * an order queued after that would be acknowledged but never indexed.
+     */
+    public BulkLoadSessionStatus submit(String sessionId, List<OrderDocument> orders) throws InterruptedException {
+        Session session = session(sessionId);
+        // Read lock: stopAccepting() (write lock) waits for submits in progress, none starts after it ....
+        session.acceptLock.readLock().lockInterruptibly();
+        try {
+            if (!session.accepting) {
+                throw new IllegalStateException("Bulk load session " + sessionId + " no longer accepts orders");
+            }
+            for (OrderDocument order : orders) {
+                if (order.getOrder_id() == null) {
+                    order.setOrder_id(UUID.randomUUID().toString());
+                }
+                while (!session.queue.offer(order, 1, TimeUnit.SECONDS)) {
+                    if (session.error != null) {
+                        throw new IllegalStateException("Bulk load session failed: " + session.error);
+                    }
+                }
+                session.submitted.incrementAndGet();
+            }
+        } finally {
+            session.acceptLock.readLock().unlock();
+        }
+        return session.status("RUNNING");
+    }
+
+    /**
+     * ✅ Indexes everything still queued, restores the settings, refreshes and optionally force-merges.
+     */
+    public BulkLoadSessionStatus finish(String sessionId, Integer forceMergeSegments) throws InterruptedException {
+        Session session = session(sessionId);
+        session.stopAccepting();
+        session.awaitWorkers();
+
+        String state = session.error == null ? "FINISHED" : "FAILED";
+        close(session, state);
+
+        if (session.error == null) {
+            indexOps().refresh();
+            // The session's orders became searchable just now, long after their ingested_at ....
+            incrementalOrderAggregations.invalidate();
+        }
+        // Lookups cached during the session (refresh_interval=-1) don't contain its orders ....
+        orderSearchResultCache.invalidateAll();
+        if (session.error == null) {
+            if (forceMergeSegments != null && forceMergeSegments > 0) {
+                ((ElasticsearchTemplate) operations).execute(client -> client.indices().forcemerge(f -> f
+                        .index(indexName())
+                        .maxNumSegments(forceMergeSegments.longValue())));
+            }
+        }
+        return lastStatus;
+    }
+
+    /**
+     * ✅ Drops whatever is still queued and restores the settings. Already indexed orders stay indexed.
+     */
+    public BulkLoadSessionStatus abort(String sessionId) throws InterruptedException {
+        Session session = session(sessionId);
+        session.stopAccepting();
+        session.queue.clear();
+        session.pool.shutdownNow();
+        session.awaitWorkers();
+        close(session, "ABORTED");
+        indexOps().refresh();
+        incrementalOrderAggregations.invalidate();
+        orderSearchResultCache.invalidateAll();
+        return lastStatus;
+    }
+
+    public BulkLoadSessionStatus getStatus() {
+        Session session = active.get();
+        return session != null ? session.status(session.error == null ? "RUNNING" : "FAILED") : lastStatus;
+    }
+
+    private Session session(String sessionId) {
+        Session session = active.get();
+        if (session == null || !session.id.equals(sessionId)) {
+            throw new IllegalArgumentException("No running bulk load session " + sessionId);
+        }
+        return session;
+    }
+
+    // Restores the original settings exactly once per session ....
+    private void close(Session session, String state) {
+        if (!active.compareAndSet(session, null)) {
+            return;
+        }
+        try {
+            applySettings(session.originalRefreshInterval, session.originalReplicas);
+            Files.deleteIfExists(Path.of(stateFile));
+        } catch (IOException | RuntimeException e) {
+            // state-file is kept, so the next startup retries the restore ....
+            logger.error("Bulk load session {} could not restore index settings", session.id, e);
+        }
+        lastStatus = session.status(state);
+        logger.info("Bulk load session {} {}: {}", session.id, state, lastStatus);
+    }
+
+    private void applySettings(String refreshInterval, String replicas) {
+        ((ElasticsearchTemplate) operations).execute(client -> client.indices().putSettings(p -> p
+                .index(indexName())
+                .settings(s -> s
+                        .refreshInterval(t -> t.time(refreshInterval))
+                        .numberOfReplicas(replicas))));
+    }
+
+    private static String settingOrDefault(Settings settings, String key, String defaultValue) {
+        Object value = settings.get(key);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    private IndexOperations indexOps() {
+        return operations.indexOps(OrderDocument.class);
+    }
+
+    private String indexName() {
+        return operations.getIndexCoordinatesFor(OrderDocument.class).getIndexName();
+    }
+
+    private final class Session {
+
+        private final String id = UUID.randomUUID().toString();
+        private final long startedAt = System.currentTimeMillis();
+        private final BlockingQueue<OrderDocument> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        private final AtomicInteger batchSize = new AtomicInteger(initialBatchSize);
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private String originalRefreshInterval;
+        private String originalReplicas;
+
+        private volatile boolean accepting = true;
+        private final ReentrantReadWriteLock acceptLock = new ReentrantReadWriteLock();
+        private volatile String error;
+
+        private void startWorkers() {
+            for (int i = 0; i < workers; i++) {
+                pool.submit(this::work);
+            }
+            pool.shutdown();
+        }
+
+        private void stopAccepting() {
+            acceptLock.writeLock().lock();
+            try {
+                accepting = false;
+            } finally {
+                acceptLock.writeLock().unlock();
+            }
+        }
+
+        private void awaitWorkers() throws InterruptedException {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                logger.debug("Bulk load session {} draining, {} queued", id, queue.size());
+            }
+        }
+
+        private void work() {
+            try {
+                while (error == null && (accepting || !queue.isEmpty())) {
+                    List<BulkOrderOperation> batch = nextBatch();
+                    if (!batch.isEmpty()) {
+                        send(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                logger.error("Bulk load session {} failed, restoring index settings", id, e);
+                close(this, "FAILED");
+            }
+        }
+
+        private List<BulkOrderOperation> nextBatch() throws InterruptedException {
+            int size = batchSize.get();
+            List<BulkOrderOperation> batch = new ArrayList<>(size);
+            OrderDocument first = queue.poll(200, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return batch;
+            }
+            batch.add(BulkOrderOperation.index(first));
+            List<OrderDocument> rest = new ArrayList<>(size - 1);
+            queue.drainTo(rest, size - 1);
+            rest.forEach(order -> batch.add(BulkOrderOperation.index(order)));
+            return batch;
+        }
+
+        // Sends one batch, retrying 429 items; adapts the batch size to how the cluster coped ....
+        private void send(List<BulkOrderOperation> batch) throws InterruptedException {
+            List<BulkOrderOperation> pending = batch;
+            long backoffMs = 100;
+            for (int attempt = 0; ; attempt++) {
+                long start = System.nanoTime();
+                BulkOutcome outcome;
+                try {
+                    outcome = orderBulkIndexer.bulkLoad(pending);
+                } catch (RuntimeException e) {
+                    if (attempt >= maxRetries) {
+                        throw e;
+                    }
+                    decreaseBatchSize();
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, 30_000);
+                    continue;
+                }
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                indexed.addAndGet(outcome.succeeded());
+                failed.addAndGet(outcome.failed());
+                rejected.addAndGet(outcome.rejected());
+
+                if (outcome.rejected() > 0 || latencyMs > targetLatencyMs) {
+                    decreaseBatchSize();
+                } else {
+                    batchSize.updateAndGet(size -> Math.min(maxBatchSize, size + batchStep));
+                }
+
+                pending = outcome.retryable();
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (attempt >= maxRetries) {
+                    throw new IllegalStateException(pending.size() + " orders still rejected after " + maxRetries + " retries");
+                }
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+
+        private void decreaseBatchSize() {
+            batchSize.updateAndGet(size -> Math.max(minBatchSize, size / 2));
+        }
+
+        private BulkLoadSessionStatus status(String state) {
+            return new BulkLoadSessionStatus(id, state, submitted.get(), indexed.get(), failed.get(), rejected.get(),
+                    batchSize.get(), queue.size(), System.currentTimeMillis() - startedAt, error);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.spring.elasticsearch.learning.service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * ✅ Date math that the shard request cache can actually cache.
+ *
+ * "now-30d/d" is resolved by every shard at query time, so ES treats the request as non-deterministic
+ * and skips the shard request cache for it. Resolving the boundary in the app to an absolute, day-rounded
+ * date ("2024-11-01") gives an identical request body for the whole day -> repeated dashboard loads hit the cache.
+ */
+public final class CacheableDateMath {
+
+    private CacheableDateMath() {
+    }
+
+    /**
+     * Equivalent of "now-{days}d/d" (UTC), rounded down to the start of the day.
+     */
+    public static String startOfDayDaysAgo(int days) {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(days).toString();
+    }
+}
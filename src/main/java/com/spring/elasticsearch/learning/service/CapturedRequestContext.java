@@ -0,0 +1,91 @@
+package com.spring.elasticsearch.learning.service;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.function.Supplier;
+
+/**
+ * ✅ The request-scoped values a bulkhead task needs (deadline, profiling, dashboard preference), copied off the
+ * HTTP request when the task is submitted (RequestContextTaskDecorator).
+ *
+ * 🔑 Remember: the servlet's RequestAttributes can't be handed to another thread - as soon as the Tomcat thread
+ * returns the CompletableFuture, FrameworkServlet marks them completed and every getAttribute() throws
+ * "request is not active anymore". A queued (or just slower) task would fail before reaching ES.
+ * These objects are plain Java objects, so they stay usable for as long as the task runs.
+ */
+public final class CapturedRequestContext {
+
+    private static final ThreadLocal<CapturedRequestContext> CURRENT = new ThreadLocal<>();
+
+    private final RequestDeadline deadline;
+    private final QueryProfiling profiling;
+    private final String dashboardPreference;
+
+    private CapturedRequestContext(RequestDeadline deadline, QueryProfiling profiling, String dashboardPreference) {
+        this.deadline = deadline;
+        this.profiling = profiling;
+        this.dashboardPreference = dashboardPreference;
+    }
+
+    /**
+     * @return the context of the request being handled on this thread: the one a bulkhead task runs with,
+     * otherwise read from the (still active) request attributes. Null without any request.
+     */
+    public static CapturedRequestContext capture() {
+        CapturedRequestContext running = CURRENT.get();
+        if (running != null) {
+            return running;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        try {
+            return new CapturedRequestContext(
+                    (RequestDeadline) attributes.getAttribute(RequestDeadline.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST),
+                    (QueryProfiling) attributes.getAttribute(QueryProfiling.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST),
+                    attributes instanceof ServletRequestAttributes servletAttributes
+                            ? DashboardSessionPreference.fromHeader(servletAttributes.getRequest().getHeader(DashboardSessionPreference.SESSION_HEADER))
+                            : null);
+        } catch (IllegalStateException e) {
+            // Request already completed (e.g. read from a thread that still holds stale attributes) ....
+            return null;
+        }
+    }
+
+    // Runs the work with this context installed on the current thread (restores the previous one after) ....
+    public <T> T call(Supplier<T> work) {
+        CapturedRequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public RequestDeadline getDeadline() {
+        return deadline;
+    }
+
+    public QueryProfiling getProfiling() {
+        return profiling;
+    }
+
+    public String getDashboardPreference() {
+        return dashboardPreference;
+    }
+}
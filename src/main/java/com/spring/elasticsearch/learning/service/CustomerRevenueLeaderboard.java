@@ -0,0 +1,364 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.spring.elasticsearch.learning.models.CustomerRevenue;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ✅ In-process, exact "top customers by PAID revenue" leaderboard.
+ *
+ * getTopCustomersByRevenue() runs a filtered terms + sum aggregation over the whole index on every call, and the
+ * result is approximate (terms buckets are picked per shard, see shard_size). This leaderboard keeps exact running
+ * totals per customer in memory instead:
+ *
+ * - writes: every order written through OrdersPaginationService is applied as a delta (recordOrder).
+ * - reads: the top-N is kept as an immutable snapshot, so a read is just a volatile read (microseconds).
+ * - drift: orders written by other processes, deletes and refresh timing are corrected by a periodic reconcile
+ *   that recomputes exact totals with a paged composite aggregation. A write applied while the scan runs is
+ *   replayed on top of its result only if it happened after the page holding its customer was requested - an
+ *   earlier write is (once refreshed) already in that page, replaying it would count it twice. A write not yet
+ *   refreshed when its page was read is missing until the next reconcile.
+ *
+ * GET orders_pagination/_search
+ * {
+ *   "size": 0,
+ *   "query": { "term": { "status": "PAID" } },
+ *   "aggs": {
+ *     "paid_revenue_by_customer": {
+ *       "composite": {
+ *         "size": 1000,
+ *         "sources": [ { "customer": { "terms": { "field": "customer" } } } ],
+ *         "after": { "customer": "<last customer of previous page>" }
+ *       },
+ *       "aggs": { "total_spent": { "sum": { "field": "total_amount" } } }
+ *     }
+ *   }
+ * }
+ */
+@Service
+public class CustomerRevenueLeaderboard {
+
+    private static final Logger logger = LogManager.getLogger(CustomerRevenueLeaderboard.class);
+
+    // Ranking order: highest revenue first, customer name breaks ties ....
+    private static final Comparator<CustomerRevenue> RANKING = Comparator
+            .comparingDouble(CustomerRevenue::getTotalSpent).reversed()
+            .thenComparing(CustomerRevenue::getCustomer);
+
+    private static final int COMPOSITE_PAGE_SIZE = 1000;
+
+    @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    // Number of entries kept in the read snapshot - requests for more fall back to the ES aggregation ....
+    @Value("${orders.leaderboard.snapshot-size:100}")
+    private int snapshotSize;
+
+    // Upper bound of the per-order contributions kept between two reconciles ....
+    @Value("${orders.leaderboard.max-tracked-orders:1000000}")
+    private int maxTrackedOrders;
+
+    private final Object lock = new Object();
+
+    // customer -> exact PAID revenue. Guarded by lock ....
+    private final Map<String, Double> totals = new HashMap<>();
+
+    // Same entries as totals, kept sorted for top-N. Guarded by lock ....
+    private final TreeSet<CustomerRevenue> ranking = new TreeSet<>(RANKING);
+
+    // order key -> what that order currently adds to the totals, so re-saving an order replaces its contribution
+    // instead of adding it twice. Only orders written since the last reconcile started are kept (at most
+    // max-tracked-orders): a reconcile covers the older ones, a re-save of those can drift until the next one.
+    // Customer names are interned (KeywordDictionaries), so every entry shares one String per customer. Guarded by lock ....
+    private final Map<String, Contribution> contributions = new HashMap<>();
+
+    // Deltas applied while a reconcile scan runs, null otherwise. Guarded by lock ....
+    private List<ScanWrite> writesDuringScan;
+
+    // One reconcile at a time (scheduler + OrderStatusService), so writesDuringScan belongs to a single scan ....
+    private final Object reconcileLock = new Object();
+
+    private volatile List<CustomerRevenue> topSnapshot = List.of();
+
+    private volatile boolean ready;
+
+    // A requested reconcile is waiting for a scheduler thread ....
+    private final AtomicBoolean reconcileRequested = new AtomicBoolean();
+
+    private record Contribution(String customer, double amount, long recordedAt) {}
+
+    private record ScanWrite(String customer, double delta, long at) {}
+
+    // A composite page: when it was requested and the last customer it covers ....
+    private record ScannedPage(long requestedAt, String lastCustomer) {}
+
+    /**
+     * ✅ True once the leaderboard has been loaded from Elasticsearch at least once.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return top customers by PAID revenue, or null if the snapshot can't answer (not loaded or size too large).
+     */
+    public List<CustomerRevenue> getTopCustomers(int size) {
+        if (!ready || size > snapshotSize) {
+            return null;
+        }
+        List<CustomerRevenue> snapshot = topSnapshot;
+        return snapshot.size() <= size ? snapshot : snapshot.subList(0, size);
+    }
+
+    /**
+     * ✅ Applies a written order to the running totals. Only PAID orders count as revenue,
+     * so an order moving away from PAID removes its previous contribution.
+     */
+    public void recordOrder(OrderDocument order) {
+        String orderKey = order.getId() != null ? order.getId() : order.getOrder_id();
+        if (orderKey == null || order.getCustomer() == null) {
+            return;
+        }
+
+        double amount = "PAID".equals(order.getStatus()) && order.getTotalAmount() != null ? order.getTotalAmount() : 0.0;
+        String customer = keywordDictionaries.customers().intern(order.getCustomer());
+
+        synchronized (lock) {
+            Contribution previous = track(orderKey, customer, amount);
+            if (previous != null) {
+                applyDelta(previous.customer(), -previous.amount());
+            }
+            applyDelta(customer, amount);
+            publishSnapshot();
+        }
+    }
+
+    public void recordOrders(Collection<OrderDocument> orders) {
+        orders.forEach(this::recordOrder);
+    }
+
+    /**
+     * ✅ Applies a partial status update. Unlike recordOrder, the order may only be known through the reconciled
+     * ES totals, so its previous status tells us what it currently contributes.
+     */
+    public void recordStatusChange(String orderKey, String customer, double amount, String previousStatus, String newStatus) {
+        if (orderKey == null || customer == null) {
+            return;
+        }
+        double newAmount = "PAID".equals(newStatus) ? amount : 0.0;
+        customer = keywordDictionaries.customers().intern(customer);
+
+        synchronized (lock) {
+            Contribution previous = track(orderKey, customer, newAmount);
+            if (previous != null) {
+                applyDelta(previous.customer(), -previous.amount());
+            } else if ("PAID".equals(previousStatus)) {
+                applyDelta(customer, -amount);
+            }
+            applyDelta(customer, newAmount);
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * ✅ Removes the contribution of a deleted order, if it was written through this process.
+     * Other orders are only in the ES totals - the next reconcile drops them.
+     */
+    public void removeOrder(String orderKey) {
+        synchronized (lock) {
+            Contribution previous = contributions.remove(orderKey);
+            if (previous != null) {
+                applyDelta(previous.customer(), -previous.amount());
+                publishSnapshot();
+            }
+        }
+    }
+
+    /**
+     * ✅ Runs a reconcile on the scheduler as soon as possible, off the caller's thread (mass status transitions).
+     * Requests made while one is still waiting collapse into it; one made while a reconcile runs gets its own, since
+     * that scan may have read the pages before the change.
+     */
+    public void requestReconcile() {
+        if (reconcileRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(() -> {
+                reconcileRequested.set(false);
+                reconcile();
+            }, Instant.now());
+        }
+    }
+
+    /**
+     * ✅ Recomputes exact totals from Elasticsearch and replaces the in-memory state.
+     */
+    @Scheduled(initialDelayString = "${orders.leaderboard.initial-delay-ms:0}",
+            fixedDelayString = "${orders.leaderboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        synchronized (reconcileLock) {
+            long scanStart = System.nanoTime();
+            synchronized (lock) {
+                writesDuringScan = new ArrayList<>();
+            }
+            Map<String, Double> exactTotals;
+            List<ScannedPage> pages = new ArrayList<>();
+            try {
+                exactTotals = loadPaidRevenueByCustomer(pages);
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    writesDuringScan = null;
+                }
+                logger.warn("Leaderboard reconcile failed, keeping current totals: {}", e.getMessage());
+                return;
+            }
+
+            int replayed = 0;
+            synchronized (lock) {
+                totals.clear();
+                ranking.clear();
+                exactTotals.forEach(this::addToTotal);
+                for (ScanWrite write : writesDuringScan) {
+                    if (!seenByScan(write, pages)) {
+                        addToTotal(write.customer(), write.delta());
+                        replayed++;
+                    }
+                }
+                writesDuringScan = null;
+                // The scan covers every order written before it started ....
+                contributions.values().removeIf(contribution -> contribution.recordedAt() < scanStart);
+                publishSnapshot();
+            }
+            ready = true;
+            logger.debug("Leaderboard reconciled with {} customers, {} writes replayed", exactTotals.size(), replayed);
+        }
+    }
+
+    // True if the write happened before the page holding its customer was requested (pages come in customer order) ....
+    private static boolean seenByScan(ScanWrite write, List<ScannedPage> pages) {
+        for (ScannedPage page : pages) {
+            if (write.customer().compareTo(page.lastCustomer()) <= 0) {
+                return write.at() < page.requestedAt();
+            }
+        }
+        return false; // no page reached the customer: it had no PAID revenue when the scan ended ....
+    }
+
+    private Map<String, Double> loadPaidRevenueByCustomer(List<ScannedPage> pages) {
+        Map<String, Double> result = new HashMap<>();
+        Map<String, FieldValue> afterKey = null;
+
+        Query paidFilter = Query.of(q -> q.term(t -> t.field("status").value("PAID")));
+
+        do {
+            Map<String, FieldValue> after = afterKey;
+            Aggregation compositeAgg = Aggregation.of(a -> a
+                    .composite(c -> {
+                        c.size(COMPOSITE_PAGE_SIZE)
+                                .sources(List.of(Map.of("customer", CompositeAggregationSource.of(s -> s.terms(t -> t.field("customer"))))));
+                        if (after != null) {
+                            c.after(after);
+                        }
+                        return c;
+                    })
+                    .aggregations("total_spent", Aggregation.of(sub -> sub.sum(s -> s.field("total_amount"))))
+            );
+
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(paidFilter)
+                    .withAggregation("paid_revenue_by_customer", compositeAgg)
+                    .withMaxResults(0)
+                    .build();
+
+            long requestedAt = System.nanoTime();
+            SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+            Aggregate aggregate = AggregationDecoder.aggregate(searchHits, "paid_revenue_by_customer");
+            if (aggregate == null || !aggregate.isComposite()) {
+                break;
+            }
+
+            CompositeAggregate composite = aggregate.composite();
+            String lastCustomer = null;
+            for (CompositeBucket bucket : composite.buckets().array()) {
+                String customer = keywordDictionaries.customers().intern(bucket.key().get("customer").stringValue());
+                result.put(customer, AggregationDecoder.metricValue(bucket.aggregations().get("total_spent")));
+                lastCustomer = customer;
+            }
+            if (lastCustomer != null) {
+                pages.add(new ScannedPage(requestedAt, lastCustomer));
+            }
+
+            // No after_key (or an empty page) means we have seen every customer ....
+            afterKey = composite.buckets().array().isEmpty() ? null : composite.afterKey();
+        } while (afterKey != null && !afterKey.isEmpty());
+
+        return result;
+    }
+
+    // Caller holds lock. Returns the previous contribution of the order; beyond max-tracked-orders new orders
+    // are applied but not tracked (a re-save before the next reconcile then drifts) ....
+    private Contribution track(String orderKey, String customer, double amount) {
+        Contribution contribution = new Contribution(customer, amount, System.nanoTime());
+        if (contributions.size() >= maxTrackedOrders && !contributions.containsKey(orderKey)) {
+            return null;
+        }
+        return contributions.put(orderKey, contribution);
+    }
+
+    // Caller holds lock ....
+    private void applyDelta(String customer, double delta) {
+        addToTotal(customer, delta);
+        if (writesDuringScan != null) {
+            writesDuringScan.add(new ScanWrite(customer, delta, System.nanoTime()));
+        }
+    }
+
+    // Caller holds lock ....
+    private void addToTotal(String customer, double delta) {
+        Double current = totals.get(customer);
+        if (current != null) {
+            ranking.remove(new CustomerRevenue(customer, current));
+        }
+        double updated = (current == null ? 0.0 : current) + delta;
+        totals.put(customer, updated);
+        ranking.add(new CustomerRevenue(customer, updated));
+    }
+
+    // Caller holds lock ....
+    private void publishSnapshot() {
+        List<CustomerRevenue> top = new ArrayList<>(Math.min(snapshotSize, ranking.size()));
+        for (CustomerRevenue entry : ranking) {
+            if (top.size() == snapshotSize) {
+                break;
+            }
+            top.add(entry);
+        }
+        topSnapshot = Collections.unmodifiableList(top);
+    }
+}
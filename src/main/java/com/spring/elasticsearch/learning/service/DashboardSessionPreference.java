@@ -0,0 +1,34 @@
+package com.spring.elasticsearch.learning.service;
+
+/**
+ * ✅ Stable "preference" per dashboard session.
+ *
+ * GET orders_pagination/_search?preference=dashboard-<session-id>&request_cache=true
+ *
+ * The shard request cache lives on each shard copy (primary or replica). Without a preference ES spreads
+ * repeated requests across copies, so each copy has to warm up its own cache. Sending the same preference
+ * string for a dashboard session routes its requests to the same copies, which are already warm.
+ */
+public final class DashboardSessionPreference {
+
+    public static final String SESSION_HEADER = "X-Dashboard-Session";
+
+    private DashboardSessionPreference() {
+    }
+
+    /**
+     * @return preference for the current HTTP request, or null (ES default routing) if there is no session header.
+     */
+    public static String current() {
+        CapturedRequestContext context = CapturedRequestContext.capture();
+        return context == null ? null : context.getDashboardPreference();
+    }
+
+    static String fromHeader(String session) {
+        if (session == null || session.isBlank()) {
+            return null;
+        }
+        // Preference values starting with "_" are reserved by ES (e.g. _local, _only_nodes) ....
+        return "dashboard-" + session.trim();
+    }
+}
@@ -0,0 +1,25 @@
+package com.spring.elasticsearch.learning.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * ✅ Thrown when a call is shed (circuit open / no concurrency slot) or Elasticsearch keeps answering 429
+ * after all retries. Surfaces as 503 so clients back off instead of seeing a generic 500.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ElasticsearchOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OperationType operationType;
+
+    public ElasticsearchOverloadedException(OperationType operationType, String message) {
+        super(message);
+        this.operationType = operationType;
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+}
@@ -0,0 +1,349 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.transport.TransportException;
+import com.spring.elasticsearch.learning.models.ResilienceStats;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Resilience layer applied to every Elasticsearch call made through ResilientElasticsearchTemplate
+ * (operations.search, repository.save, raw client calls via execute, ...).
+ *
+ * 1️⃣ Admission: each OperationType has an AIMD concurrency limit (AdaptiveConcurrencyLimiter).
+ * 2️⃣ Shedding: AGGREGATION calls are rejected first - while the circuit breaker is open (too many consecutive
+ *    429 / 503 from the cluster) or while SEARCH / INGEST are close to their own limits.
+ * 3️⃣ Retry: 429 answers (and 502 / 503 / 504 of SEARCH / AGGREGATION reads) are retried with "full jitter"
+ *    exponential backoff:
+ *    sleep = random(0, min(max-backoff, base-backoff * 2^attempt))
+ *    so retrying clients don't hit the recovering cluster in lockstep.
+ *    A 429 means ES rejected the request before executing it; a 502 / 503 / 504 from a proxy or a node can
+ *    arrive after the write was applied, so INGEST calls are not retried on those (no duplicate auto-id orders).
+ *
+ * 🔑 Remember:
+ * - the operation type comes from ResilientElasticsearchTemplate (aggregations vs searches vs writes) or from
+ *   withOperationType(...) around raw client calls.
+ * - a rejected call surfaces as ElasticsearchOverloadedException (503), never as a 500.
+ * - untracked(...) calls skip 1️⃣ and 3️⃣ (see there), only the shedding of aggregations applies.
+ */
+@Component
+public class ElasticsearchResilience {
+
+    private static final Logger logger = LogManager.getLogger(ElasticsearchResilience.class);
+
+    private static final Set<Integer> RETRYABLE_READ_STATUS = Set.of(429, 502, 503, 504);
+    private static final Set<Integer> RETRYABLE_WRITE_STATUS = Set.of(429);
+
+    private static final ThreadLocal<OperationType> CURRENT_TYPE = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> UNTRACKED = new ThreadLocal<>();
+
+    @Value("${orders.resilience.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${orders.resilience.base-backoff-ms:50}")
+    private long baseBackoffMs;
+
+    @Value("${orders.resilience.max-backoff-ms:2000}")
+    private long maxBackoffMs;
+
+    @Value("${orders.resilience.limiter.initial-limit:20}")
+    private double initialLimit;
+
+    @Value("${orders.resilience.limiter.min-limit:2}")
+    private double minLimit;
+
+    @Value("${orders.resilience.limiter.max-limit:200}")
+    private double maxLimit;
+
+    @Value("${orders.resilience.limiter.decrease-factor:0.7}")
+    private double decreaseFactor;
+
+    @Value("${orders.resilience.limiter.acquire-timeout-ms:200}")
+    private long acquireTimeoutMs;
+
+    @Value("${orders.resilience.limiter.target-latency-ms.search:500}")
+    private long searchTargetLatencyMs;
+
+    @Value("${orders.resilience.limiter.target-latency-ms.ingest:1000}")
+    private long ingestTargetLatencyMs;
+
+    @Value("${orders.resilience.limiter.target-latency-ms.aggregation:2000}")
+    private long aggregationTargetLatencyMs;
+
+    @Value("${orders.resilience.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${orders.resilience.breaker.open-ms:10000}")
+    private long openMs;
+
+    // AGGREGATION is shed while SEARCH or INGEST use more than this share of their limit ....
+    @Value("${orders.resilience.breaker.shed-utilization:0.9}")
+    private double shedUtilization;
+
+    private final Map<OperationType, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, AtomicLong> retries = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, AtomicLong> shed = new EnumMap<>(OperationType.class);
+
+    private final Object breakerLock = new Object();
+
+    // Guarded by breakerLock ....
+    private int consecutiveOverloads;
+    private long openUntil;
+    private boolean halfOpenProbeInFlight;
+
+    @FunctionalInterface
+    public interface ElasticsearchCall<T> {
+        T call() throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        limiters.put(OperationType.SEARCH, limiter(searchTargetLatencyMs));
+        limiters.put(OperationType.INGEST, limiter(ingestTargetLatencyMs));
+        limiters.put(OperationType.AGGREGATION, limiter(aggregationTargetLatencyMs));
+        for (OperationType type : OperationType.values()) {
+            retries.put(type, new AtomicLong());
+            shed.put(type, new AtomicLong());
+        }
+    }
+
+    /**
+     * ✅ Runs the supplier with the given operation type, for raw client calls (execute) that can't be classified.
+     */
+    public static <T> T withOperationType(OperationType type, Supplier<T> supplier) {
+        OperationType previous = CURRENT_TYPE.get();
+        CURRENT_TYPE.set(type);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_TYPE.remove();
+            } else {
+                CURRENT_TYPE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * ✅ Runs the supplier as an untracked call of the given type: no concurrency slot, no latency sample, no retry.
+     * For calls whose latency says nothing about cluster load (async search polls waiting for completion) or that
+     * must not reach ES twice (async search submit). AGGREGATION calls are still shed (admitUntracked).
+     */
+    public static <T> T untracked(OperationType type, Supplier<T> supplier) {
+        Boolean previous = UNTRACKED.get();
+        UNTRACKED.set(Boolean.TRUE);
+        try {
+            return withOperationType(type, supplier);
+        } finally {
+            if (previous == null) {
+                UNTRACKED.remove();
+            } else {
+                UNTRACKED.set(previous);
+            }
+        }
+    }
+
+    public static boolean isUntracked() {
+        return UNTRACKED.get() != null;
+    }
+
+    public static OperationType currentOperationType() {
+        OperationType type = CURRENT_TYPE.get();
+        return type == null ? OperationType.SEARCH : type;
+    }
+
+    /**
+     * ✅ Takes a concurrency slot for the call, or sheds it. The caller must release() the returned limiter.
+     */
+    public AdaptiveConcurrencyLimiter admit(OperationType type) {
+        if (type == OperationType.AGGREGATION && shouldShedAggregations()) {
+            shed.get(type).incrementAndGet();
+            throw new ElasticsearchOverloadedException(type, "Aggregation shed: Elasticsearch is overloaded");
+        }
+
+        AdaptiveConcurrencyLimiter limiter = limiters.get(type);
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(acquireTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            shed.get(type).incrementAndGet();
+            if (type == OperationType.AGGREGATION) {
+                onProbeFinished(); // a half-open probe that never ran must not keep the breaker shut ....
+            }
+            throw new ElasticsearchOverloadedException(type, type + " concurrency limit reached");
+        }
+        return limiter;
+    }
+
+    /**
+     * ✅ Shedding check of an untracked call: an AGGREGATION is refused while the breaker isn't closed (it never
+     * acts as the half-open probe) or while SEARCH / INGEST are close to their limits.
+     */
+    public void admitUntracked(OperationType type) {
+        if (type != OperationType.AGGREGATION) {
+            return;
+        }
+        boolean shedding = limiters.get(OperationType.SEARCH).utilization() >= shedUtilization
+                || limiters.get(OperationType.INGEST).utilization() >= shedUtilization;
+        synchronized (breakerLock) {
+            shedding |= consecutiveOverloads >= failureThreshold;
+        }
+        if (shedding) {
+            shed.get(type).incrementAndGet();
+            throw new ElasticsearchOverloadedException(type, "Aggregation shed: Elasticsearch is overloaded");
+        }
+    }
+
+    /**
+     * ✅ Runs the call, retrying retryable answers with jittered exponential backoff, and feeds the
+     * observed latency / rejections back into the limiter and the breaker.
+     */
+    public <T> T callWithRetry(OperationType type, ElasticsearchCall<T> call) throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(type);
+        Set<Integer> retryable = type == OperationType.INGEST ? RETRYABLE_WRITE_STATUS : RETRYABLE_READ_STATUS;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                T result = call.call();
+                limiter.onSuccess((System.nanoTime() - start) / 1_000_000);
+                onClusterSuccess();
+                return result;
+            } catch (IOException | RuntimeException e) {
+                int status = statusOf(e);
+                if (!retryable.contains(status)) {
+                    if (type == OperationType.AGGREGATION) {
+                        onProbeFinished();
+                    }
+                    throw e;
+                }
+                limiter.onOverload();
+                onClusterOverload();
+                if (attempt >= maxAttempts) {
+                    throw new ElasticsearchOverloadedException(type,
+                            "Elasticsearch answered " + status + " after " + attempt + " attempts");
+                }
+                retries.get(type).incrementAndGet();
+                sleepWithJitter(attempt);
+            }
+        }
+    }
+
+    public List<ResilienceStats> getStats() {
+        String circuitState = circuitState();
+        List<ResilienceStats> stats = new ArrayList<>();
+        limiters.forEach((type, limiter) -> stats.add(new ResilienceStats(type.name(), limiter.getLimit(),
+                limiter.getInFlight(), limiter.getRejected(), retries.get(type).get(), shed.get(type).get(),
+                type == OperationType.AGGREGATION ? circuitState : "N/A")));
+        return stats;
+    }
+
+    private boolean shouldShedAggregations() {
+        if (limiters.get(OperationType.SEARCH).utilization() >= shedUtilization
+                || limiters.get(OperationType.INGEST).utilization() >= shedUtilization) {
+            return true;
+        }
+        synchronized (breakerLock) {
+            if (consecutiveOverloads < failureThreshold) {
+                return false;
+            }
+            if (System.currentTimeMillis() < openUntil || halfOpenProbeInFlight) {
+                return true;
+            }
+            // Open period is over: let a single probe through (half-open) ....
+            halfOpenProbeInFlight = true;
+            return false;
+        }
+    }
+
+    private void onClusterSuccess() {
+        synchronized (breakerLock) {
+            // While open, a fast SEARCH success doesn't prove the cluster recovered: only a success after
+            // the open period (the half-open probe or any call) closes the breaker ....
+            if (consecutiveOverloads >= failureThreshold && System.currentTimeMillis() < openUntil) {
+                return;
+            }
+            consecutiveOverloads = 0;
+            halfOpenProbeInFlight = false;
+        }
+    }
+
+    private void onProbeFinished() {
+        synchronized (breakerLock) {
+            halfOpenProbeInFlight = false;
+        }
+    }
+
+    private void onClusterOverload() {
+        synchronized (breakerLock) {
+            consecutiveOverloads++;
+            halfOpenProbeInFlight = false;
+            if (consecutiveOverloads >= failureThreshold) {
+                if (System.currentTimeMillis() >= openUntil) {
+                    logger.warn("Elasticsearch overloaded ({} consecutive rejections), shedding aggregations for {} ms",
+                            consecutiveOverloads, openMs);
+                }
+                openUntil = System.currentTimeMillis() + openMs;
+            }
+        }
+    }
+
+    private String circuitState() {
+        synchronized (breakerLock) {
+            if (consecutiveOverloads < failureThreshold) {
+                return "CLOSED";
+            }
+            return System.currentTimeMillis() < openUntil ? "OPEN" : "HALF_OPEN";
+        }
+    }
+
+    private void sleepWithJitter(int attempt) {
+        long cap = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchOverloadedException(currentOperationType(), "Interrupted while backing off");
+        }
+    }
+
+    // HTTP status of an Elasticsearch failure, wherever it sits in the cause chain. 0 if there is none ....
+    private static int statusOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ElasticsearchException ese) {
+                return ese.status();
+            }
+            if (t instanceof TransportException te) {
+                return te.statusCode();
+            }
+            if (t instanceof ResponseException re) {
+                return re.getResponse().getStatusLine().getStatusCode();
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return 0;
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(long targetLatencyMs) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, decreaseFactor, targetLatencyMs);
+    }
+}
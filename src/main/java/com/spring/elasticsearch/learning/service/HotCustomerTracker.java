@@ -0,0 +1,143 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Remembers which customers are looked up the most, across restarts.
+ *
+ * Customer endpoints (fetch-by-customer, daily sales) call record(). The counts are written to
+ * orders.warmup.hot-customers.file periodically and on shutdown, and read back on startup, so StartupWarmup
+ * can warm the top-K customers of the previous run before the app reports ready.
+ *
+ * - counts loaded from the file are halved on every startup (decay), so yesterday's hot customers fade out.
+ * - at most max-tracked customers are counted; a new customer beyond that is ignored until the next persist
+ *   trims the map to the top max-tracked / 2, which leaves room to admit the customers that became hot since.
+ */
+@Service
+public class HotCustomerTracker {
+
+    private static final Logger logger = LogManager.getLogger(HotCustomerTracker.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
+    @Value("${orders.warmup.hot-customers.file:./hot-customers.json}")
+    private String file;
+
+    @Value("${orders.warmup.hot-customers.max-tracked:10000}")
+    private int maxTracked;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        Path path = Path.of(file);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Map<String, Long> persisted = objectMapper.readValue(path.toFile(), new TypeReference<Map<String, Long>>() {});
+            persisted.forEach((customer, count) -> {
+                long decayed = count / 2;
+                if (decayed > 0) {
+                    counter(customer).add(decayed);
+                }
+            });
+            logger.info("Loaded {} hot customers from {}", counts.size(), path.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read hot customers from {}: {}", path.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    public void record(String customer) {
+        if (customer == null || customer.isBlank()) {
+            return;
+        }
+        LongAdder counter = counts.get(customer);
+        if (counter == null) {
+            if (counts.size() >= maxTracked) {
+                return;
+            }
+            counter = counter(customer);
+        }
+        counter.increment();
+    }
+
+    public void recordAll(List<String> customers) {
+        customers.forEach(this::record);
+    }
+
+    /**
+     * @return the k most looked up customers, most frequent first.
+     */
+    public List<String> topCustomers(int k) {
+        return snapshot(k).keySet().stream().toList();
+    }
+
+    /**
+     * ✅ Writes the top max-tracked counts to the file (write to a temp file + atomic move) and trims the map to the
+     * top half of them.
+     */
+    @Scheduled(fixedDelayString = "${orders.warmup.hot-customers.persist-interval-ms:60000}",
+            initialDelayString = "${orders.warmup.hot-customers.persist-interval-ms:60000}")
+    @PreDestroy
+    public void persist() {
+        Map<String, Long> top = snapshot(maxTracked);
+        // Trimming to max-tracked would keep a full map full: nothing new could ever be admitted ....
+        Set<String> kept = top.keySet().stream().limit(maxTracked / 2).collect(Collectors.toSet());
+        counts.keySet().retainAll(kept);
+        if (top.isEmpty()) {
+            return;
+        }
+
+        Path path = Path.of(file).toAbsolutePath();
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tmp, objectMapper.writeValueAsString(top));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not write hot customers to {}: {}", path, e.getMessage());
+        }
+    }
+
+    // The customer comes from the request path: share the dictionary's String if it is a known customer, but never
+    // add it - made-up names would fill the shared customers() dictionary used by the hot store and aggregations ....
+    private LongAdder counter(String customer) {
+        return counts.computeIfAbsent(keywordDictionaries.customers().canonical(customer), c -> new LongAdder());
+    }
+
+    private Map<String, Long> snapshot(int limit) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+}
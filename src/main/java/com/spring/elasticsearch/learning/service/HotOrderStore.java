@@ -0,0 +1,561 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.elasticsearch.learning.models.HotOrderStoreStats;
+import com.spring.elasticsearch.learning.models.KeywordDictionary;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.elastic.clients.json.JsonData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ✅ Optional off-heap store of the hot orders (written / dated within the last orders.hot-store.window-hours).
+ *
+ * Every order is one fixed-width 56 byte record in a direct ByteBuffer:
+ *
+ *   offset  0  int     flags            (1 = live)
+ *   offset  4  int     customer code    (KeywordDictionaries.customers())
+ *   offset  8  int     status code      (KeywordDictionaries.statuses(), -1 = null)
+ *   offset 12  int     order_date       (epoch day, Integer.MIN_VALUE = null)
+ *   offset 16  double  total_amount     (NaN = null)
+ *   offset 24  long    recency millis   (ingested_at, or start of order_date)
+ *   offset 32  int     prev slot of the same customer
+ *   offset 36  int     next slot of the same customer
+ *   offset 40  long    ingested_at      (epoch millis, Long.MIN_VALUE = null)
+ *   offset 48  int     category code    (KeywordDictionaries.categories(), -1 = null)
+ *   offset 52  int     unused           (keeps the records 8 byte aligned)
+ *
+ * Indexes: document _id (= order_id for bulk / WAL writes) -> slot (HashMap) and customer -> doubly linked list of slots threaded through the records
+ * themselves (prev / next), so adding and evicting never allocates.
+ *
+ * Slots are used as a ring: when the store is full the oldest insert is overwritten. A periodic sweep drops
+ * records that fell out of the window; reads also skip them.
+ *
+ * Reads stream JSON straight from the records (same fields as OrderDocument), no OrderDocument per hit.
+ * They copy the matching records into a per-thread scratch buffer under the read lock and write JSON after it
+ * is released, so a slow client never blocks writers.
+ *
+ * put() replaces the record of the same _id. An order the store can't (or no longer should) hold - out of the
+ * window, customer / category dictionary full - drops the previous record of that _id, so reads never serve a stale
+ * version. An overwrite without ingested_at keeps the stored one; writes through this app always carry the stamp
+ * they wrote to Elasticsearch, so the record serves what the index holds.
+ * Writes through the write-ahead log are mirrored by OrderBulkIndexer once Elasticsearch acknowledged them.
+ *
+ * 🔑 Remember: the store only knows recent orders, so it answers the "?window=recent" variants of /top and
+ * /fetch-by-customer - the unbounded endpoints still go to Elasticsearch.
+ */
+@Service
+public class HotOrderStore {
+
+    private static final Logger logger = LogManager.getLogger(HotOrderStore.class);
+
+    private static final int RECORD_BYTES = 56;
+    private static final int NONE = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    @Autowired
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.hot-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.hot-store.capacity:1000000}")
+    private int capacity;
+
+    @Value("${orders.hot-store.window-hours:24}")
+    private int windowHours;
+
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
+    private KeywordDictionary customers;
+    private KeywordDictionary statuses;
+    private KeywordDictionary categories;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock ....
+    private ByteBuffer records;
+    private String[] orderIds;
+    private String[] documentIds;
+    private final Map<String, Integer> slotByDocumentId = new HashMap<>();
+    private int[] customerHead = new int[64];
+    private int nextSlot;
+    private int liveRecords;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<>();
+
+    @PostConstruct
+    public void init() {
+        customers = keywordDictionaries.customers();
+        statuses = keywordDictionaries.statuses();
+        categories = keywordDictionaries.categories();
+        if (!enabled) {
+            return;
+        }
+        records = ByteBuffer.allocateDirect(capacity * RECORD_BYTES);
+        orderIds = new String[capacity];
+        documentIds = new String[capacity];
+        Arrays.fill(customerHead, NONE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * ✅ Warm-up scan: loads the orders of the window from Elasticsearch (run by StartupWarmup).
+     *
+     * GET orders_pagination/_search?scroll=...
+     * { "query": { "bool": { "should": [
+     *     { "range": { "ingested_at": { "gte": <now - window> } } },
+     *     { "range": { "order_date":  { "gte": "<first day of the window>" } } } ] } } }
+     */
+    public int warmUp() {
+        if (!enabled) {
+            return 0;
+        }
+        long from = windowStart();
+        String fromDay = LocalDate.ofInstant(Instant.ofEpochMilli(from), ZoneOffset.UTC).toString();
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b
+                        .should(s -> s.range(r -> r.field("ingested_at").gte(JsonData.of(from))))
+                        .should(s -> s.range(r -> r.field("order_date").gte(JsonData.of(fromDay))))
+                        .minimumShouldMatch("1")))
+                .withPageable(PageRequest.of(0, 1000))
+                .build();
+
+        int loaded = 0;
+        try (SearchHitsIterator<OrderDocument> hits = operations.searchForStream(query, OrderDocument.class)) {
+            while (hits.hasNext()) {
+                put(hits.next().getContent());
+                loaded++;
+            }
+        } catch (RuntimeException e) {
+            // Writes keep filling the store, only the history of the window is missing ....
+            logger.warn("Hot order store warm-up failed after {} orders: {}", loaded, e.getMessage());
+            return loaded;
+        }
+        logger.info("Hot order store warmed up with {} orders", loaded);
+        return loaded;
+    }
+
+    public void put(OrderDocument order) {
+        String documentId = order.getId() != null ? order.getId() : order.getOrder_id();
+        if (!enabled || documentId == null || order.getCustomer() == null) {
+            return;
+        }
+        long recency = recencyOf(order);
+        if (recency < windowStart()) {
+            remove(documentId); // an older version of the order may still be in the store ....
+            return;
+        }
+        int customerCode = customers.encode(order.getCustomer());
+        if (customerCode == KeywordDictionary.NOT_ENCODED) {
+            remove(documentId); // customer dictionary is full, the store can't index this order - nor keep the old one ....
+            return;
+        }
+        int categoryCode = categories.encode(order.getCategory());
+        if (order.getCategory() != null && categoryCode == KeywordDictionary.NOT_ENCODED) {
+            remove(documentId); // category dictionary is full: the record couldn't serve the order's category ....
+            return;
+        }
+        int statusCode = statuses.encode(order.getStatus());
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotByDocumentId.get(documentId);
+            int slot;
+            long ingestedAt = order.getIngestedAt() == null ? Long.MIN_VALUE : order.getIngestedAt().toEpochMilli();
+            if (existing != null) {
+                slot = existing;
+                if (ingestedAt == Long.MIN_VALUE) {
+                    ingestedAt = records.getLong(slot * RECORD_BYTES + 40);
+                }
+                unlinkCustomer(slot);
+            } else {
+                slot = nextSlot;
+                nextSlot = (nextSlot + 1) % capacity;
+                if (isLive(slot)) {
+                    evict(slot);
+                    evictions.incrementAndGet();
+                }
+                slotByDocumentId.put(documentId, slot);
+                liveRecords++;
+            }
+
+            int base = slot * RECORD_BYTES;
+            records.putInt(base, 1);
+            records.putInt(base + 4, customerCode);
+            records.putInt(base + 8, statusCode);
+            records.putInt(base + 12, order.getOrder_date() == null ? NULL_DATE : (int) order.getOrder_date().toEpochDay());
+            records.putDouble(base + 16, order.getTotalAmount() == null ? Double.NaN : order.getTotalAmount());
+            records.putLong(base + 24, recency);
+            records.putLong(base + 40, ingestedAt);
+            records.putInt(base + 48, categoryCode);
+            orderIds[slot] = order.getOrder_id();
+            documentIds[slot] = documentId;
+            linkCustomer(slot, customerCode);
+            writes.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateStatus(String documentId, String status) {
+        if (!enabled || documentId == null || status == null) {
+            return;
+        }
+        int statusCode = statuses.encode(status);
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByDocumentId.get(documentId);
+            if (slot != null) {
+                records.putInt(slot * RECORD_BYTES + 8, statusCode);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ✅ Mirrors an update_by_query status transition on the records it matches.
+     */
+    public void transitionStatus(String from, String to, String customer) {
+        int fromCode = statuses.codeOf(from);
+        int customerCode = customer == null || customer.isBlank() ? NONE : customers.codeOf(customer);
+        if (!enabled || fromCode == NONE || (customer != null && !customer.isBlank() && customerCode == NONE)) {
+            return;
+        }
+        int toCode = statuses.encode(to);
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = slot * RECORD_BYTES;
+                if (records.getInt(base) == 1 && records.getInt(base + 8) == fromCode
+                        && (customerCode == NONE || records.getInt(base + 4) == customerCode)) {
+                    records.putInt(base + 8, toCode);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String documentId) {
+        if (!enabled || documentId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByDocumentId.get(documentId);
+            if (slot != null) {
+                evict(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ✅ Streams the recent orders of a customer as a JSON array.
+     */
+    public void writeCustomerOrders(String customer, OutputStream out) throws IOException {
+        int customerCode = customers.codeOf(customer);
+        int count = 0;
+        String[] ids = null;
+        ByteBuffer copy = null;
+        long from = windowStart();
+
+        lock.readLock().lock();
+        try {
+            if (customerCode != NONE && customerCode < customerHead.length) {
+                int n = 0;
+                for (int slot = customerHead[customerCode]; slot != NONE; slot = records.getInt(slot * RECORD_BYTES + 36)) {
+                    n++;
+                }
+                copy = scratch(n);
+                ids = new String[n * 2];
+                for (int slot = customerHead[customerCode]; slot != NONE; slot = records.getInt(slot * RECORD_BYTES + 36)) {
+                    if (records.getLong(slot * RECORD_BYTES + 24) >= from) {
+                        copyRecord(slot, copy, count, ids);
+                        count++;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        writeJson(copy, ids, count, out);
+    }
+
+    /**
+     * ✅ Streams the "size" recent orders with the highest total_amount as a JSON array (same order as /top).
+     */
+    public void writeTopOrders(int size, OutputStream out) throws IOException {
+        int count = 0;
+        String[] ids = null;
+        ByteBuffer copy = null;
+        long from = windowStart();
+
+        lock.readLock().lock();
+        try {
+            // Min-heap of slots on total_amount: the smallest of the current top-N sits at [0] ....
+            int[] heap = new int[Math.max(0, Math.min(size, liveRecords))];
+            int heapSize = 0;
+            for (int slot = 0; slot < capacity && heap.length > 0; slot++) {
+                int base = slot * RECORD_BYTES;
+                if (records.getInt(base) != 1 || records.getLong(base + 24) < from) {
+                    continue;
+                }
+                double amount = amountOf(slot);
+                if (heapSize < heap.length) {
+                    heap[heapSize] = slot;
+                    siftUp(heap, heapSize++);
+                } else if (amount > amountOf(heap[0])) {
+                    heap[0] = slot;
+                    siftDown(heap, heapSize);
+                }
+            }
+
+            copy = scratch(heapSize);
+            ids = new String[heapSize * 2];
+            // Pop the min-heap from the back, so the copy ends up sorted by total_amount desc ....
+            for (int i = heapSize - 1; i >= 0; i--) {
+                copyRecord(heap[0], copy, i, ids);
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            count = heapSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+        writeJson(copy, ids, count, out);
+    }
+
+    /**
+     * ✅ Drops records that fell out of the window.
+     */
+    @Scheduled(fixedDelayString = "${orders.hot-store.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        long from = windowStart();
+        int swept = 0;
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = slot * RECORD_BYTES;
+                if (records.getInt(base) == 1 && records.getLong(base + 24) < from) {
+                    evict(slot);
+                    swept++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (swept > 0) {
+            evictions.addAndGet(swept);
+            logger.debug("Hot order store swept {} expired records", swept);
+        }
+    }
+
+    public HotOrderStoreStats getStats() {
+        lock.readLock().lock();
+        try {
+            return new HotOrderStoreStats(enabled, enabled ? capacity : 0, liveRecords, customers.size(),
+                    enabled ? (long) capacity * RECORD_BYTES : 0, writes.get(), evictions.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock ....
+    private void evict(int slot) {
+        if (!isLive(slot)) {
+            return;
+        }
+        unlinkCustomer(slot);
+        records.putInt(slot * RECORD_BYTES, 0);
+        slotByDocumentId.remove(documentIds[slot]);
+        orderIds[slot] = null;
+        documentIds[slot] = null;
+        liveRecords--;
+    }
+
+    private boolean isLive(int slot) {
+        return records.getInt(slot * RECORD_BYTES) == 1;
+    }
+
+    // Caller holds the write lock ....
+    private void linkCustomer(int slot, int customerCode) {
+        if (customerCode >= customerHead.length) {
+            int oldLength = customerHead.length;
+            customerHead = Arrays.copyOf(customerHead, Math.max(customerCode + 1, oldLength * 2));
+            Arrays.fill(customerHead, oldLength, customerHead.length, NONE);
+        }
+        int base = slot * RECORD_BYTES;
+        int head = customerHead[customerCode];
+        records.putInt(base + 32, NONE);
+        records.putInt(base + 36, head);
+        if (head != NONE) {
+            records.putInt(head * RECORD_BYTES + 32, slot);
+        }
+        customerHead[customerCode] = slot;
+    }
+
+    // Caller holds the write lock ....
+    private void unlinkCustomer(int slot) {
+        int base = slot * RECORD_BYTES;
+        int customerCode = records.getInt(base + 4);
+        int prev = records.getInt(base + 32);
+        int next = records.getInt(base + 36);
+        if (prev != NONE) {
+            records.putInt(prev * RECORD_BYTES + 36, next);
+        } else if (customerCode < customerHead.length && customerHead[customerCode] == slot) {
+            customerHead[customerCode] = next;
+        }
+        if (next != NONE) {
+            records.putInt(next * RECORD_BYTES + 32, prev);
+        }
+    }
+
+    // Caller holds the read lock. Copies one record + its ids to position "index" of the scratch copy ....
+    private void copyRecord(int slot, ByteBuffer copy, int index, String[] ids) {
+        copy.put(index * RECORD_BYTES, records, slot * RECORD_BYTES, RECORD_BYTES);
+        ids[index * 2] = documentIds[slot];
+        ids[index * 2 + 1] = orderIds[slot];
+    }
+
+    private void writeJson(ByteBuffer copy, String[] ids, int count, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int i = 0; i < count; i++) {
+                int base = i * RECORD_BYTES;
+                generator.writeStartObject();
+                generator.writeStringField("id", ids[i * 2]);
+                generator.writeStringField("order_id", ids[i * 2 + 1]);
+                generator.writeStringField("customer", customers.decode(copy.getInt(base + 4)));
+                int orderDate = copy.getInt(base + 12);
+                if (orderDate == NULL_DATE) {
+                    generator.writeNullField("order_date");
+                } else {
+                    generator.writeStringField("order_date", LocalDate.ofEpochDay(orderDate).toString());
+                }
+                double amount = copy.getDouble(base + 16);
+                if (Double.isNaN(amount)) {
+                    generator.writeNullField("totalAmount");
+                } else {
+                    generator.writeNumberField("totalAmount", amount);
+                }
+                generator.writeStringField("status", statuses.decode(copy.getInt(base + 8)));
+                generator.writeStringField("category", categories.decode(copy.getInt(base + 48)));
+                long ingestedAt = copy.getLong(base + 40);
+                if (ingestedAt == Long.MIN_VALUE) {
+                    generator.writeNullField("ingestedAt");
+                } else {
+                    generator.writeStringField("ingestedAt", Instant.ofEpochMilli(ingestedAt).toString());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private ByteBuffer scratch(int recordCount) {
+        ByteBuffer buffer = scratch.get();
+        int needed = Math.max(1, recordCount) * RECORD_BYTES;
+        if (buffer == null || buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocateDirect(Math.max(needed, 64 * RECORD_BYTES));
+            scratch.set(buffer);
+        }
+        return buffer;
+    }
+
+    private double amountOf(int slot) {
+        double amount = records.getDouble(slot * RECORD_BYTES + 16);
+        return Double.isNaN(amount) ? Double.NEGATIVE_INFINITY : amount;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (amountOf(heap[index]) >= amountOf(heap[parent])) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = index * 2 + 1;
+            int right = left + 1;
+            int smallest = index;
+            if (left < size && amountOf(heap[left]) < amountOf(heap[smallest])) {
+                smallest = left;
+            }
+            if (right < size && amountOf(heap[right]) < amountOf(heap[smallest])) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private long windowStart() {
+        return System.currentTimeMillis() - windowHours * 3_600_000L;
+    }
+
+    private static long recencyOf(OrderDocument order) {
+        if (order.getIngestedAt() != null) {
+            return order.getIngestedAt().toEpochMilli();
+        }
+        if (order.getOrder_date() != null) {
+            return order.getOrder_date().atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        return Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,314 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.IncrementalAggregateState;
+import com.spring.elasticsearch.learning.models.KeywordCounts;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import com.spring.elasticsearch.learning.models.RevenueStatsResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ✅ Incremental refresh of the dashboard aggregates (total revenue, orders per status, PAID revenue stats).
+ *
+ * Instead of aggregating the whole index on every call, the last result is kept in memory together with a
+ * watermark on ingested_at, and a refresh only aggregates the orders written since then:
+ *
+ * GET orders_pagination/_search
+ * {
+ *   "size": 0,
+ *   "query": { "range": { "ingested_at": { "gt": <watermark>, "lte": <now - safety lag> } } },
+ *   "aggs": {
+ *     "total_revenue":    { "sum":   { "field": "total_amount" } },
+ *     "orders_by_status": { "terms": { "field": "status", "size": 100 } },
+ *     "paid":             { "filter": { "term": { "status": "PAID" } },
+ *                           "aggs": { "paid_stats": { "stats": { "field": "total_amount" } } } }
+ *   }
+ * }
+ *
+ * The delta is merged into the cached sums / counts / min / max / term counts.
+ *
+ * 🔑 Remember:
+ * - ingested_at is stamped by every full write (plain index, no script), so an overwrite is counted again in the
+ *   delta of its new ingested_at. Where the previous version is known it is taken out right away:
+ *   recordOverwrite() (addOrder) and recordStatusChange() (OrderStatusService), like the revenue leaderboard
+ *   applies its deltas. Overwrites through _bulk (CDC, WAL replay) and partial _bulk updates are corrected by
+ *   the periodic full recompute.
+ * - the upper bound lags "now" by orders.incremental.safety-lag-ms plus the index refresh_interval (read at every
+ *   full recompute), so orders that are indexed but not yet refreshed (searchable) are not skipped by the watermark.
+ * - ingested_at is stamped before the write is sent, and retries / 429 backoff / a slow _bulk all come after the
+ *   stamp. Writers register the stamp (beginWrite / endWrite) and the watermark never passes the oldest write that
+ *   is still in flight or was acknowledged less than a refresh_interval ago.
+ * - while refresh is disabled (refresh_interval=-1, bulk load sessions) nothing new becomes searchable: the
+ *   watermark stays put, and BulkLoadSessionService calls invalidate() after its final refresh.
+ * - updates of existing orders (e.g. PENDING -> PAID) and deletes are NOT visible to a delta;
+ *   the periodic full recompute (orders.incremental.full-recompute-interval-ms) corrects that drift.
+ * - a full recompute also covers old orders without ingested_at (must_not exists).
+ */
+@Service
+public class IncrementalOrderAggregations {
+
+    private static final Logger logger = LogManager.getLogger(IncrementalOrderAggregations.class);
+
+    @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
+    @Value("${orders.incremental.safety-lag-ms:2000}")
+    private long safetyLagMs;
+
+    @Value("${orders.incremental.full-recompute-interval-ms:600000}")
+    private long fullRecomputeIntervalMs;
+
+    private volatile IncrementalAggregateState state;
+
+    // Stamped writes not known to be searchable yet. Guarded by itself ....
+    private final List<InFlightWrite> inFlight = new ArrayList<>();
+
+    /**
+     * ✅ Handle of a write whose ingested_at was stamped but which may not be searchable yet.
+     */
+    public static final class InFlightWrite {
+        private final long ingestedAtMillis;
+        private volatile long releaseAtMillis = Long.MAX_VALUE;
+
+        private InFlightWrite(long ingestedAtMillis) {
+            this.ingestedAtMillis = ingestedAtMillis;
+        }
+    }
+
+    // index.refresh_interval in ms as of the last full recompute, -1 = refresh disabled ....
+    private volatile long refreshIntervalMs = 1000;
+
+    public double getTotalRevenueFromOrders() {
+        return currentState().totalRevenue();
+    }
+
+    public KeywordCounts getOrdersGroupedByStatus() {
+        return currentState().statusCounts();
+    }
+
+    public RevenueStatsResponse getPaidRevenueStats() {
+        return currentState().paidRevenueStats();
+    }
+
+    /**
+     * ✅ Registers a write stamped with ingestedAt, before it is sent. Call endWrite() once it was acknowledged
+     * (or failed) - the watermark stays below ingestedAt until then, plus one refresh_interval.
+     */
+    public InFlightWrite beginWrite(Instant ingestedAt) {
+        InFlightWrite write = new InFlightWrite(ingestedAt.toEpochMilli());
+        synchronized (inFlight) {
+            inFlight.add(write);
+        }
+        return write;
+    }
+
+    public void endWrite(InFlightWrite write) {
+        write.releaseAtMillis = System.currentTimeMillis() + Math.max(0, refreshIntervalMs);
+    }
+
+    /**
+     * ✅ The previous version of an overwritten order, if the cached state already counts it: it is taken out now,
+     * the new version is counted by the delta of its own ingested_at.
+     */
+    public synchronized void recordOverwrite(OrderDocument previous) {
+        IncrementalAggregateState current = state;
+        if (previous == null || !isCounted(current, previous.getIngestedAt())) {
+            return;
+        }
+        double amount = previous.getTotalAmount() == null ? 0.0 : previous.getTotalAmount();
+        KeywordCounts statusDelta = new KeywordCounts(keywordDictionaries.statuses(), 1);
+        statusDelta.add(previous.getStatus(), -1);
+        boolean paid = "PAID".equals(previous.getStatus()) && previous.getTotalAmount() != null;
+        state = current.adjust(-amount, statusDelta, paid ? -1 : 0, paid ? -amount : 0.0);
+    }
+
+    /**
+     * ✅ A status change of an order the cached state already counts (partial updates keep ingested_at,
+     * so no delta would see it).
+     */
+    public synchronized void recordStatusChange(Instant ingestedAt, Double amount, String previousStatus, String newStatus) {
+        IncrementalAggregateState current = state;
+        if (!isCounted(current, ingestedAt)) {
+            return;
+        }
+        KeywordCounts statusDelta = new KeywordCounts(keywordDictionaries.statuses(), 2);
+        statusDelta.add(previousStatus, -1);
+        statusDelta.add(newStatus, 1);
+        long paidCountDelta = 0;
+        double paidSumDelta = 0.0;
+        if (amount != null && "PAID".equals(previousStatus)) {
+            paidCountDelta--;
+            paidSumDelta -= amount;
+        }
+        if (amount != null && "PAID".equals(newStatus)) {
+            paidCountDelta++;
+            paidSumDelta += amount;
+        }
+        state = current.adjust(0.0, statusDelta, paidCountDelta, paidSumDelta);
+    }
+
+    // Orders without ingested_at are counted by the full recompute (must_not exists) ....
+    private static boolean isCounted(IncrementalAggregateState current, Instant ingestedAt) {
+        return current != null && (ingestedAt == null || ingestedAt.toEpochMilli() <= current.watermarkMillis());
+    }
+
+    // Highest ingested_at the watermark may reach: just below the oldest write that may not be searchable yet ....
+    private long inFlightLimit(long now) {
+        long limit = Long.MAX_VALUE;
+        synchronized (inFlight) {
+            Iterator<InFlightWrite> writes = inFlight.iterator();
+            while (writes.hasNext()) {
+                InFlightWrite write = writes.next();
+                if (write.releaseAtMillis <= now) {
+                    writes.remove();
+                } else {
+                    limit = Math.min(limit, write.ingestedAtMillis - 1);
+                }
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * ✅ Applies the delta since the watermark, or recomputes everything when the full recompute is due.
+     */
+    @Scheduled(fixedDelayString = "${orders.incremental.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        long now = System.currentTimeMillis();
+        IncrementalAggregateState current = state;
+
+        if (current == null || now - safetyLagMs - current.lastFullRecomputeMillis() >= fullRecomputeIntervalMs) {
+            refreshIntervalMs = readRefreshIntervalMs();
+            long upper = Math.min(now - safetyLagMs - Math.max(0, refreshIntervalMs), inFlightLimit(now));
+            state = aggregate(fullQuery(upper), upper, upper);
+            logger.debug("Incremental aggregates fully recomputed up to {}", upper);
+            return;
+        }
+
+        // Nothing new becomes searchable while refresh is off: moving the watermark would skip those orders ....
+        if (refreshIntervalMs < 0) {
+            return;
+        }
+        long upper = Math.min(now - safetyLagMs - refreshIntervalMs, inFlightLimit(now));
+        if (upper <= current.watermarkMillis()) {
+            return;
+        }
+
+        IncrementalAggregateState delta = aggregate(deltaQuery(current.watermarkMillis(), upper), upper, current.lastFullRecomputeMillis());
+        state = current.merge(delta);
+    }
+
+    /**
+     * ✅ Drops the cached state: the next call / refresh recomputes everything (e.g. after a bulk load made a
+     * batch of orders searchable at once, long after their ingested_at).
+     */
+    public synchronized void invalidate() {
+        state = null;
+    }
+
+    private long readRefreshIntervalMs() {
+        try {
+            Object value = operations.indexOps(OrderDocument.class).getSettings(true).flatten().get("index.refresh_interval");
+            return value == null ? 1000 : parseTimeMillis(value.toString());
+        } catch (RuntimeException e) {
+            logger.warn("Could not read index.refresh_interval, assuming 1s: {}", e.getMessage());
+            return 1000;
+        }
+    }
+
+    // ES time value ("500ms", "1s", "30s", "1m", "-1") to ms ....
+    static long parseTimeMillis(String value) {
+        String time = value.trim();
+        if (time.startsWith("-")) {
+            return -1;
+        }
+        String[][] units = {{"ms", "1"}, {"s", "1000"}, {"m", "60000"}, {"h", "3600000"}, {"d", "86400000"}};
+        for (String[] unit : units) {
+            if (time.endsWith(unit[0])) {
+                return Long.parseLong(time.substring(0, time.length() - unit[0].length()).trim()) * Long.parseLong(unit[1]);
+            }
+        }
+        return Long.parseLong(time);
+    }
+
+    private IncrementalAggregateState currentState() {
+        IncrementalAggregateState current = state;
+        if (current == null) {
+            refresh();
+            current = state;
+        }
+        return current;
+    }
+
+    private Query fullQuery(long upper) {
+        return Query.of(q -> q.bool(b -> b
+                .should(s -> s.range(r -> r.field("ingested_at").lte(JsonData.of(upper))))
+                .should(s -> s.bool(nb -> nb.mustNot(mn -> mn.exists(e -> e.field("ingested_at")))))
+                .minimumShouldMatch("1")
+        ));
+    }
+
+    private Query deltaQuery(long watermark, long upper) {
+        return Query.of(q -> q.range(r -> r
+                .field("ingested_at")
+                .gt(JsonData.of(watermark))
+                .lte(JsonData.of(upper))));
+    }
+
+    private IncrementalAggregateState aggregate(Query query, long watermark, long lastFullRecompute) {
+        NativeQuery nativeQuery = NativeQuery.builder()
+                .withQuery(query)
+                .withAggregation("total_revenue", Aggregation.of(a -> a.sum(s -> s.field("total_amount"))))
+                .withAggregation("orders_by_status", Aggregation.of(a -> a.terms(t -> t.field("status").size(100))))
+                .withAggregation("paid", Aggregation.of(a -> a
+                        .filter(f -> f.term(t -> t.field("status").value("PAID")))
+                        .aggregations("paid_stats", Aggregation.of(sub -> sub.stats(s -> s.field("total_amount"))))))
+                .withMaxResults(0)
+                .build();
+
+        SearchHits<OrderDocument> searchHits = operations.search(nativeQuery, OrderDocument.class);
+
+        double totalRevenue = AggregationDecoder.metricValue(AggregationDecoder.aggregate(searchHits, "total_revenue"));
+
+        KeywordCounts statusCounts = AggregationDecoder.keywordCounts(
+                AggregationDecoder.aggregate(searchHits, "orders_by_status"), keywordDictionaries.statuses());
+
+        long paidCount = 0;
+        double paidSum = 0.0, paidMin = 0.0, paidMax = 0.0;
+        Aggregate paid = AggregationDecoder.aggregate(searchHits, "paid");
+        if (paid != null && paid.isFilter() && paid.filter().aggregations().get("paid_stats") != null) {
+            StatsAggregate stats = paid.filter().aggregations().get("paid_stats").stats();
+            paidCount = stats.count();
+            if (paidCount > 0) {
+                paidSum = stats.sum();
+                paidMin = stats.min();
+                paidMax = stats.max();
+            }
+        }
+
+        return new IncrementalAggregateState(Double.isNaN(totalRevenue) ? 0.0 : totalRevenue, statusCounts,
+                paidCount, paidSum, paidMin, paidMax, watermark, lastFullRecompute);
+    }
+}
@@ -0,0 +1,49 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.spring.elasticsearch.learning.models.KeywordDictionary;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * ✅ The process-wide dictionaries of the low-cardinality keyword fields of orders.
+ *
+ * Everything that keeps keyword values around (HotOrderStore records, the revenue leaderboard, status counts of
+ * the aggregation endpoints) encodes them here, so the same code means the same value everywhere and every
+ * distinct value is held once.
+ */
+@Component
+public class KeywordDictionaries {
+
+    @Value("${orders.dictionary.max-statuses:1024}")
+    private int maxStatuses;
+
+    @Value("${orders.dictionary.max-customers:1000000}")
+    private int maxCustomers;
+
+    @Value("${orders.dictionary.max-categories:10000}")
+    private int maxCategories;
+
+    private KeywordDictionary statuses;
+    private KeywordDictionary customers;
+    private KeywordDictionary categories;
+
+    @PostConstruct
+    public void init() {
+        statuses = new KeywordDictionary("status", maxStatuses);
+        customers = new KeywordDictionary("customer", maxCustomers);
+        categories = new KeywordDictionary("category", maxCategories);
+    }
+
+    public KeywordDictionary statuses() {
+        return statuses;
+    }
+
+    public KeywordDictionary customers() {
+        return customers;
+    }
+
+    public KeywordDictionary categories() {
+        return categories;
+    }
+}
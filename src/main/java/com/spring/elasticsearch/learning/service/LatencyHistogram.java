@@ -0,0 +1,81 @@
+package com.spring.elasticsearch.learning.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ✅ Lock-free log2 latency histogram (microseconds).
+ *
+ * Every power of two is split into 4 linear sub-buckets, so a value is placed with at most 25% error using a few
+ * bit operations, and record() is a single AtomicLongArray increment - safe to call from every request thread.
+ *
+ *   0..3 µs   -> buckets 0..3 (exact)
+ *   [4, 8)    -> 4 buckets of 1 µs
+ *   [8, 16)   -> 4 buckets of 2 µs
+ *   ...
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(index(Math.max(0, micros)));
+    }
+
+    /**
+     * ✅ Adds the counts of this histogram to the given array (used to merge the rolling windows).
+     */
+    public void addTo(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    public static long[] emptyCounts() {
+        return new long[BUCKETS];
+    }
+
+    /**
+     * @return upper bound (µs) of the bucket holding the given quantile (0..1), 0 when there is no value.
+     */
+    public static long quantile(long[] counts, double quantile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS | sub)) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,253 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+/**
+ * ✅ Writes the normalized form of whatever is written to it (see SlowQueryLog.normalize): every literal becomes "?",
+ * consecutive literals of an array collapse to one, values of "field" / "fields" / "path" are kept.
+ *
+ * A request body serialized straight into this generator is normalized in the same pass - no rendered DSL string,
+ * no second parse. The copy methods are not delegated (delegateCopyMethods = false), so POJOs and copied parser
+ * events come back through the overrides below.
+ */
+final class NormalizingJsonGenerator extends JsonGeneratorDelegate {
+
+    private static final Set<String> STRUCTURAL_FIELDS = Set.of("field", "fields", "path");
+
+    // Per open array: was the previous element a literal ....
+    private final Deque<boolean[]> arrays = new ArrayDeque<>();
+
+    NormalizingJsonGenerator(JsonGenerator delegate) {
+        super(delegate, false);
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        markNonLiteral();
+        super.writeStartObject();
+    }
+
+    @Override
+    public void writeStartObject(Object forValue) throws IOException {
+        markNonLiteral();
+        super.writeStartObject(forValue);
+    }
+
+    @Override
+    public void writeStartObject(Object forValue, int size) throws IOException {
+        markNonLiteral();
+        super.writeStartObject(forValue, size);
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        markNonLiteral();
+        arrays.push(new boolean[1]);
+        super.writeStartArray();
+    }
+
+    @Override
+    @Deprecated
+    public void writeStartArray(int size) throws IOException {
+        markNonLiteral();
+        arrays.push(new boolean[1]);
+        super.writeStartArray(size);
+    }
+
+    @Override
+    public void writeStartArray(Object forValue) throws IOException {
+        markNonLiteral();
+        arrays.push(new boolean[1]);
+        super.writeStartArray(forValue);
+    }
+
+    @Override
+    public void writeStartArray(Object forValue, int size) throws IOException {
+        markNonLiteral();
+        arrays.push(new boolean[1]);
+        super.writeStartArray(forValue, size);
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        arrays.pop();
+        super.writeEndArray();
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (text != null && isStructural()) {
+            markNonLiteral();
+            super.writeString(text);
+        } else {
+            writeLiteral();
+        }
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        writeString(new String(text, offset, len));
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        writeString(text.getValue());
+    }
+
+    @Override
+    public void writeString(Reader reader, int len) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNumber(char[] encodedValueBuffer, int offset, int length) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+        writeLiteral();
+    }
+
+    @Override
+    public void writeEmbeddedObject(Object object) throws IOException {
+        writeLiteral();
+    }
+
+    // JsonGeneratorDelegate hands the array helpers straight to the delegate: write them element by element ....
+    @Override
+    public void writeArray(int[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(long[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(double[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(String[] array, int offset, int length) throws IOException {
+        writeStartArray(array, length);
+        for (int i = offset; i < offset + length; i++) {
+            writeString(array[i]);
+        }
+        writeEndArray();
+    }
+
+    // A string directly under "field" / "fields" / "path" (or in their array) names what is queried ....
+    private boolean isStructural() {
+        JsonStreamContext context = getOutputContext();
+        String name = context.inArray()
+                ? (context.getParent() == null ? null : context.getParent().getCurrentName())
+                : context.getCurrentName();
+        return name != null && STRUCTURAL_FIELDS.contains(name);
+    }
+
+    // Only a direct element of the innermost array collapses - a value of an object inside the array never does ....
+    private void writeLiteral() throws IOException {
+        boolean[] array = getOutputContext().inArray() ? arrays.peek() : null;
+        if (array != null && array[0]) {
+            return; // collapse consecutive literals of an array ....
+        }
+        if (array != null) {
+            array[0] = true;
+        }
+        delegate.writeString("?");
+    }
+
+    private void markNonLiteral() {
+        boolean[] array = arrays.peek();
+        if (array != null) {
+            array[0] = false;
+        }
+    }
+}
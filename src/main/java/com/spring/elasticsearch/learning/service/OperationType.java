@@ -0,0 +1,11 @@
+package com.spring.elasticsearch.learning.service;
+
+/**
+ * ✅ Traffic classes of Elasticsearch calls, each with its own adaptive concurrency limit.
+ * AGGREGATION is the low-priority class: it is shed first when the cluster pushes back.
+ */
+public enum OperationType {
+    SEARCH,
+    INGEST,
+    AGGREGATION
+}
@@ -0,0 +1,209 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.BulkOrderOperation;
+import com.spring.elasticsearch.learning.models.BulkOutcome;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Shared _bulk writer for the orders index (change journal consumer, bulk loads, ...).
+ *
+ * POST orders_pagination/_bulk
+ * { "index": { "_id": "O-1" } }
+ * { "order_id": "O-1", ..., "ingested_at": 1714550400000 }
+ * { "update": { "_id": "O-4" } }                                   <- INDEX of a write-ahead log record
+ * { "scripted_upsert": true, "upsert": {},
+ *   "script": { "source": "<INDEX_IF_NEWER_WAL_SEQ>", "params": { "seq": 4294967808, "doc": { "order_id": "O-4", ..., "wal_seq": 4294967808 } } } }
+ * { "update": { "_id": "O-2" } }
+ * { "doc": { "status": "SHIPPED" } }
+ * { "delete": { "_id": "O-3" } }
+ *
+ * 🔑 Remember:
+ * - _id = order_id, so re-sending the same operations (after a crash or a 429) doesn't create duplicates.
+ * - INDEX is a plain "index" that replaces the whole document, ingested_at included (no script per document).
+ *   The stamp is registered with IncrementalOrderAggregations while the _bulk is in flight, so its watermark
+ *   can't pass orders that aren't searchable yet. An overwrite is counted again by the next delta until the
+ *   full recompute - the previous version isn't known here (see IncrementalOrderAggregations).
+ * - an INDEX coming from the write-ahead log (walSeq set) is conditional: a replay of a record older than the one the
+ *   stored document came from is a noop, so it can't undo a later status change (PATCH /{id}/status goes straight
+ *   to ES). Noop items count as succeeded but are not mirrored. Only WAL writes pay for the script.
+ * - documents are mapped with the Spring Data converter, so the body matches what repository.save() writes.
+ * - a _bulk request can partially fail: every item has its own status. 429 items are handed back as retryable,
+ *   everything else non-2xx is counted as failed and logged.
+ * - acknowledged INDEX / DELETE items are applied to the revenue leaderboard (partial updates are left to its reconcile).
+ * - acknowledged items are mirrored into the HotOrderStore. An acknowledged INDEX invalidates its own customer /
+ *   status keys in the OrderSearchResultCache (an overwrite that moved the order away from another customer / status
+ *   is bounded by the cache ttl); only a batch with an acknowledged UPDATE / DELETE, whose keys aren't known here,
+ *   clears the whole cache.
+ * - bulkLoad() is the lean path for bulk load sessions: plain operations only, no leaderboard / HotOrderStore
+ *   mirror, no cache clear and no in-flight registration. Nothing is searchable before the session's final refresh
+ *   anyway, and finish / abort invalidate the cache and the incremental aggregations once; the leaderboard picks
+ *   the orders up on its next reconcile. Mirroring a backfill would also evict the real last-24h hot set.
+ */
+@Service
+public class OrderBulkIndexer {
+
+    private static final Logger logger = LogManager.getLogger(OrderBulkIndexer.class);
+
+    // Full overwrite unless the stored document comes from the same or a newer WAL record ....
+    static final String INDEX_IF_NEWER_WAL_SEQ =
+            "if (ctx._source.wal_seq != null && ctx._source.wal_seq >= params.seq) { ctx.op = 'noop' } "
+                    + "else { ctx._source.clear(); ctx._source.putAll(params.doc) }";
+
+    @Autowired
+    @Qualifier("ingestElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private CustomerRevenueLeaderboard customerRevenueLeaderboard;
+
+    @Autowired
+    private OrderSearchResultCache orderSearchResultCache;
+
+    @Autowired
+    private HotOrderStore hotOrderStore;
+
+    @Autowired
+    private IncrementalOrderAggregations incrementalOrderAggregations;
+
+    public BulkOutcome bulk(List<BulkOrderOperation> batch) {
+        return bulk(batch, true);
+    }
+
+    public BulkOutcome bulkLoad(List<BulkOrderOperation> batch) {
+        return bulk(batch, false);
+    }
+
+    private BulkOutcome bulk(List<BulkOrderOperation> batch, boolean mirror) {
+        if (batch.isEmpty()) {
+            return BulkOutcome.empty();
+        }
+
+        String indexName = operations.getIndexCoordinatesFor(OrderDocument.class).getIndexName();
+        Instant ingestedAt = Instant.now();
+
+        List<BulkOperation> bulkOperations = new ArrayList<>(batch.size());
+        for (BulkOrderOperation operation : batch) {
+            bulkOperations.add(toBulkOperation(operation, ingestedAt));
+        }
+
+        IncrementalOrderAggregations.InFlightWrite inFlight = mirror ? incrementalOrderAggregations.beginWrite(ingestedAt) : null;
+        BulkResponse response;
+        try {
+            response = ElasticsearchResilience.withOperationType(OperationType.INGEST, () ->
+                    ((ElasticsearchTemplate) operations).execute(client ->
+                            client.bulk(BulkRequest.of(b -> b.index(indexName).operations(bulkOperations)))));
+        } finally {
+            if (inFlight != null) {
+                incrementalOrderAggregations.endWrite(inFlight);
+            }
+        }
+
+        int succeeded = 0;
+        int failed = 0;
+        boolean unknownKeysWritten = false;
+        List<BulkOrderOperation> retryable = new ArrayList<>();
+        List<BulkOrderOperation> failedOperations = new ArrayList<>();
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            BulkOrderOperation operation = batch.get(i);
+            if (item.error() == null && item.result() != null && item.result().equals("noop")) {
+                succeeded++; // replay of an already applied WAL record ....
+            } else if (item.error() == null) {
+                succeeded++;
+                if (mirror) {
+                    if (operation.type() == BulkOrderOperation.Type.INDEX) {
+                        orderSearchResultCache.invalidateOrder(operation.order());
+                    } else {
+                        unknownKeysWritten = true;
+                    }
+                    applyToLeaderboard(operation);
+                    applyToHotStore(operation);
+                }
+            } else if (item.status() == 429) {
+                retryable.add(operation);
+            } else {
+                failed++;
+                failedOperations.add(operation);
+                logger.warn("Bulk {} of order {} failed with {}: {}",
+                        operation.type(), operation.orderId(), item.status(), item.error().reason());
+            }
+        }
+
+        // Partial updates / deletes don't carry the customer / status they touched: drop the cached lookups ....
+        if (unknownKeysWritten) {
+            orderSearchResultCache.invalidateAll();
+        }
+
+        return new BulkOutcome(succeeded, failed, retryable, failedOperations, response.took());
+    }
+
+    private BulkOperation toBulkOperation(BulkOrderOperation operation, Instant ingestedAt) {
+        return switch (operation.type()) {
+            case INDEX -> {
+                OrderDocument order = operation.order();
+                order.setId(operation.orderId());
+                order.setIngestedAt(ingestedAt);
+                Map<String, Object> document = operations.getElasticsearchConverter().mapObject(order);
+                if (order.getWalSeq() != null) {
+                    Script script = Script.of(sc -> sc.inline(i -> i
+                            .lang("painless")
+                            .source(INDEX_IF_NEWER_WAL_SEQ)
+                            .params("seq", JsonData.of(order.getWalSeq()))
+                            .params("doc", JsonData.of(document))));
+                    yield BulkOperation.of(o -> o.update(u -> u.id(operation.orderId()).action(a -> a
+                            .script(script)
+                            .scriptedUpsert(true)
+                            .upsert(Map.of()))));
+                }
+                yield BulkOperation.of(o -> o.index(i -> i.id(operation.orderId()).document(document)));
+            }
+            case UPDATE -> {
+                // Partial updates never touch ingested_at: the order was counted with its full write ....
+                Map<String, Object> partial = new HashMap<>(operation.partialDoc());
+                partial.remove("ingested_at");
+                yield BulkOperation.of(o -> o.update(u -> u.id(operation.orderId()).action(a -> a.doc(partial))));
+            }
+            case DELETE -> BulkOperation.of(o -> o.delete(d -> d.id(operation.orderId())));
+        };
+    }
+
+    private void applyToLeaderboard(BulkOrderOperation operation) {
+        switch (operation.type()) {
+            case INDEX -> customerRevenueLeaderboard.recordOrder(operation.order());
+            case DELETE -> customerRevenueLeaderboard.removeOrder(operation.orderId());
+            case UPDATE -> { }
+        }
+    }
+
+    private void applyToHotStore(BulkOrderOperation operation) {
+        switch (operation.type()) {
+            case INDEX -> hotOrderStore.put(operation.order());
+            case DELETE -> hotOrderStore.remove(operation.orderId());
+            case UPDATE -> {
+                if (operation.partialDoc().get("status") instanceof String status) {
+                    hotOrderStore.updateStatus(operation.orderId(), status);
+                }
+            }
+        }
+    }
+}
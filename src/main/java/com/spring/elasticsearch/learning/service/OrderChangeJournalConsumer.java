@@ -0,0 +1,358 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.elasticsearch.learning.models.BulkOrderOperation;
+import com.spring.elasticsearch.learning.models.BulkOutcome;
+import com.spring.elasticsearch.learning.models.ChangeJournalPartitionStatus;
+import com.spring.elasticsearch.learning.models.OrderChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * ✅ Change-data-capture consumer: tails a local NDJSON change journal and applies it to the orders index with _bulk.
+ *
+ * Journal layout (written by the producer, one directory per partition):
+ *
+ *   <journal-dir>/partition-0/00000000000000000001.ndjson
+ *   <journal-dir>/partition-0/00000000000000000002.ndjson
+ *   <journal-dir>/partition-1/...
+ *   <journal-dir>/offsets/partition-0.offset     <- written by this consumer: "<segment> <byte position>"
+ *
+ * - one worker thread per partition reads up to batch-size complete lines from its committed position, turns them
+ *   into index / update / delete operations (see OrderChangeEvent) and sends them as a single _bulk request.
+ * - the offset is persisted (write + fsync a temp file, atomic move, fsync the directory) only after the batch is
+ *   acknowledged, so a crash replays at most the last batch.
+ * - replays are harmless because every operation uses _id = order_id (index/delete are idempotent, a partial update
+ *   sets the same values again) -> effectively exactly-once in the index.
+ * - 429 items are retried with exponential backoff before the offset moves: the batch is resent from the first rejected
+ *   item on, in journal order, so a later event of an order never lands before an earlier one. Other item failures are
+ *   logged and skipped.
+ * - after max-retries the offset is committed up to the first rejected operation only and the partition waits a poll
+ *   interval before reading from there again - an operation is never committed without being applied.
+ *
+ * 🔑 Remember:
+ * - the producer must route all events of an order_id to the same partition, ordering is only kept per partition.
+ * - a trailing line without "\n" is treated as still being written and is picked up on the next poll.
+ * - segments are processed in file name order; a segment is left once a newer one exists and it has been fully read.
+ */
+@Service
+@ConditionalOnProperty(name = "orders.cdc.enabled", havingValue = "true")
+public class OrderChangeJournalConsumer {
+
+    private static final Logger logger = LogManager.getLogger(OrderChangeJournalConsumer.class);
+
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+
+    @Autowired
+    private OrderBulkIndexer orderBulkIndexer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.cdc.journal-dir:./order-journal}")
+    private String journalDir;
+
+    @Value("${orders.cdc.partitions:4}")
+    private int partitions;
+
+    @Value("${orders.cdc.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${orders.cdc.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${orders.cdc.max-retries:5}")
+    private int maxRetries;
+
+    private ExecutorService workers;
+
+    private final List<PartitionWorker> partitionWorkers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path root = Path.of(journalDir);
+        Files.createDirectories(root.resolve("offsets"));
+
+        running = true;
+        workers = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("order-cdc-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int partition = 0; partition < partitions; partition++) {
+            PartitionWorker worker = new PartitionWorker(partition, root);
+            partitionWorkers.add(worker);
+            workers.submit(worker);
+        }
+        logger.info("Order change journal consumer started on {} with {} partitions", root.toAbsolutePath(), partitions);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public List<ChangeJournalPartitionStatus> getStatus() {
+        return partitionWorkers.stream().map(PartitionWorker::status).toList();
+    }
+
+    private final class PartitionWorker implements Runnable {
+
+        private final int partition;
+        private final Path partitionDir;
+        private final Path offsetFile;
+
+        // Committed position: only touched by the worker thread, published for getStatus() ....
+        private volatile String segment;
+        private volatile long position;
+
+        private final AtomicLong applied = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+
+        private PartitionWorker(int partition, Path root) {
+            this.partition = partition;
+            this.partitionDir = root.resolve("partition-" + partition);
+            this.offsetFile = root.resolve("offsets").resolve("partition-" + partition + ".offset");
+        }
+
+        private ChangeJournalPartitionStatus status() {
+            return new ChangeJournalPartitionStatus(partition, segment, position, applied.get(), failed.get(), retried.get());
+        }
+
+        @Override
+        public void run() {
+            try {
+                loadOffset();
+                while (running && !Thread.currentThread().isInterrupted()) {
+                    if (!pollOnce()) {
+                        Thread.sleep(pollIntervalMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Change journal partition {} stopped at {}:{}", partition, segment, position, e);
+            }
+        }
+
+        /**
+         * @return true if a batch was applied (poll again right away), false if there was nothing to read or it stalled.
+         */
+        private boolean pollOnce() throws IOException, InterruptedException {
+            List<String> segments = listSegments();
+            if (segments.isEmpty()) {
+                return false;
+            }
+            if (segment == null || !segments.contains(segment)) {
+                // First run, or the committed segment was removed by retention: start at the oldest one left ....
+                segment = segments.get(0);
+                position = 0;
+            }
+
+            Path segmentFile = partitionDir.resolve(segment);
+            List<BulkOrderOperation> batch = new ArrayList<>(batchSize);
+            List<Long> endPositions = new ArrayList<>(batchSize);
+            long nextPosition = readBatch(segmentFile, batch, endPositions);
+
+            if (batch.isEmpty() && nextPosition == position) {
+                // Segment fully read: move on only once the producer has rolled to a newer one ....
+                int index = segments.indexOf(segment);
+                if (index < segments.size() - 1 && Files.size(segmentFile) == position) {
+                    commit(segments.get(index + 1), 0);
+                    return true;
+                }
+                return false;
+            }
+
+            int done = apply(batch);
+            if (done < batch.size()) {
+                // Still rejected: keep everything from the first unapplied operation for the next poll ....
+                commit(segment, done == 0 ? position : endPositions.get(done - 1));
+                return false;
+            }
+            commit(segment, nextPosition);
+            return true;
+        }
+
+        // Reads up to batchSize complete lines from the committed position, returns the position after the last one.
+        // endPositions gets the position right after each operation's line ....
+        private long readBatch(Path segmentFile, List<BulkOrderOperation> batch, List<Long> endPositions) throws IOException {
+            long next = position;
+            try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+                channel.position(position);
+                InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+                ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+
+                int b;
+                while (batch.size() < batchSize && (b = in.read()) != -1) {
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    next += line.size() + 1;
+                    String json = line.toString(StandardCharsets.UTF_8).trim();
+                    line.reset();
+                    if (!json.isEmpty()) {
+                        BulkOrderOperation operation = toOperation(json, next);
+                        if (operation != null) {
+                            batch.add(operation);
+                            endPositions.add(next);
+                        }
+                    }
+                }
+            }
+            return next;
+        }
+
+        private BulkOrderOperation toOperation(String json, long endPosition) {
+            try {
+                OrderChangeEvent event = objectMapper.readValue(json, OrderChangeEvent.class);
+                String orderId = event.order_id() != null ? event.order_id()
+                        : event.order() != null ? event.order().getOrder_id() : null;
+                if (orderId == null || event.op() == null) {
+                    throw new IllegalArgumentException("missing op or order_id");
+                }
+                return switch (event.op()) {
+                    case "index", "create" -> {
+                        event.order().setOrder_id(orderId);
+                        yield BulkOrderOperation.index(event.order());
+                    }
+                    case "update" -> BulkOrderOperation.update(orderId, event.doc());
+                    case "delete" -> BulkOrderOperation.delete(orderId);
+                    default -> throw new IllegalArgumentException("unknown op " + event.op());
+                };
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.warn("Skipping bad change event in partition {} at {}:{}: {}", partition, segment, endPosition, e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Sends the batch, resending it from the first 429 item on (in order) with exponential backoff.
+         * Other item failures are counted and skipped.
+         *
+         * @return how many operations at the head of the batch are done (applied or permanently rejected)
+         */
+        private int apply(List<BulkOrderOperation> batch) throws InterruptedException {
+            int done = 0;
+            long backoffMs = 100;
+            int attempt = 0;
+            while (done < batch.size()) {
+                List<BulkOrderOperation> pending = batch.subList(done, batch.size());
+                BulkOutcome outcome;
+                try {
+                    outcome = orderBulkIndexer.bulk(pending);
+                } catch (RuntimeException e) {
+                    // Whole request failed (node down, timeout): keep the offset and retry the same operations ....
+                    logger.warn("Bulk request of partition {} failed: {}", partition, e.getMessage());
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, 30_000);
+                    continue;
+                }
+
+                applied.addAndGet(outcome.succeeded());
+                failed.addAndGet(outcome.failed());
+                if (outcome.retryable().isEmpty()) {
+                    return batch.size();
+                }
+                // Items after the first rejected one are sent again too: replays are idempotent, reordering is not ....
+                done += indexOf(pending, outcome.retryable().get(0));
+                if (attempt++ >= maxRetries) {
+                    logger.error("Partition {} stalled: {} operations still rejected after {} retries, retrying from {}:{} next poll",
+                            partition, batch.size() - done, maxRetries, segment, position);
+                    return done;
+                }
+                retried.addAndGet(batch.size() - done);
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+            return done;
+        }
+
+        private static int indexOf(List<BulkOrderOperation> operations, BulkOrderOperation operation) {
+            for (int i = 0; i < operations.size(); i++) {
+                if (operations.get(i) == operation) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Retryable operation is not part of the batch");
+        }
+
+        private List<String> listSegments() throws IOException {
+            if (!Files.isDirectory(partitionDir)) {
+                return List.of();
+            }
+            try (Stream<Path> files = Files.list(partitionDir)) {
+                return files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+        }
+
+        private void loadOffset() throws IOException {
+            if (!Files.exists(offsetFile)) {
+                return;
+            }
+            String[] parts = Files.readString(offsetFile).trim().split(" ");
+            segment = parts[0];
+            position = Long.parseLong(parts[1]);
+        }
+
+        private void commit(String newSegment, long newPosition) throws IOException {
+            Path tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap((newSegment + " " + newPosition).getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(offsetFile.getParent());
+            segment = newSegment;
+            position = newPosition;
+        }
+
+        // Makes the rename itself durable. Not every platform can open a directory (Windows), there it's best effort ....
+        private void forceDirectory(Path directory) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                logger.debug("Could not fsync {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+}
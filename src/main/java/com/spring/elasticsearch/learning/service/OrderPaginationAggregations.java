@@ -1,13 +1,17 @@
 package com.spring.elasticsearch.learning.service;
 
+import co.elastic.clients.elasticsearch._types.RequestCacheStats;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.json.JsonData;
 import com.spring.elasticsearch.learning.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.stereotype.Service;
@@ -19,8 +23,12 @@ import java.util.stream.Collectors;
 public class OrderPaginationAggregations {
 
     @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
     private ElasticsearchOperations operations;
 
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
     /**
      * Key Points: While checking Aggregate Object for required aggregation value.
      *
@@ -31,6 +39,22 @@ public class OrderPaginationAggregations {
      * isMin() → for min aggregation
      */
 
+    /**
+     * ✅ Common starting point for every aggregation query in this class.
+     *
+     * GET orders_pagination/_search?request_cache=true&preference=dashboard-<session>
+     * { "size": 0, ... }
+     *
+     * 🔑 Remember: the shard request cache only caches "size": 0 requests, and only if the body is identical,
+     * so relative dates are resolved with CacheableDateMath instead of sending "now-..." to ES.
+     */
+    static NativeQueryBuilder aggregationQuery() {
+        return NativeQuery.builder()
+                .withMaxResults(0)
+                .withRequestCache(true)
+                .withPreference(DashboardSessionPreference.current());
+    }
+
     /**
      * 1️⃣ Aggregation Query (Total count of orders using order_id)
      *
@@ -55,7 +79,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Build NativeQuery with the aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("total_orders", totalOrdersAgg)
                 .build();
 
@@ -114,7 +138,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Build NativeQuery with the aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("total_revenue", revenueAggs)
                 .build();
 
@@ -160,7 +184,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Build NativeQuery with the aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("avg_order_value", avgOrderAggs)
                 .build();
 
@@ -202,7 +226,7 @@ public class OrderPaginationAggregations {
         Aggregation maxAggs = Aggregation.of(a -> a.max(m -> m.field("total_amount")));
 
         // ✅ Build NativeQuery with the aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("min_amount", minAggs)
                 .withAggregation("max_amount", maxAggs)
                 .build();
@@ -255,14 +279,14 @@ public class OrderPaginationAggregations {
      *   }
      * }
      */
-    public Map<String, Long> getOrdersGroupedByStatus() {
+    public KeywordCounts getOrdersGroupedByStatus() {
         // ✅ Build Average Aggregation ....
         Aggregation groupByAggs = Aggregation.of(a -> a
                 .terms(t -> t.field("status"))
         );
 
         // ✅ Build NativeQuery with the aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("orders_by_status", groupByAggs)
                 .build();
 
@@ -270,22 +294,23 @@ public class OrderPaginationAggregations {
         SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
 
         // ✅ get Spring's wrapper for aggregations ....
+        // ✅ status values are dictionary-encoded: the counts hold int codes, strings come back only in the JSON ....
+        KeywordCounts result = new KeywordCounts(keywordDictionaries.statuses(), 8);
+
         ElasticsearchAggregations springAggs = (ElasticsearchAggregations) searchHits.getAggregations();
         if (springAggs == null){
-            return Collections.emptyMap();
+            return result;
         }
 
         // ✅ get the named aggregation wrapper ....
         ElasticsearchAggregation groupByAggWrapper = springAggs.aggregationsAsMap().get("orders_by_status");
         if (groupByAggWrapper == null){
-            return Collections.emptyMap();
+            return result;
         }
 
         // ✅ get the underlying Aggregate (typed union from the Java client) ....
         Aggregate groupByAggObject = groupByAggWrapper.aggregation().getAggregate();
 
-        Map<String, Long> result = new LinkedHashMap<>();
-
         /**
          * ✅ terms aggregation response can come back in different typed flavours
          * depending on the field type: string-terms (sterms), long-terms (lterms),
@@ -307,7 +332,7 @@ public class OrderPaginationAggregations {
          */
         if (groupByAggObject.isSterms()) { // string terms (most common for "status")
             //groupByAggObject.sterms().buckets().array()
-                    //.forEach((StringTermsBucket b) -> result.put(b.key().stringValue(), b.docCount()));
+                    //.forEach((StringTermsBucket b) -> result.add(b.key().stringValue(), b.docCount()));
             groupByAggObject.sterms().buckets().array()
                     .forEach((StringTermsBucket b) -> {
                         String key;
@@ -318,23 +343,23 @@ public class OrderPaginationAggregations {
                         } else {
                             key = b.key().toString(); // fallback
                         }
-                        result.put(key, b.docCount());
+                        result.add(key, b.docCount());
                     });
 
         } else if (groupByAggObject.isLterms()) { // numeric terms
             groupByAggObject.lterms().buckets().array()
-                    .forEach((LongTermsBucket b) -> result.put(String.valueOf(b.key()), b.docCount()));
+                    .forEach((LongTermsBucket b) -> result.add(String.valueOf(b.key()), b.docCount()));
         } else if (groupByAggObject.isMultiTerms()) { // multi-field terms -> bucket.key() is a list
             groupByAggObject.multiTerms().buckets().array()
                     .forEach((MultiTermsBucket b) -> {
                         String compositeKey = b.key().stream()
                                 .map(Objects::toString)         // convert each key part to string
                                 .collect(Collectors.joining("|")); // join with a separator
-                        result.put(compositeKey, b.docCount());
+                        result.add(compositeKey, b.docCount());
                     });
         } else {
             // unexpected type — return empty or throw if you prefer
-            return Collections.emptyMap();
+            return result;
         }
 
         return result;
@@ -386,7 +411,7 @@ public class OrderPaginationAggregations {
         );*/
 
         // ✅ Step 3: Build query ....
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withAggregation("revenue_per_customer", revenuePerCustomerAgg)
                 .withMaxResults(0)
                 .build();
@@ -467,7 +492,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Step 3: Build the NativeQuery with both query + aggregation
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withQuery(statusFilterQuery)
                 .withAggregation("paid_revenue", paidRevenueAgg)
                 .withMaxResults(0) // IMP: we don't want document hits, only aggregation result ....
@@ -532,7 +557,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Step 3: Compose the NativeQuery with query + all aggregations; set size=0 (we don't need hits) ....
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withQuery(statusFilterQuery)
                 .withAggregation("total_revenue", sumAgg)
                 .withAggregation("average_order_value", avgAgg)
@@ -675,7 +700,7 @@ public class OrderPaginationAggregations {
         );
 
         // ✅ Step 3: Build native query (with size = 0 because we don’t care about hits)
-        NativeQuery query = NativeQuery.builder()
+        NativeQuery query = aggregationQuery()
                 .withQuery(statusFilter)
                 .withAggregation("revenue_per_customer", revenuePerCustomerAgg)
                 .withMaxResults(0)
@@ -780,6 +805,67 @@ public class OrderPaginationAggregations {
      */
     public Map<String, CustomerOrderStats> getCustomerOrderStatsLast30Days() {
 
+        // 1️⃣ - 5️⃣ Build and execute the query (see customerOrderStatsLast30DaysQuery) ....
+        SearchHits<OrderDocument> searchHits = operations.search(customerOrderStatsLast30DaysQuery(), OrderDocument.class);
+        ElasticsearchAggregations aggs = (ElasticsearchAggregations) searchHits.getAggregations();
+        if (aggs == null) return Collections.emptyMap();
+
+        // 6️⃣ Extract the terms aggregation result
+        ElasticsearchAggregation wrapper = aggs.aggregationsAsMap().get("orders_by_customer");
+        Aggregate agg = wrapper.aggregation().getAggregate();
+
+        Map<String, CustomerOrderStats> result = new LinkedHashMap<>();
+
+        /**
+         * Iteration Over Buckets:
+         * Each bucket = one customer group.
+         *
+         * We fetch:
+         * bucket.key().stringValue() → customer name.
+         * bucket.docCount() → number of orders for this customer.
+         * Nested aggregations for avg and max order value.
+         */
+        for (StringTermsBucket bucket : agg.sterms().buckets().array()) {
+            String customer = bucket.key().stringValue();
+            long orderCount = bucket.docCount();
+
+            double avgOrderValue = bucket.aggregations()
+                    .get("avg_order_value")
+                    .avg()
+                    .value();
+
+            double maxOrderValue = bucket.aggregations()
+                    .get("max_order_value")
+                    .max()
+                    .value();
+
+            result.put(customer, new CustomerOrderStats(orderCount, avgOrderValue, maxOrderValue));
+        }
+
+        return result;
+    }
+
+    /**
+     * ✅ Same query as getCustomerOrderStatsLast30Days(), decoded into columns (keys / docCounts / avg / max)
+     * instead of a Map of CustomerOrderStats.
+     */
+    public ColumnarBuckets getCustomerOrderStatsLast30DaysColumnar() {
+        SearchHits<OrderDocument> searchHits = operations.search(customerOrderStatsLast30DaysQuery(), OrderDocument.class);
+        return AggregationDecoder.decodeBuckets(AggregationDecoder.aggregate(searchHits, "orders_by_customer"),
+                "avg_order_value", "max_order_value");
+    }
+
+    /**
+     * ✅ Same query as getCustomerOrderStatsLast30Days(), returns the raw "orders_by_customer" Aggregate
+     * so the controller can stream the buckets (AggregationStreamWriter). Null if ES returned no aggregations.
+     */
+    public Aggregate getCustomerOrderStatsLast30DaysAggregate() {
+        SearchHits<OrderDocument> searchHits = operations.search(customerOrderStatsLast30DaysQuery(), OrderDocument.class);
+        return AggregationDecoder.aggregate(searchHits, "orders_by_customer");
+    }
+
+    private NativeQuery customerOrderStatsLast30DaysQuery() {
+
         /**
          * 1️⃣ Build the bool query (status = PAID AND order_date >= now-30d). We've used 330 as per our data in ES ....
          *
@@ -791,7 +877,7 @@ public class OrderPaginationAggregations {
         Query boolQuery = Query.of(q -> q
                 .bool(b -> b
                         .must(m -> m.term(t -> t.field("status").value("PAID")))
-                        .must(m -> m.range(r -> r.field("order_date").gte(JsonData.of("now-330d/d"))))
+                        .must(m -> m.range(r -> r.field("order_date").gte(JsonData.of(CacheableDateMath.startOfDayDaysAgo(330)))))
                 )
         );
 
@@ -822,49 +908,10 @@ public class OrderPaginationAggregations {
         );
 
         // 4️⃣ Build native query
-        NativeQuery query = NativeQuery.builder()
+        return aggregationQuery()
                 .withQuery(boolQuery)
                 .withAggregation("orders_by_customer", ordersByCustomerAgg)
                 .build();
-
-        // 5️⃣ Execute the search
-        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
-        ElasticsearchAggregations aggs = (ElasticsearchAggregations) searchHits.getAggregations();
-        if (aggs == null) return Collections.emptyMap();
-
-        // 6️⃣ Extract the terms aggregation result
-        ElasticsearchAggregation wrapper = aggs.aggregationsAsMap().get("orders_by_customer");
-        Aggregate agg = wrapper.aggregation().getAggregate();
-
-        Map<String, CustomerOrderStats> result = new LinkedHashMap<>();
-
-        /**
-         * Iteration Over Buckets:
-         * Each bucket = one customer group.
-         *
-         * We fetch:
-         * bucket.key().stringValue() → customer name.
-         * bucket.docCount() → number of orders for this customer.
-         * Nested aggregations for avg and max order value.
-         */
-        for (StringTermsBucket bucket : agg.sterms().buckets().array()) {
-            String customer = bucket.key().stringValue();
-            long orderCount = bucket.docCount();
-
-            double avgOrderValue = bucket.aggregations()
-                    .get("avg_order_value")
-                    .avg()
-                    .value();
-
-            double maxOrderValue = bucket.aggregations()
-                    .get("max_order_value")
-                    .max()
-                    .value();
-
-            result.put(customer, new CustomerOrderStats(orderCount, avgOrderValue, maxOrderValue));
-        }
-
-        return result;
     }
 
     /**
@@ -913,36 +960,8 @@ public class OrderPaginationAggregations {
      */
     public Map<String, DailySalesStats> getDailySalesForCustomer(String customerName) {
 
-        // 1️⃣ Build bool query with match + range
-        Query boolQuery = Query.of(q -> q
-                .bool(b -> b
-                        .must(m -> m.match(mm -> mm.field("customer").query(customerName)))
-                        .must(m -> m.range(r -> r.field("total_amount").gte(JsonData.of(100))))
-                )
-        );
-
-        // 2️⃣ Build sub-aggregations: total sales and avg sales
-        Aggregation totalSalesAgg = Aggregation.of(a -> a.sum(s -> s.field("total_amount")));
-        Aggregation avgSalesAgg = Aggregation.of(a -> a.avg(avg -> avg.field("total_amount")));
-
-        // 3️⃣ Build date histogram aggregation with sub-aggs
-        Aggregation dailySalesAgg = Aggregation.of(a -> a
-                .dateHistogram(dh -> dh
-                        .field("order_date")
-                        .calendarInterval(CalendarInterval.Day)
-                )
-                .aggregations("total_sales", totalSalesAgg)
-                .aggregations("avg_sales", avgSalesAgg)
-        );
-
-        // 4️⃣ Build native query
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(boolQuery)
-                .withAggregation("daily_sales", dailySalesAgg)
-                .build();
-
-        // 5️⃣ Execute the search
-        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+        // 1️⃣ - 5️⃣ Build and execute the query (see dailySalesForCustomerQuery) ....
+        SearchHits<OrderDocument> searchHits = operations.search(dailySalesForCustomerQuery(customerName), OrderDocument.class);
         ElasticsearchAggregations aggs = (ElasticsearchAggregations) searchHits.getAggregations();
         if (aggs == null) return Collections.emptyMap();
 
@@ -1003,6 +1022,54 @@ public class OrderPaginationAggregations {
         return result;
     }
 
+    /**
+     * ✅ Same query as getDailySalesForCustomer(), decoded into columns (keys / docCounts / total_sales / avg_sales).
+     */
+    public ColumnarBuckets getDailySalesForCustomerColumnar(String customerName) {
+        SearchHits<OrderDocument> searchHits = operations.search(dailySalesForCustomerQuery(customerName), OrderDocument.class);
+        return AggregationDecoder.decodeBuckets(AggregationDecoder.aggregate(searchHits, "daily_sales"),
+                "total_sales", "avg_sales");
+    }
+
+    /**
+     * ✅ Same query as getDailySalesForCustomer(), returns the raw "daily_sales" Aggregate for streaming.
+     */
+    public Aggregate getDailySalesForCustomerAggregate(String customerName) {
+        SearchHits<OrderDocument> searchHits = operations.search(dailySalesForCustomerQuery(customerName), OrderDocument.class);
+        return AggregationDecoder.aggregate(searchHits, "daily_sales");
+    }
+
+    private NativeQuery dailySalesForCustomerQuery(String customerName) {
+
+        // 1️⃣ Build bool query with match + range
+        Query boolQuery = Query.of(q -> q
+                .bool(b -> b
+                        .must(m -> m.match(mm -> mm.field("customer").query(customerName)))
+                        .must(m -> m.range(r -> r.field("total_amount").gte(JsonData.of(100))))
+                )
+        );
+
+        // 2️⃣ Build sub-aggregations: total sales and avg sales
+        Aggregation totalSalesAgg = Aggregation.of(a -> a.sum(s -> s.field("total_amount")));
+        Aggregation avgSalesAgg = Aggregation.of(a -> a.avg(avg -> avg.field("total_amount")));
+
+        // 3️⃣ Build date histogram aggregation with sub-aggs
+        Aggregation dailySalesAgg = Aggregation.of(a -> a
+                .dateHistogram(dh -> dh
+                        .field("order_date")
+                        .calendarInterval(CalendarInterval.Day)
+                )
+                .aggregations("total_sales", totalSalesAgg)
+                .aggregations("avg_sales", avgSalesAgg)
+        );
+
+        // 4️⃣ Build native query
+        return aggregationQuery()
+                .withQuery(boolQuery)
+                .withAggregation("daily_sales", dailySalesAgg)
+                .build();
+    }
+
 
     /**
      * GET orders_pagination/_search
@@ -1055,57 +1122,186 @@ public class OrderPaginationAggregations {
      */
     public List<CategoryStats> getCategoryStatsLast30Days() {
 
-        // ✅ Step 1: Build Bool Query
-        Query boolQuery = Query.of(q -> q
+        // ✅ Step 1-4: Bool query (PAID orders of the window) + terms aggregation with sub-aggs
+        NativeQuery query = aggregationQuery()
+                .withQuery(paidOrdersSince(330))
+                .withAggregation("orders_by_category", categoryStatsAggregation())
+                .build();
+
+        // ✅ Step 5: Execute Query
+        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+
+        // ✅ Step 6: Parse Aggregations
+        return categoryStats(AggregationDecoder.aggregate(searchHits, "orders_by_category"));
+    }
+
+    /**
+     * PAID orders since the start of the day "days" ago - shared with the async version (AsyncAggregationSearches).
+     */
+    static Query paidOrdersSince(int days) {
+        return Query.of(q -> q
                 .bool(b -> b
                         .must(
                                 Query.of(q1 -> q1.term(t -> t.field("status").value("PAID"))),
-                                Query.of(q2 -> q2.range(r -> r.field("order_date").gte(JsonData.of("now-330d/d"))))
+                                Query.of(q2 -> q2.range(r -> r.field("order_date").gte(JsonData.of(CacheableDateMath.startOfDayDaysAgo(days)))))
                         )
                 )
         );
+    }
 
-        // ✅ Step 2: Build Sub-Aggregations
+    /**
+     * "orders_by_category": terms on category with total_sales / avg_sales / max_sale per bucket.
+     */
+    static Aggregation categoryStatsAggregation() {
+        // ✅ Sub-Aggregations
         Aggregation totalSalesAgg = Aggregation.of(a -> a.sum(s -> s.field("total_amount")));
         Aggregation avgSalesAgg = Aggregation.of(a -> a.avg(avg -> avg.field("total_amount")));
         Aggregation maxSaleAgg = Aggregation.of(a -> a.max(max -> max.field("total_amount")));
 
-        // ✅ Step 3: Build Terms Aggregation with Sub-Aggs
-        Aggregation categoryAgg = Aggregation.of(a -> a
+        // ✅ Terms Aggregation with Sub-Aggs
+        return Aggregation.of(a -> a
                 .terms(t -> t.field("category").size(5))
                 .aggregations("total_sales", totalSalesAgg)
                 .aggregations("avg_sales", avgSalesAgg)
                 .aggregations("max_sale", maxSaleAgg)
         );
+    }
 
-        // ✅ Step 4: Build NativeQuery
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(boolQuery)
-                .withAggregation("orders_by_category", categoryAgg)
+    /**
+     * Decodes "orders_by_category". Also used on partial async search results, so a missing aggregation is an empty list.
+     */
+    static List<CategoryStats> categoryStats(Aggregate ordersByCategoryAgg) {
+        List<CategoryStats> result = new ArrayList<>();
+        AggregationDecoder.forEachBucket(ordersByCategoryAgg, (index, category, docCount, subAggregations) ->
+                result.add(new CategoryStats(category,
+                        AggregationDecoder.metricValue(subAggregations.get("total_sales")),
+                        AggregationDecoder.metricValue(subAggregations.get("avg_sales")),
+                        AggregationDecoder.metricValue(subAggregations.get("max_sale")))));
+        return result;
+    }
+
+
+    /**
+     * GET orders_pagination/_search
+     * {
+     *   "size": 0,
+     *   "query": { "range": { "order_date": { "gte": "now-30d/d" } } },
+     *   "aggs": {
+     *     "distinct_customers_per_day": {
+     *       "date_histogram": { "field": "order_date", "calendar_interval": "day" },
+     *       "aggs": {
+     *         "distinct_customers": {
+     *           "cardinality": { "field": "customer", "precision_threshold": 3000 }
+     *         }
+     *       }
+     *     }
+     *   }
+     * }
+     *
+     * ✅ cardinality = HyperLogLog++ → approximate distinct count with fixed memory per bucket.
+     * 🔑 precision_threshold: counts below it are (almost) exact, memory ≈ precision_threshold * 8 bytes per bucket (max 40000).
+     */
+    public ColumnarBuckets getDistinctCustomersPerDay(int days, int precisionThreshold) {
+        Aggregation distinctCustomersAgg = Aggregation.of(a -> a
+                .cardinality(c -> c.field("customer").precisionThreshold(precisionThreshold))
+        );
+
+        Aggregation perDayAgg = Aggregation.of(a -> a
+                .dateHistogram(dh -> dh.field("order_date").calendarInterval(CalendarInterval.Day))
+                .aggregations("distinct_customers", distinctCustomersAgg)
+        );
+
+        NativeQuery query = aggregationQuery()
+                .withQuery(q -> q.range(r -> r.field("order_date").gte(JsonData.of(CacheableDateMath.startOfDayDaysAgo(days)))))
+                .withAggregation("distinct_customers_per_day", perDayAgg)
                 .build();
 
-        // ✅ Step 5: Execute Query
         SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+        return AggregationDecoder.decodeBuckets(AggregationDecoder.aggregate(searchHits, "distinct_customers_per_day"),
+                "distinct_customers");
+    }
 
-        // ✅ Step 6: Parse Aggregations
-        ElasticsearchAggregations aggs = (ElasticsearchAggregations) searchHits.getAggregations();
-        ElasticsearchAggregation ordersByCategoryAggWrapper = aggs.aggregationsAsMap().get("orders_by_category");
 
-        Aggregate ordersByCategoryAgg = ordersByCategoryAggWrapper.aggregation().getAggregate();
+    /**
+     * GET orders_pagination/_search
+     * {
+     *   "size": 0,
+     *   "query": { "range": { "order_date": { "gte": "now-30d/d" } } },
+     *   "aggs": {
+     *     "orders_by_category": {
+     *       "terms": { "field": "category", "size": 10 },
+     *       "aggs": {
+     *         "order_value_percentiles": {
+     *           "percentiles": {
+     *             "field": "total_amount",
+     *             "percents": [50, 95, 99],
+     *             "tdigest": { "compression": 100 },
+     *             "keyed": false
+     *           }
+     *         }
+     *       }
+     *     }
+     *   }
+     * }
+     *
+     * ✅ percentiles uses a t-digest per bucket: accurate at the tails (p95/p99), approximate in the middle.
+     * 🔑 compression: higher = more accurate, more memory (default 100).
+     */
+    public List<CategoryPercentiles> getOrderValuePercentilesByCategory(int days, List<Double> percents, int compression) {
+        Aggregation percentilesAgg = Aggregation.of(a -> a
+                .percentiles(p -> p
+                        .field("total_amount")
+                        .percents(percents)
+                        .tdigest(t -> t.compression(compression))
+                        .keyed(false))
+        );
 
-        List<CategoryStats> result = new ArrayList<>();
+        Aggregation categoryAgg = Aggregation.of(a -> a
+                .terms(t -> t.field("category").size(10))
+                .aggregations("order_value_percentiles", percentilesAgg)
+        );
 
-        for (StringTermsBucket bucket : ordersByCategoryAgg.sterms().buckets().array()) {
-            String category = bucket.key().stringValue();
-            long docCount = bucket.docCount();
+        NativeQuery query = aggregationQuery()
+                .withQuery(q -> q.range(r -> r.field("order_date").gte(JsonData.of(CacheableDateMath.startOfDayDaysAgo(days)))))
+                .withAggregation("orders_by_category", categoryAgg)
+                .build();
 
-            double totalSales = bucket.aggregations().get("total_sales").sum().value();
-            double avgSales = bucket.aggregations().get("avg_sales").avg().value();
-            double maxSale = bucket.aggregations().get("max_sale").max().value();
+        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
 
-            result.add(new CategoryStats(category, totalSales, avgSales, maxSale));
-        }
+        List<CategoryPercentiles> result = new ArrayList<>();
+        AggregationDecoder.forEachBucket(AggregationDecoder.aggregate(searchHits, "orders_by_category"),
+                (index, category, docCount, subAggregations) -> {
+                    Map<String, Double> values = new LinkedHashMap<>();
+                    Aggregate percentilesAggObject = subAggregations.get("order_value_percentiles");
+                    if (percentilesAggObject != null && percentilesAggObject.isTdigestPercentiles()) {
+                        percentilesAggObject.tdigestPercentiles().values().array()
+                                .forEach(item -> values.put(item.key(), item.value()));
+                    }
+                    result.add(new CategoryPercentiles(category, docCount, values));
+                });
 
         return result;
     }
+
+
+    /**
+     * GET _nodes/stats/indices/request_cache
+     *
+     * ✅ Hit-rate of the shard request cache per node, to check that the aggregations above are really served from it.
+     * hitRate = hit_count / (hit_count + miss_count)
+     */
+    public List<RequestCacheStatsResponse> getRequestCacheStats() {
+        // The node stats API is not part of ElasticsearchOperations, so we go down to the Java client ....
+        return ((ElasticsearchTemplate) operations).execute(client -> client.nodes()
+                        .stats(s -> s.metric("indices").indexMetric("request_cache")))
+                .nodes().entrySet().stream()
+                .map(node -> {
+                    RequestCacheStats cache = node.getValue().indices().requestCache();
+                    long lookups = cache.hitCount() + cache.missCount();
+                    double hitRate = lookups == 0 ? 0.0 : (double) cache.hitCount() / lookups;
+                    return new RequestCacheStatsResponse(node.getKey(), node.getValue().name(),
+                            cache.hitCount(), cache.missCount(), cache.evictions(), cache.memorySizeInBytes(), hitRate);
+                })
+                .toList();
+    }
 }
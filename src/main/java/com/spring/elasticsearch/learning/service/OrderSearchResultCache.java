@@ -0,0 +1,300 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import com.spring.elasticsearch.learning.models.ResultCacheStats;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Two-tier result cache for the hot order lookups (fetch-by-customer, match-by-status).
+ *
+ * Keys are normalized query fingerprints, e.g. "term:customer=Alice" or "match:status=PAID".
+ *
+ * 1️⃣ Heap tier: small LRU (LinkedHashMap in access order) holding the decoded List<OrderDocument>.
+ * 2️⃣ Off-heap tier: one direct ByteBuffer used as a ring. Entries evicted from the heap tier are written there as
+ *    JSON; a hit is decoded and promoted back to the heap tier. The data doesn't count against the heap, so a much
+ *    larger working set fits without GC pressure - only a small offset index stays on heap.
+ *
+ * Invalidation: addOrder and status updates invalidate the customer / status keys they touch - previous and new
+ * values - in both tiers, and so do the indexed orders of a bulk batch; bulk partial updates / deletes, mass
+ * transitions and the end of a bulk load session clear everything.
+ *
+ * 🔑 Remember:
+ * - a lookup that raced with an invalidation is not cached (per-key version check).
+ * - a key invalidated less than refresh-grace-ms ago is not cached either: ES only sees the write after its next
+ *   refresh, so caching right away would pin the stale result.
+ * - ttl-ms bounds staleness for writes made by other processes.
+ * - timed-out (partial) results are never cached.
+ */
+@Service
+public class OrderSearchResultCache {
+
+    private static final Logger logger = LogManager.getLogger(OrderSearchResultCache.class);
+
+    private static final TypeReference<List<OrderDocument>> ORDER_LIST = new TypeReference<>() {};
+
+    // Off-heap entry header: [long createdAt][int keyLength][int valueLength] ....
+    private static final int HEADER_BYTES = 16;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.cache.heap-entries:1000}")
+    private int heapEntries;
+
+    @Value("${orders.cache.off-heap-mb:64}")
+    private int offHeapMb;
+
+    @Value("${orders.cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${orders.cache.refresh-grace-ms:1500}")
+    private long refreshGraceMs;
+
+    private record HeapEntry(List<OrderDocument> orders, long createdAt) {}
+
+    private record OffHeapSlot(int position, int length, long createdAt) {}
+
+    private final Object lock = new Object();
+
+    // Guarded by lock ....
+    private LinkedHashMap<String, HeapEntry> heap;
+    private ByteBuffer arena;
+    private final Map<String, OffHeapSlot> offHeapIndex = new HashMap<>();
+    private final TreeMap<Integer, String> offHeapByPosition = new TreeMap<>();
+    private int writePosition;
+    private long offHeapBytesUsed;
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    // Bumped by invalidateAll, so lookups that were in flight at that moment aren't cached either ....
+    private final AtomicLong globalEpoch = new AtomicLong();
+    private volatile long globalInvalidatedAt;
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong offHeapHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        arena = ByteBuffer.allocateDirect(offHeapMb * 1024 * 1024);
+        heap = new LinkedHashMap<>(heapEntries * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HeapEntry> eldest) {
+                if (size() <= heapEntries) {
+                    return false;
+                }
+                demote(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public static String customerKey(String customer) {
+        return "term:customer=" + customer.trim();
+    }
+
+    public static String statusKey(String status) {
+        return "match:status=" + status.trim();
+    }
+
+    public List<OrderDocument> get(String key, Supplier<List<OrderDocument>> loader) {
+        List<OrderDocument> cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        long epoch = globalEpoch.get();
+        long version = versions.getOrDefault(key, 0L);
+        List<OrderDocument> loaded = loader.get();
+
+        RequestDeadline deadline = RequestDeadline.current();
+        boolean partial = deadline != null && deadline.isTimedOut();
+        long lastInvalidation = Math.max(invalidatedAt.getOrDefault(key, 0L), globalInvalidatedAt);
+        boolean tooFresh = System.currentTimeMillis() - lastInvalidation < refreshGraceMs;
+        if (!partial && !tooFresh) {
+            synchronized (lock) {
+                if (globalEpoch.get() == epoch && versions.getOrDefault(key, 0L) == version) {
+                    heap.put(key, new HeapEntry(List.copyOf(loaded), System.currentTimeMillis()));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidateCustomer(String customer) {
+        if (customer != null) {
+            invalidate(customerKey(customer));
+        }
+    }
+
+    public void invalidateStatus(String status) {
+        if (status != null) {
+            invalidate(statusKey(status));
+        }
+    }
+
+    public void invalidateOrder(OrderDocument order) {
+        invalidateCustomer(order.getCustomer());
+        invalidateStatus(order.getStatus());
+    }
+
+    /**
+     * ✅ For writes whose customer / status isn't known (partial updates, deletes, mass transitions).
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            globalEpoch.incrementAndGet();
+            globalInvalidatedAt = System.currentTimeMillis();
+            heap.clear();
+            offHeapIndex.clear();
+            offHeapByPosition.clear();
+            offHeapBytesUsed = 0;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public ResultCacheStats getStats() {
+        synchronized (lock) {
+            return new ResultCacheStats(heap.size(), offHeapIndex.size(), offHeapBytesUsed, arena.capacity(),
+                    heapHits.get(), offHeapHits.get(), misses.get(), invalidations.get());
+        }
+    }
+
+    private void invalidate(String key) {
+        synchronized (lock) {
+            markInvalidated(key, System.currentTimeMillis());
+            heap.remove(key);
+            removeOffHeap(key);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    // Caller holds lock ....
+    private void markInvalidated(String key, long now) {
+        versions.merge(key, 1L, Long::sum);
+        invalidatedAt.put(key, now);
+    }
+
+    private List<OrderDocument> lookup(String key) {
+        long now = System.currentTimeMillis();
+        byte[] json;
+        synchronized (lock) {
+            HeapEntry entry = heap.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt() <= ttlMs) {
+                    heapHits.incrementAndGet();
+                    return entry.orders();
+                }
+                heap.remove(key);
+            }
+
+            OffHeapSlot slot = offHeapIndex.get(key);
+            if (slot == null) {
+                return null;
+            }
+            if (now - slot.createdAt() > ttlMs) {
+                removeOffHeap(key);
+                return null;
+            }
+            int keyLength = arena.getInt(slot.position() + 8);
+            int valueLength = arena.getInt(slot.position() + 12);
+            json = new byte[valueLength];
+            arena.get(slot.position() + HEADER_BYTES + keyLength, json);
+            removeOffHeap(key);
+        }
+
+        // Decode outside the lock, then promote to the heap tier ....
+        try {
+            List<OrderDocument> orders = List.copyOf(objectMapper.readValue(json, ORDER_LIST));
+            offHeapHits.incrementAndGet();
+            synchronized (lock) {
+                heap.put(key, new HeapEntry(orders, now));
+            }
+            return orders;
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable off-heap cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    // Caller holds lock. Writes an entry evicted from the heap tier into the off-heap ring ....
+    private void demote(String key, HeapEntry entry) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(entry.orders());
+        } catch (IOException e) {
+            return;
+        }
+        int length = HEADER_BYTES + keyBytes.length + json.length;
+        if (length > arena.capacity()) {
+            return;
+        }
+        if (writePosition + length > arena.capacity()) {
+            writePosition = 0; // wrap: the oldest entries at the start get overwritten ....
+        }
+
+        // Drop every live entry the new one overwrites (incl. one from the previous lap straddling the start) ....
+        Map.Entry<Integer, String> straddling = offHeapByPosition.lowerEntry(writePosition);
+        if (straddling != null) {
+            OffHeapSlot slot = offHeapIndex.get(straddling.getValue());
+            if (slot != null && slot.position() + slot.length() > writePosition) {
+                removeOffHeap(straddling.getValue());
+            }
+        }
+        Iterator<Map.Entry<Integer, String>> overwritten =
+                offHeapByPosition.subMap(writePosition, writePosition + length).entrySet().iterator();
+        while (overwritten.hasNext()) {
+            String victim = overwritten.next().getValue();
+            OffHeapSlot slot = offHeapIndex.remove(victim);
+            if (slot != null) {
+                offHeapBytesUsed -= slot.length();
+            }
+            overwritten.remove();
+        }
+        removeOffHeap(key);
+
+        arena.putLong(writePosition, entry.createdAt());
+        arena.putInt(writePosition + 8, keyBytes.length);
+        arena.putInt(writePosition + 12, json.length);
+        arena.put(writePosition + HEADER_BYTES, keyBytes);
+        arena.put(writePosition + HEADER_BYTES + keyBytes.length, json);
+
+        offHeapIndex.put(key, new OffHeapSlot(writePosition, length, entry.createdAt()));
+        offHeapByPosition.put(writePosition, key);
+        offHeapBytesUsed += length;
+        writePosition += length;
+    }
+
+    // Caller holds lock ....
+    private void removeOffHeap(String key) {
+        OffHeapSlot slot = offHeapIndex.remove(key);
+        if (slot != null) {
+            offHeapByPosition.remove(slot.position());
+            offHeapBytesUsed -= slot.length();
+        }
+    }
+}
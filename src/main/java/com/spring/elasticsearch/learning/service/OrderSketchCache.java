@@ -0,0 +1,269 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.CategoryPercentiles;
+import com.spring.elasticsearch.learning.models.DistinctCustomersEstimate;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import com.spring.elasticsearch.learning.models.OrderValuePercentiles;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.Union;
+import org.apache.datasketches.tdigest.TDigestDouble;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ✅ In-app cache of mergeable sketches per day: an HLL of customers, a t-digest of order values and one t-digest of
+ * order values per category (p95 order value per category).
+ *
+ * ES cardinality / percentiles results can't be combined across requests (an estimate of day 1 plus an
+ * estimate of day 2 is not the estimate of both days). Sketches can: an HLL union or a t-digest merge of the
+ * daily sketches is the sketch of the whole range. So a multi-day question only builds the days it has never
+ * seen, every other day comes from memory:
+ *
+ *   [day 1][day 2][day 3] ... [today]              [tomorrow ...]
+ *    cache  cache  build      rebuilt after ttl     empty, never queried
+ *
+ * 🔑 Remember:
+ * - closed days (before today, UTC) are cached until evicted - they don't change anymore. Today is kept for
+ *   orders.sketch.open-day-ttl-ms, so a dashboard polling the current week doesn't rescan today on every call.
+ * - ranges are limited to orders.sketch.max-span-days days (from <= to), IllegalArgumentException otherwise.
+ * - a day is built by scanning its orders once (customer + category + total_amount only), with the same HLL lgK and
+ *   t-digest k for every day so they stay mergeable.
+ * - the cache holds at most orders.sketch.max-cached-days days, oldest evicted first.
+ * - the last orders.sketch.precompute-days closed days are built in the background (precomputeClosedDays), so a
+ *   dashboard range only scans a closed day on the request path when it is older than that or was evicted. Those
+ *   requests run on the analytics bulkhead under a latency budget (see the controller).
+ */
+@Service
+public class OrderSketchCache {
+
+    private static final Logger logger = LogManager.getLogger(OrderSketchCache.class);
+
+    @Autowired
+    @Qualifier("analyticsElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private KeywordDictionaries keywordDictionaries;
+
+    // HLL precision: 2^lgK buckets, relative error ≈ 1.04 / sqrt(2^lgK) (lgK 12 → ~1.6%) ....
+    @Value("${orders.sketch.hll-lg-k:12}")
+    private int hllLgK;
+
+    // t-digest k: higher = more accurate quantiles, more memory ....
+    @Value("${orders.sketch.tdigest-k:200}")
+    private short tdigestK;
+
+    @Value("${orders.sketch.max-cached-days:400}")
+    private int maxCachedDays;
+
+    @Value("${orders.sketch.max-span-days:400}")
+    private int maxSpanDays;
+
+    @Value("${orders.sketch.open-day-ttl-ms:60000}")
+    private long openDayTtlMs;
+
+    @Value("${orders.sketch.precompute-days:30}")
+    private int precomputeDays;
+
+    private final ConcurrentSkipListMap<LocalDate, DailySketches> cache = new ConcurrentSkipListMap<>();
+
+    // Sketches of today, rebuilt once older than open-day-ttl-ms ....
+    private volatile DailySketches openDay;
+
+    private record DailySketches(LocalDate day, long builtAt, HllSketch customers, TDigestDouble orderValues,
+                                 Map<String, TDigestDouble> orderValuesByCategory) {}
+
+    /**
+     * ✅ Distinct customers with orders in [from, to] (inclusive), from the union of daily HLL sketches.
+     */
+    public DistinctCustomersEstimate getDistinctCustomers(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Union union = new Union(hllLgK);
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            union.update(sketchesFor(day).customers());
+        }
+        HllSketch result = union.getResult();
+
+        // 2 standard deviations ≈ 95% confidence ....
+        return new DistinctCustomersEstimate(from, to, result.getEstimate(), result.getLowerBound(2), result.getUpperBound(2));
+    }
+
+    /**
+     * ✅ Order value percentiles (e.g. 50, 95, 99) over [from, to] (inclusive), from the merge of daily t-digests.
+     */
+    public OrderValuePercentiles getOrderValuePercentiles(LocalDate from, LocalDate to, List<Double> percents) {
+        checkRange(from, to);
+        TDigestDouble merged = new TDigestDouble(tdigestK);
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            merged.merge(sketchesFor(day).orderValues());
+        }
+        return new OrderValuePercentiles(from, to, merged.getTotalWeight(), quantiles(merged, percents));
+    }
+
+    /**
+     * ✅ Order value percentiles per category over [from, to] (inclusive), from the merge of the daily per-category
+     * t-digests. Categories with the most orders first.
+     */
+    public List<CategoryPercentiles> getOrderValuePercentilesByCategory(LocalDate from, LocalDate to, List<Double> percents) {
+        checkRange(from, to);
+        Map<String, TDigestDouble> merged = new HashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            sketchesFor(day).orderValuesByCategory().forEach((category, digest) ->
+                    merged.computeIfAbsent(category, c -> new TDigestDouble(tdigestK)).merge(digest));
+        }
+
+        List<CategoryPercentiles> result = new ArrayList<>(merged.size());
+        merged.forEach((category, digest) ->
+                result.add(new CategoryPercentiles(category, digest.getTotalWeight(), quantiles(digest, percents))));
+        result.sort(Comparator.comparingLong(CategoryPercentiles::orderCount).reversed()
+                .thenComparing(CategoryPercentiles::category));
+        return result;
+    }
+
+    /**
+     * ✅ Builds the closed days of the last orders.sketch.precompute-days that aren't cached yet (oldest first).
+     * A failed day is left for the next run (or the first request that needs it).
+     */
+    @Scheduled(initialDelayString = "${orders.sketch.precompute-initial-delay-ms:60000}",
+            fixedDelayString = "${orders.sketch.precompute-interval-ms:600000}")
+    public void precomputeClosedDays() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        int built = 0;
+        for (LocalDate day = today.minusDays(precomputeDays); day.isBefore(today); day = day.plusDays(1)) {
+            if (cache.containsKey(day)) {
+                continue;
+            }
+            try {
+                cacheClosedDay(buildDay(day));
+                built++;
+            } catch (RuntimeException e) {
+                logger.warn("Could not precompute sketches for {}: {}", day, e.getMessage());
+                return;
+            }
+        }
+        if (built > 0) {
+            logger.info("Precomputed sketches for {} closed days", built);
+        }
+    }
+
+    public int getCachedDays() {
+        return cache.size();
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxSpanDays) {
+            throw new IllegalArgumentException("At most " + maxSpanDays + " days per request");
+        }
+    }
+
+    private static Map<String, Double> quantiles(TDigestDouble digest, List<Double> percents) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Double percent : percents) {
+            values.put(String.valueOf(percent), digest.isEmpty() ? Double.NaN : digest.getQuantile(percent / 100.0));
+        }
+        return values;
+    }
+
+    private DailySketches sketchesFor(LocalDate day) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (day.isAfter(today)) {
+            // No orders yet: nothing to scan ....
+            return new DailySketches(day, System.currentTimeMillis(), new HllSketch(hllLgK), new TDigestDouble(tdigestK), Map.of());
+        }
+        if (day.equals(today)) {
+            DailySketches current = openDay;
+            if (current == null || !current.day().equals(day) || System.currentTimeMillis() - current.builtAt() > openDayTtlMs) {
+                current = buildDay(day);
+                openDay = current;
+            }
+            return current;
+        }
+
+        DailySketches cached = cache.get(day);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Two concurrent misses (or a miss and the precompute) may both build the day - same result, the second put just wins ....
+        DailySketches built = buildDay(day);
+        cacheClosedDay(built);
+        return built;
+    }
+
+    private void cacheClosedDay(DailySketches sketches) {
+        cache.put(sketches.day(), sketches);
+        while (cache.size() > maxCachedDays) {
+            cache.pollFirstEntry();
+        }
+    }
+
+    /**
+     * GET orders_pagination/_search?scroll=1m
+     * {
+     *   "_source": ["customer", "category", "total_amount"],
+     *   "query": { "range": { "order_date": { "gte": "2024-12-01", "lte": "2024-12-01" } } },
+     *   "size": 1000
+     * }
+     */
+    private DailySketches buildDay(LocalDate day) {
+        long builtAt = System.currentTimeMillis();
+        HllSketch customers = new HllSketch(hllLgK);
+        TDigestDouble orderValues = new TDigestDouble(tdigestK);
+        Map<String, TDigestDouble> orderValuesByCategory = new HashMap<>();
+
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.range(r -> r
+                        .field("order_date")
+                        .gte(JsonData.of(day.toString()))
+                        .lte(JsonData.of(day.toString()))))
+                .withSourceFilter(new FetchSourceFilter(new String[]{"customer", "category", "total_amount"}, null))
+                .withPageable(PageRequest.of(0, 1000))
+                .build();
+
+        long scanned = 0;
+        try (SearchHitsIterator<OrderDocument> hits = operations.searchForStream(query, OrderDocument.class)) {
+            while (hits.hasNext()) {
+                OrderDocument order = hits.next().getContent();
+                if (order.getCustomer() != null) {
+                    customers.update(order.getCustomer());
+                }
+                if (order.getTotalAmount() != null) {
+                    orderValues.update(order.getTotalAmount());
+                    if (order.getCategory() != null) {
+                        orderValuesByCategory.computeIfAbsent(keywordDictionaries.categories().intern(order.getCategory()),
+                                c -> new TDigestDouble(tdigestK)).update(order.getTotalAmount());
+                    }
+                }
+                scanned++;
+            }
+        }
+
+        logger.debug("Built sketches for {} from {} orders", day, scanned);
+        return new DailySketches(day, builtAt, customers, orderValues, orderValuesByCategory);
+    }
+}
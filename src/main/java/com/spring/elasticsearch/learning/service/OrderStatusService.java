@@ -0,0 +1,227 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryResponse;
+import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import com.spring.elasticsearch.learning.models.StatusTransitionResult;
+import com.spring.elasticsearch.learning.models.StatusUpdateResult;
+import com.spring.elasticsearch.learning.models.StatusUpdateResult.Outcome;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Order status changes (PENDING -> PAID -> SHIPPED) without reindexing the whole document.
+ *
+ * 1️⃣ Single order: read the current status with its seq_no / primary_term, then send only the changed fields,
+ * conditioned on that version:
+ *
+ * GET orders_pagination/_doc/<id>?_source=status,customer,total_amount,ingested_at
+ *
+ * POST orders_pagination/_update/<id>?if_seq_no=42&if_primary_term=1
+ * { "doc": { "status": "SHIPPED" } }
+ *
+ * If another writer changed the order in between, ES answers 409 and we re-read and re-validate the transition
+ * (up to orders.status.max-retries) instead of silently overwriting it like repository.save() would.
+ *
+ * 2️⃣ Mass transition: one update_by_query that only touches orders still in the "from" status:
+ *
+ * POST orders_pagination/_update_by_query?conflicts=proceed&refresh=true&slices=auto
+ * {
+ *   "query": { "bool": { "filter": [ { "term": { "status": "PENDING" } }, { "term": { "customer": "Alice" } } ] } },
+ *   "script": {
+ *     "lang": "painless",
+ *     "source": "if (ctx._source.status == params.from) { ctx._source.status = params.to } else { ctx.op = 'noop' }",
+ *     "params": { "from": "PENDING", "to": "PAID" }
+ *   }
+ * }
+ *
+ * 🔑 Remember: update_by_query also uses seq_no internally - orders changed concurrently are reported as
+ * version_conflicts (conflicts=proceed) instead of being overwritten.
+ * 🔑 Status changes never touch ingested_at: it marks the last full write, and re-stamping it would make
+ * IncrementalOrderAggregations count the order again in its next delta. A single update hands the known change
+ * to it instead (recordStatusChange), a mass transition invalidates the incremental aggregates.
+ */
+@Service
+public class OrderStatusService {
+
+    private static final Logger logger = LogManager.getLogger(OrderStatusService.class);
+
+    // Allowed transitions: PENDING -> PAID -> SHIPPED ....
+    private static final Map<String, String> NEXT_STATUS = Map.of(
+            "PENDING", "PAID",
+            "PAID", "SHIPPED"
+    );
+
+    private static final String TRANSITION_SCRIPT =
+            "if (ctx._source.status == params.from) { ctx._source.status = params.to } "
+                    + "else { ctx.op = 'noop' }";
+
+    // _source of the status read, as a typed Map (Map.class alone is a raw type) ....
+    @SuppressWarnings("unchecked")
+    private static final Class<Map<String, Object>> SOURCE_TYPE = (Class<Map<String, Object>>) (Class<?>) Map.class;
+
+    @Autowired
+    @Qualifier("ingestElasticsearchTemplate")
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    private CustomerRevenueLeaderboard customerRevenueLeaderboard;
+
+    @Autowired
+    private OrderSearchResultCache orderSearchResultCache;
+
+    @Autowired
+    private HotOrderStore hotOrderStore;
+
+    @Autowired
+    private IncrementalOrderAggregations incrementalOrderAggregations;
+
+    @Value("${orders.status.max-retries:5}")
+    private int maxRetries;
+
+    public static boolean isValidTransition(String from, String to) {
+        return to.equals(NEXT_STATUS.get(from));
+    }
+
+    public StatusUpdateResult updateStatus(String id, String newStatus) {
+        String indexName = indexName();
+        ElasticsearchTemplate template = (ElasticsearchTemplate) operations;
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            // A plain point read: admitted and retried (502 / 503 / 504 too) like any other search ....
+            GetResponse<Map<String, Object>> current = ElasticsearchResilience.withOperationType(OperationType.SEARCH, () ->
+                    template.execute(client -> client.get(g -> g
+                            .index(indexName)
+                            .id(id)
+                            .sourceIncludes(List.of("status", "customer", "total_amount", "ingested_at")), SOURCE_TYPE)));
+
+            if (!current.found() || current.source() == null) {
+                return new StatusUpdateResult(id, Outcome.NOT_FOUND, null, null, attempt);
+            }
+
+            String previousStatus = (String) current.source().get("status");
+            if (newStatus.equals(previousStatus)) {
+                return new StatusUpdateResult(id, Outcome.UNCHANGED, previousStatus, newStatus, attempt);
+            }
+            if (previousStatus == null || !isValidTransition(previousStatus, newStatus)) {
+                return new StatusUpdateResult(id, Outcome.INVALID_TRANSITION, previousStatus, previousStatus, attempt);
+            }
+
+            Map<String, Object> partialDoc = Map.of("status", newStatus);
+            try {
+                ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> template.execute(client -> client.update(u -> u
+                        .index(indexName)
+                        .id(id)
+                        .ifSeqNo(current.seqNo())
+                        .ifPrimaryTerm(current.primaryTerm())
+                        .doc(partialDoc), SOURCE_TYPE)));
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                logger.debug("Status update of order {} conflicted (attempt {}), retrying", id, attempt);
+                continue;
+            }
+
+            applyToLeaderboard(id, current.source(), previousStatus, newStatus);
+            incrementalOrderAggregations.recordStatusChange(instantValue(current.source().get("ingested_at")),
+                    current.source().get("total_amount") instanceof Number number ? number.doubleValue() : null,
+                    previousStatus, newStatus);
+            orderSearchResultCache.invalidateCustomer((String) current.source().get("customer"));
+            orderSearchResultCache.invalidateStatus(previousStatus);
+            orderSearchResultCache.invalidateStatus(newStatus);
+            hotOrderStore.updateStatus(id, newStatus);
+            return new StatusUpdateResult(id, Outcome.UPDATED, previousStatus, newStatus, attempt);
+        }
+
+        return new StatusUpdateResult(id, Outcome.CONFLICT, null, null, maxRetries);
+    }
+
+    /**
+     * ✅ Moves every order in status "from" (optionally of one customer) to "to" with a single update_by_query.
+     */
+    public StatusTransitionResult transitionStatus(String from, String to, String customer) {
+        if (!isValidTransition(from, to)) {
+            throw new IllegalArgumentException("Invalid status transition " + from + " -> " + to);
+        }
+
+        Query query = Query.of(q -> q.bool(b -> {
+            b.filter(f -> f.term(t -> t.field("status").value(from)));
+            if (customer != null && !customer.isBlank()) {
+                b.filter(f -> f.term(t -> t.field("customer").value(customer)));
+            }
+            return b;
+        }));
+
+        Map<String, JsonData> params = Map.of(
+                "from", JsonData.of(from),
+                "to", JsonData.of(to));
+
+        UpdateByQueryResponse response = ElasticsearchResilience.withOperationType(OperationType.INGEST, () ->
+                ((ElasticsearchTemplate) operations).execute(client -> client.updateByQuery(u -> u
+                        .index(indexName())
+                        .query(query)
+                        .script(s -> s.inline(i -> i.lang("painless").source(TRANSITION_SCRIPT).params(params)))
+                        .conflicts(Conflicts.Proceed)
+                        .refresh(true)
+                        .slices(sl -> sl.computed(SlicesCalculation.Auto)))));
+
+        orderSearchResultCache.invalidateAll();
+        hotOrderStore.transitionStatus(from, to, customer);
+        // The moved orders keep their ingested_at, so no delta would see the change: recompute the aggregates ....
+        incrementalOrderAggregations.invalidate();
+
+        // Revenue only counts PAID orders: a mass transition in or out of PAID changes the leaderboard totals.
+        // The full rescan runs on the scheduler, the response doesn't wait for it ....
+        if ("PAID".equals(from) || "PAID".equals(to)) {
+            customerRevenueLeaderboard.requestReconcile();
+        }
+
+        return new StatusTransitionResult(from, to,
+                valueOrZero(response.total()), valueOrZero(response.updated()), valueOrZero(response.noops()),
+                valueOrZero(response.versionConflicts()), valueOrZero(response.took()));
+    }
+
+    private void applyToLeaderboard(String id, Map<?, ?> source, String previousStatus, String newStatus) {
+        double amount = source.get("total_amount") instanceof Number number ? number.doubleValue() : 0.0;
+        customerRevenueLeaderboard.recordStatusChange(id, (String) source.get("customer"), amount, previousStatus, newStatus);
+    }
+
+    private boolean isConflict(RuntimeException e) {
+        return e instanceof OptimisticLockingFailureException
+                || (e instanceof ElasticsearchException ese && ese.status() == 409)
+                || (e.getCause() instanceof ElasticsearchException cause && cause.status() == 409);
+    }
+
+    private String indexName() {
+        return operations.getIndexCoordinatesFor(OrderDocument.class).getIndexName();
+    }
+
+    // ingested_at is mapped as epoch_millis: a number, or a string when written through the Spring Data converter ....
+    private static Instant instantValue(Object value) {
+        if (value instanceof Number number) {
+            return Instant.ofEpochMilli(number.longValue());
+        }
+        return value instanceof String text && !text.isBlank() ? Instant.ofEpochMilli(Long.parseLong(text)) : null;
+    }
+
+    private static long valueOrZero(Long value) {
+        return value == null ? 0 : value;
+    }
+}
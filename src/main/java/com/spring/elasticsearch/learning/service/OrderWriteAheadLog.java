@@ -0,0 +1,505 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.elasticsearch.learning.models.BulkOrderOperation;
+import com.spring.elasticsearch.learning.models.BulkOutcome;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import com.spring.elasticsearch.learning.models.WriteAheadLogStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * ✅ Durable local write-ahead log in front of the orders index.
+ *
+ * POST /orders/add is acknowledged once the order is on local disk, a background replayer then ships the log to
+ * Elasticsearch with _bulk (OrderBulkIndexer). Ingest latency no longer depends on the cluster, and while
+ * Elasticsearch is slow or down the orders simply pile up in the log.
+ *
+ * Layout under orders.wal.dir:
+ *   00000000000000000001.wal   <- memory-mapped segments of segment-size-mb, oldest first
+ *   replay.offset              <- "<segment> <position>" of the first record not yet acknowledged by ES
+ *   quarantine/<segment>_<position>.record  <- payloads the replayer gave up on (see below)
+ *
+ * Record format: [int length][int crc32][length bytes of order JSON]. A length of 0 (untouched mapped bytes) ends a segment.
+ *
+ * Group commit: appenders write into the mapped segment under a short lock and then wait until a single committer
+ * thread has forced (msync'ed) the segment past their record. Everything appended while a force is running is made
+ * durable by the next force, so N concurrent orders cost one fsync instead of N.
+ *
+ * 🔑 Remember:
+ * - the replayer only reads records that are already durable, and moves replay.offset after the bulk is acknowledged
+ *   (at-least-once). replay.offset is fsynced (file, then directory) on every move. A replay is still possible after
+ *   a crash, and a plain overwrite would undo status changes made since (PATCH /{id}/status goes straight to ES):
+ *   every record carries its position as wal_seq (segment << 32 | position, increasing through the log) and
+ *   OrderBulkIndexer skips it (noop) when the stored document comes from the same or a newer record.
+ * - on startup the tail of the last segment is validated with the CRC; a torn record (crash mid-append, never
+ *   acknowledged) is cut off.
+ * - fully replayed segments are deleted.
+ * - the replayer checks the CRC of every record too. A record with a bad CRC, a payload that doesn't parse as an
+ *   order, or an order Elasticsearch rejects permanently (mapping error, ...) is written to quarantine/ and skipped,
+ *   so one poison record can't stall the log forever. Only 429s and cluster errors keep the offset and retry.
+ * - append() waits ack-timeout-ms for the group commit. On timeout the record is already in the mapped segment:
+ *   it becomes durable with the next force and is replayed like any other, it just wasn't confirmed in time.
+ *   append() reports that as false (POST /orders/add answers 202 Accepted instead of 200) - it is NOT a failure,
+ *   retrying the request would write the order twice (same _id, so harmless, but pointless).
+ */
+@Service
+@ConditionalOnProperty(name = "orders.wal.enabled", havingValue = "true")
+public class OrderWriteAheadLog {
+
+    private static final Logger logger = LogManager.getLogger(OrderWriteAheadLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String QUARANTINE_DIR = "quarantine";
+    private static final int HEADER_BYTES = 8;
+
+    @Autowired
+    private OrderBulkIndexer orderBulkIndexer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${orders.wal.dir:./order-wal}")
+    private String walDir;
+
+    @Value("${orders.wal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    // Extra time the committer waits to gather more appends into one force. 0 = force as soon as something is pending ....
+    @Value("${orders.wal.group-commit-interval-ms:1}")
+    private long groupCommitIntervalMs;
+
+    @Value("${orders.wal.ack-timeout-ms:5000}")
+    private long ackTimeoutMs;
+
+    @Value("${orders.wal.replay-batch-size:500}")
+    private int replayBatchSize;
+
+    @Value("${orders.wal.replay-poll-interval-ms:200}")
+    private long replayPollIntervalMs;
+
+    private Path root;
+    private int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+
+    // Append side. Guarded by lock ....
+    private long activeSegment;
+    private MappedByteBuffer activeBuffer;
+    private int writePosition;
+    private long appendedRecords;
+
+    // Durable side: published by the committer (under lock), read by the replayer ....
+    private long durableRecords;
+    private volatile long durableSegment;
+    private volatile int durablePosition;
+
+    // Replay side: only touched by the replayer thread, published for getStatus() ....
+    private volatile long replaySegment;
+    private volatile int replayPosition;
+    private MappedByteBuffer replayBuffer;
+    private long replayBufferSegment = -1;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread committer;
+    private Thread replayer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        root = Path.of(walDir);
+        segmentSize = segmentSizeMb * 1024 * 1024;
+        Files.createDirectories(root.resolve(QUARANTINE_DIR));
+
+        List<Long> segments = listSegments();
+        activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+        writePosition = recoverWritePosition(activeBuffer);
+        durableSegment = activeSegment;
+        durablePosition = writePosition;
+        loadReplayOffset(segments.isEmpty() ? activeSegment : segments.get(0));
+
+        running = true;
+        committer = new Thread(this::commitLoop, "order-wal-committer");
+        replayer = new Thread(this::replayLoop, "order-wal-replayer");
+        committer.setDaemon(true);
+        replayer.setDaemon(true);
+        committer.start();
+        replayer.start();
+        logger.info("Order WAL started in {} at segment {} position {}, replaying from {}:{}",
+                root.toAbsolutePath(), activeSegment, writePosition, replaySegment, replayPosition);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        committer.interrupt();
+        replayer.interrupt();
+        committer.join(TimeUnit.SECONDS.toMillis(5));
+        replayer.join(TimeUnit.SECONDS.toMillis(5));
+        lock.lock();
+        try {
+            activeBuffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * ✅ Appends the order and waits until it is durable on local disk (group-committed).
+     * @return true once durable, false if the group commit didn't confirm within ack-timeout-ms
+     *         (the record is still in the log and will be replayed, see class comment)
+     */
+    public boolean append(OrderDocument order) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(order);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (payload.length + HEADER_BYTES > segmentSize) {
+            throw new IllegalArgumentException("Order is larger than a WAL segment: " + payload.length + " bytes");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        lock.lock();
+        try {
+            if (writePosition + HEADER_BYTES + payload.length > segmentSize) {
+                rollSegment();
+            }
+            activeBuffer.putInt(writePosition + 4, (int) crc.getValue());
+            activeBuffer.put(writePosition + HEADER_BYTES, payload);
+            // Length last: a record is only visible to recovery / replay once its header is complete ....
+            activeBuffer.putInt(writePosition, payload.length);
+            writePosition += HEADER_BYTES + payload.length;
+
+            long record = ++appendedRecords;
+            appended.signal();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs);
+            while (durableRecords < record) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warn("WAL group commit not confirmed within {} ms for order {}", ackTimeoutMs, order.getOrder_id());
+                    return false;
+                }
+                durable.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the WAL group commit", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public WriteAheadLogStatus getStatus() {
+        lock.lock();
+        try {
+            return new WriteAheadLogStatus(activeSegment, writePosition, durableRecords,
+                    replaySegment, replayPosition, replayed.get(), failed.get(), quarantined.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock. Forces the full segment, then starts the next one ....
+    private void rollSegment() throws IOException {
+        activeBuffer.force();
+        durableRecords = appendedRecords;
+        durableSegment = activeSegment;
+        durablePosition = writePosition;
+        durable.signalAll();
+
+        activeSegment++;
+        activeBuffer = map(activeSegment, FileChannel.MapMode.READ_WRITE);
+        writePosition = 0;
+        durableSegment = activeSegment;
+        durablePosition = 0;
+    }
+
+    private void commitLoop() {
+        while (running) {
+            MappedByteBuffer buffer;
+            long targetRecords;
+            long targetSegment;
+            int targetPosition;
+
+            lock.lock();
+            try {
+                while (appendedRecords == durableRecords) {
+                    appended.await();
+                }
+                if (groupCommitIntervalMs > 0) {
+                    appended.await(groupCommitIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                buffer = activeBuffer;
+                targetRecords = appendedRecords;
+                targetSegment = activeSegment;
+                targetPosition = writePosition;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // The expensive part runs outside the lock, so appenders keep filling the buffer meanwhile ....
+            buffer.force();
+
+            lock.lock();
+            try {
+                if (targetRecords > durableRecords) {
+                    durableRecords = targetRecords;
+                    if (targetSegment == activeSegment) {
+                        durableSegment = targetSegment;
+                        durablePosition = targetPosition;
+                    }
+                }
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void replayLoop() {
+        long backoffMs = replayPollIntervalMs;
+        while (running) {
+            try {
+                List<BulkOrderOperation> batch = new ArrayList<>(replayBatchSize);
+                List<Integer> positions = new ArrayList<>(replayBatchSize);
+                int nextPosition = readDurableBatch(batch, positions);
+
+                if (batch.isEmpty()) {
+                    if (replaySegment < durableSegment) {
+                        // Segment fully replayed and closed: continue with the next one and drop it ....
+                        long done = replaySegment;
+                        commitReplayOffset(done + 1, 0);
+                        Files.deleteIfExists(segmentPath(done));
+                        continue;
+                    }
+                    if (nextPosition > replayPosition) {
+                        // Only quarantined records in this range: skip past them ....
+                        commitReplayOffset(replaySegment, nextPosition);
+                        continue;
+                    }
+                    Thread.sleep(replayPollIntervalMs);
+                    continue;
+                }
+
+                BulkOutcome outcome = orderBulkIndexer.bulk(batch);
+                if (!outcome.retryable().isEmpty()) {
+                    // Cluster is pushing back (429): retry the whole batch later, replays are idempotent ....
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, 30_000);
+                    continue;
+                }
+                replayed.addAndGet(outcome.succeeded());
+                failed.addAndGet(outcome.failed());
+                for (BulkOrderOperation rejected : outcome.failedOperations()) {
+                    // Permanently rejected by ES: sending it again would fail again, park it for inspection ....
+                    int index = indexOf(batch, rejected);
+                    if (index >= 0) {
+                        quarantine(replaySegment, positions.get(index), readPayload(positions.get(index)), "rejected by Elasticsearch");
+                    }
+                }
+                commitReplayOffset(replaySegment, nextPosition);
+                backoffMs = replayPollIntervalMs;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                // Elasticsearch down / slow: keep the offset and try again, the log keeps absorbing writes ....
+                logger.warn("WAL replay from {}:{} failed: {}", replaySegment, replayPosition, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+    }
+
+    // Reads up to replayBatchSize durable records from the replay position, returns the position after the last one.
+    // Records that fail the CRC or don't parse are quarantined and skipped ....
+    private int readDurableBatch(List<BulkOrderOperation> batch, List<Integer> positions) throws IOException {
+        long segment = replaySegment;
+        if (replayBufferSegment != segment) {
+            replayBuffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            replayBufferSegment = segment;
+        }
+
+        // Read the segment first, then the position: a newer segment means this one is closed and fully durable ....
+        long currentDurableSegment = durableSegment;
+        int limit = segment < currentDurableSegment ? segmentSize : durablePosition;
+
+        int position = replayPosition;
+        while (batch.size() < replayBatchSize && position + HEADER_BYTES <= limit) {
+            int length = replayBuffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > limit) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            replayBuffer.get(position + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != replayBuffer.getInt(position + 4)) {
+                quarantine(segment, position, payload, "CRC mismatch");
+            } else {
+                try {
+                    OrderDocument order = objectMapper.readValue(payload, OrderDocument.class);
+                    order.setWalSeq((segment << 32) | position);
+                    batch.add(BulkOrderOperation.index(order));
+                    positions.add(position);
+                } catch (IOException e) {
+                    quarantine(segment, position, payload, "unreadable order: " + e.getMessage());
+                }
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    // Payload of a record of the current replay segment ....
+    private byte[] readPayload(int position) {
+        byte[] payload = new byte[replayBuffer.getInt(position)];
+        replayBuffer.get(position + HEADER_BYTES, payload);
+        return payload;
+    }
+
+    // Named after the record's position, so quarantining it again after a crash just overwrites the same file ....
+    private void quarantine(long segment, int position, byte[] payload, String reason) throws IOException {
+        Path file = root.resolve(QUARANTINE_DIR).resolve(String.format("%020d_%d.record", segment, position));
+        Files.write(file, payload);
+        quarantined.incrementAndGet();
+        logger.error("Quarantined WAL record {}:{} ({}) to {}", segment, position, reason, file);
+    }
+
+    private static int indexOf(List<BulkOrderOperation> batch, BulkOrderOperation operation) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) == operation) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Walks the records of the last segment and stops at the first torn / corrupt one ....
+    private int recoverWritePosition(MappedByteBuffer buffer) {
+        int position = 0;
+        while (position + HEADER_BYTES <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Truncating torn WAL record at segment {} position {}", activeSegment, position);
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        if (position + HEADER_BYTES <= segmentSize) {
+            buffer.putInt(position, 0);
+            buffer.force();
+        }
+        return position;
+    }
+
+    private void loadReplayOffset(long oldestSegment) throws IOException {
+        Path offsetFile = root.resolve("replay.offset");
+        if (Files.exists(offsetFile)) {
+            String[] parts = Files.readString(offsetFile).trim().split(" ");
+            replaySegment = Math.max(Long.parseLong(parts[0]), oldestSegment);
+            replayPosition = replaySegment == Long.parseLong(parts[0]) ? Integer.parseInt(parts[1]) : 0;
+        } else {
+            replaySegment = oldestSegment;
+            replayPosition = 0;
+        }
+    }
+
+    private void commitReplayOffset(long segment, int position) throws IOException {
+        Path offsetFile = root.resolve("replay.offset");
+        Path tmp = root.resolve("replay.offset.tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((segment + " " + position).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(root);
+        replaySegment = segment;
+        replayPosition = position;
+    }
+
+    // Makes the rename itself durable. Not every platform can open a directory (Windows), there it's best effort ....
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not fsync {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_WRITE
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            // The mapping stays valid after the channel is closed ....
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return root.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
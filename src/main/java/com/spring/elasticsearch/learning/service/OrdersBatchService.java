@@ -0,0 +1,143 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.spring.elasticsearch.learning.models.CustomerBatchResponse;
+import com.spring.elasticsearch.learning.models.CustomerBatchResult;
+import com.spring.elasticsearch.learning.models.DailySalesStats;
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Multi-customer fan-out for the account-manager view.
+ *
+ * Instead of the caller doing 2 x N sequential HTTP calls (fetch-by-customer + daily sales per customer),
+ * one batch request runs the per-customer term queries and date_histograms in parallel on a bounded pool:
+ *
+ *   customers ──► [ term query  ] ─┐
+ *             └─► [ date_histogram] ─┴─► CustomerBatchResult
+ *
+ * 🔑 Remember:
+ * - concurrency towards Elasticsearch is bounded by the batchQueryExecutor pool size.
+ * - every per-customer request has its own timeout, counted from the moment a pool thread starts it (time spent
+ *   queued behind other customers doesn't count); a timed-out request is interrupted, not left running.
+ * - a slow or failing customer ends up in "failures", the other customers are still returned (partial results
+ *   instead of all-or-nothing).
+ * - the batch as a whole stops at the request's latency budget: what hasn't finished by then is cancelled and
+ *   reported as a failure.
+ */
+@Service
+public class OrdersBatchService {
+
+    private static final Logger logger = LogManager.getLogger(OrdersBatchService.class);
+
+    @Autowired
+    private OrdersPaginationService ordersPaginationService;
+
+    @Autowired
+    private OrderPaginationAggregations orderPaginationAggregations;
+
+    @Autowired
+    @Qualifier("batchQueryExecutor")
+    private ThreadPoolTaskExecutor batchQueryExecutor;
+
+    @Value("${orders.batch.request-timeout-ms:2000}")
+    private long requestTimeoutMs;
+
+    @Value("${orders.batch.max-customers:200}")
+    private int maxCustomers;
+
+    public CustomerBatchResponse getOrdersAndDailySalesForCustomers(List<String> customers) {
+        long start = System.nanoTime();
+
+        // De-duplicate but keep the caller's order ....
+        Set<String> distinctCustomers = new LinkedHashSet<>(customers);
+        if (distinctCustomers.size() > maxCustomers) {
+            throw new IllegalArgumentException("At most " + maxCustomers + " customers per batch, got " + distinctCustomers.size());
+        }
+
+        // ✅ Step 1: Submit everything first, so the requests run concurrently ....
+        List<Future<?>> tasks = new ArrayList<>();
+        Map<String, CompletableFuture<CustomerBatchResult>> futures = new LinkedHashMap<>();
+        for (String customer : distinctCustomers) {
+            CompletableFuture<List<OrderDocument>> orders =
+                    submit(() -> ordersPaginationService.getOrdersByCustomerUsingTermQuery(customer), tasks);
+            CompletableFuture<Map<String, DailySalesStats>> dailySales =
+                    submit(() -> orderPaginationAggregations.getDailySalesForCustomer(customer), tasks);
+
+            futures.put(customer, orders.thenCombine(dailySales, CustomerBatchResult::new));
+        }
+
+        // ✅ Step 2: Collect results and failures per customer, within the request's latency budget ....
+        RequestDeadline deadline = RequestDeadline.current();
+        Map<String, CustomerBatchResult> results = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        try {
+            futures.forEach((customer, future) -> {
+                try {
+                    results.put(customer, deadline == null
+                            ? future.join()
+                            : future.get(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS));
+                } catch (CompletionException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    String reason = cause instanceof TimeoutException
+                            ? "timed out after " + requestTimeoutMs + " ms"
+                            : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                    logger.warn("Batch request for customer {} failed: {}", customer, reason);
+                    failures.put(customer, reason);
+                } catch (TimeoutException e) {
+                    failures.put(customer, "latency budget of " + deadline.getBudgetMillis() + " ms exhausted");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(customer, "interrupted");
+                }
+            });
+        } finally {
+            // Nothing of this batch keeps running (or waits in the queue) once the response is built ....
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        return new CustomerBatchResponse(results, failures, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> request, List<Future<?>> tasks) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = batchQueryExecutor.submit(() -> {
+                // The timeout starts when a pool thread picks the request up, not when it was queued ....
+                result.orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS);
+                try {
+                    result.complete(request.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Pool and queue are full - fail this request only, not the whole batch ....
+            return CompletableFuture.failedFuture(e);
+        }
+        tasks.add(task);
+        // A timed-out request is interrupted, so it gives its pool thread back instead of running on ....
+        result.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+}
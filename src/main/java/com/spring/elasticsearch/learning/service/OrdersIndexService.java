@@ -0,0 +1,134 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.spring.elasticsearch.learning.models.OrderDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Owns the creation of the orders index so that it can be created with an index sort.
+ *
+ * PUT orders_pagination
+ * {
+ *   "settings": {
+ *     "index": {
+ *       "sort.field": "total_amount",
+ *       "sort.order": "desc"
+ *     }
+ *   },
+ *   "mappings": { ... generated from OrderDocument ... }
+ * }
+ *
+ * ✅ Why: an index sort can only be defined when the index is created. With segments already sorted on
+ * total_amount desc (the sort of /top and the sort + pagination query), a search sorted the same way can stop collecting once it has "size" hits
+ * per segment - but only if we don't ask ES to count every match (track_total_hits=false).
+ * 🔑 Remember: OrderDocument uses createIndex = false, so the repository no longer creates an unsorted index
+ * on startup - this service does it instead, as the first ApplicationRunner: after the context refreshed (no ES
+ * call while beans are created) but before StartupWarmup and before the app reports ready.
+ */
+@Service
+@Order(0)
+public class OrdersIndexService implements ApplicationRunner {
+
+    private static final Logger logger = LogManager.getLogger(OrdersIndexService.class);
+
+    @Autowired
+    private ElasticsearchOperations operations;
+
+    // ES field name (not the Java property name) e.g. order_date or total_amount. Empty = no index sort ....
+    @Value("${orders.index.sort.field:total_amount}")
+    private String sortField;
+
+    @Value("${orders.index.sort.order:desc}")
+    private String sortOrder;
+
+    // Sort the index actually has (read from its settings), null until it could be read ....
+    private volatile IndexSort liveSort;
+
+    private record IndexSort(String field, String order) {
+        static final IndexSort NONE = new IndexSort(null, null);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        createOrdersIndexIfMissing();
+        loadLiveSort();
+    }
+
+    public void createOrdersIndexIfMissing() {
+        IndexOperations indexOps = operations.indexOps(OrderDocument.class);
+        if (indexOps.exists()) {
+            return;
+        }
+
+        Settings settings = indexOps.createSettings();
+        if (hasIndexSort()) {
+            settings.put("index.sort.field", sortField);
+            settings.put("index.sort.order", sortOrder);
+        }
+        Document mapping = indexOps.createMapping();
+
+        indexOps.create(settings, mapping);
+        logger.info("Created index {} with index sort [{} {}]",
+                indexOps.getIndexCoordinates().getIndexName(), sortField, sortOrder);
+    }
+
+    /**
+     * ✅ True if a search sorted by the given ES field/direction follows the sort of the live index,
+     * i.e. it can use track_total_hits=false and terminate early.
+     * The sort is read from the index settings, not from orders.index.sort: an index created before the sort was
+     * configured (or by someone else) keeps whatever it was created with. Multi-field index sorts never match.
+     */
+    public boolean matchesIndexSort(String esField, Sort.Direction direction) {
+        IndexSort sort = liveSort != null ? liveSort : loadLiveSort();
+        return sort.field() != null
+                && sort.field().equals(esField)
+                && sort.order().equalsIgnoreCase(direction.name());
+    }
+
+    /**
+     * GET orders_pagination/_settings?include_defaults=true   -> index.sort.field / index.sort.order
+     */
+    private IndexSort loadLiveSort() {
+        try {
+            IndexOperations indexOps = operations.indexOps(OrderDocument.class);
+            if (!indexOps.exists()) {
+                return IndexSort.NONE; // not created yet, ask again next time ....
+            }
+            Settings settings = indexOps.getSettings(true).flatten();
+            String field = singleValue(settings.get("index.sort.field"));
+            String order = singleValue(settings.get("index.sort.order"));
+            IndexSort sort = field == null ? IndexSort.NONE : new IndexSort(field, order == null ? "asc" : order);
+            liveSort = sort;
+            logger.info("Index {} is sorted on [{} {}]", indexOps.getIndexCoordinates().getIndexName(), sort.field(), sort.order());
+            return sort;
+        } catch (RuntimeException e) {
+            logger.warn("Could not read the index sort, assuming none: {}", e.getMessage());
+            return IndexSort.NONE;
+        }
+    }
+
+    // A single sort field is a plain string (or a one element list), several fields never match a one-field search sort ....
+    private static String singleValue(Object value) {
+        if (value instanceof List<?> list) {
+            return list.size() == 1 ? String.valueOf(list.get(0)) : null;
+        }
+        return value == null || value.toString().isBlank() ? null : value.toString();
+    }
+
+    private boolean hasIndexSort() {
+        return sortField != null && !sortField.isBlank();
+    }
+}
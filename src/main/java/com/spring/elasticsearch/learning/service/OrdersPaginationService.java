@@ -1,6 +1,7 @@
 package com.spring.elasticsearch.learning.service;
 
 import co.elastic.clients.json.JsonData;
+import com.spring.elasticsearch.learning.models.AddOrderResult;
 import com.spring.elasticsearch.learning.models.OrderDocument;
 import com.spring.elasticsearch.learning.repository.OrdersPaginationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +20,9 @@ import co.elastic.clients.elasticsearch._types.aggregations.SumAggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 public class OrdersPaginationService {
@@ -30,18 +33,87 @@ public class OrdersPaginationService {
     @Autowired
     private OrdersPaginationRepository repository;
 
+    @Autowired
+    private OrdersIndexService ordersIndexService;
+
+    @Autowired
+    private CustomerRevenueLeaderboard customerRevenueLeaderboard;
+
+    @Autowired
+    private OrderSearchResultCache orderSearchResultCache;
+
+    @Autowired
+    private HotOrderStore hotOrderStore;
+
+    @Autowired
+    private IncrementalOrderAggregations incrementalOrderAggregations;
+
+    // Only present when orders.wal.enabled=true ....
+    @Autowired(required = false)
+    private OrderWriteAheadLog orderWriteAheadLog;
+
     /**
      * This method saves the OrderDocument to the Elasticsearch index.
-     * It uses the repository's save method which handles both insert and update operations.
-     * If the document already exists (based on its ID), it will update the existing document.
-     * If it does not exist, it will insert a new document.
+     * The document _id is always the order_id (generated if missing), so an order has one identity whether it goes
+     * through the write-ahead log or straight to the index, and saving it again overwrites instead of duplicating.
+     * A request carrying an id that differs from its order_id is rejected (IllegalArgumentException).
+     * The saved order is also applied to the in-memory revenue leaderboard.
+     *
+     * When the write-ahead log is enabled (orders.wal.enabled) the order is only appended to the local log and
+     * acknowledged once durable; OrderWriteAheadLog replays it into the index with _bulk (_id = order_id).
+     * If the group commit doesn't confirm in time the result is unconfirmed (202), the order is still replayed.
+     *
+     * Every write stamps a new ingested_at (plain index). On an overwrite the previous version is taken out of
+     * IncrementalOrderAggregations right away, so its next delta doesn't count the order twice.
      * @param order
      * @return
      */
-    public OrderDocument addOrder(OrderDocument order) {
-        return repository.save(order); // inserts into Elasticsearch index
+    public AddOrderResult addOrder(OrderDocument order) {
+        assignIdentity(order);
+        orderSearchResultCache.invalidateOrder(order);
+        if (orderWriteAheadLog != null) {
+            order.setIngestedAt(Instant.now()); // re-stamped when the replay sends it ....
+            // Not in the HotOrderStore yet: OrderBulkIndexer mirrors it once the replay is acknowledged by ES ....
+            return new AddOrderResult(order, orderWriteAheadLog.append(order));
+        }
+        // Possibly an overwrite: the lookups cached for the previous customer / status of this order are stale as well ....
+        OrderDocument previous = operations.get(order.getId(), OrderDocument.class);
+        if (previous != null) {
+            orderSearchResultCache.invalidateOrder(previous);
+        }
+        OrderDocument saved = index(order);
+        incrementalOrderAggregations.recordOverwrite(previous);
+        customerRevenueLeaderboard.recordOrder(saved);
+        hotOrderStore.put(saved);
+        return new AddOrderResult(saved, true);
     }
 
+    // _id = order_id on every write path ....
+    private static void assignIdentity(OrderDocument order) {
+        if (order.getOrder_id() == null) {
+            order.setOrder_id(order.getId() != null ? order.getId() : UUID.randomUUID().toString());
+        } else if (order.getId() != null && !order.getId().equals(order.getOrder_id())) {
+            throw new IllegalArgumentException("id " + order.getId() + " doesn't match order_id " + order.getOrder_id());
+        }
+        order.setId(order.getOrder_id());
+    }
+
+
+    /**
+     * PUT orders_pagination/_doc/<order_id>
+     * { "order_id": "...", ..., "ingested_at": <now> }
+     */
+    private OrderDocument index(OrderDocument order) {
+        // Stamped right before the write and held back from the incremental watermark until it is searchable ....
+        Instant now = Instant.now();
+        order.setIngestedAt(now);
+        IncrementalOrderAggregations.InFlightWrite inFlight = incrementalOrderAggregations.beginWrite(now);
+        try {
+            return ElasticsearchResilience.withOperationType(OperationType.INGEST, () -> repository.save(order));
+        } finally {
+            incrementalOrderAggregations.endWrite(inFlight);
+        }
+    }
 
     /**
      * 1️⃣ Term Query (Exact Match)
@@ -58,19 +130,23 @@ public class OrdersPaginationService {
      * 🔑 Remember: .value(v -> v.stringValue(...)) is used for term queries.
      */
     public List<OrderDocument> getOrdersByCustomerUsingTermQuery(String customerName) {
-
-        // ✅ Build a native term query ....
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(q -> q.term(t -> t.field("customer").value(v -> v.stringValue(customerName))))
-                .build();
-
-        // ✅ Execute search ....
-        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
-
-        // ✅ Convert SearchHits -> List<OrderDocument> ....
-        return searchHits.stream()
-                .map(hit -> hit.getContent())
-                .toList();
+        // ✅ Query and cache key use the same trimmed value, so " Rahul" can't be served the result of "Rahul" ....
+        String customer = customerName.trim();
+        // ✅ Served from the two-tier result cache, ES is only queried on a miss ....
+        return orderSearchResultCache.get(OrderSearchResultCache.customerKey(customer), () -> {
+            // ✅ Build a native term query ....
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(q -> q.term(t -> t.field("customer").value(v -> v.stringValue(customer))))
+                    .build();
+
+            // ✅ Execute search ....
+            SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+
+            // ✅ Convert SearchHits -> List<OrderDocument> ....
+            return searchHits.stream()
+                    .map(hit -> hit.getContent())
+                    .toList();
+        });
     }
 
 
@@ -88,20 +164,24 @@ public class OrdersPaginationService {
      * ✅ Use Case: Full-text search (fields analyzed by ES analyzer).
      * 🔑 Remember: .query(...) sets the text to match.
      */
-    public List<OrderDocument> getOrdersByStatusUsingMatchQuery(String status) {
-
-        // ✅ Build a native term query ....
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(q -> q.match(m -> m.field("status").query(status)))
-                .build();
-
-        // ✅ Execute search ....
-        SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
-
-        // ✅ Convert SearchHits -> List<OrderDocument> ....
-        return searchHits.stream()
-                .map(hit -> hit.getContent())
-                .toList();
+    public List<OrderDocument> getOrdersByStatusUsingMatchQuery(String statusValue) {
+        // ✅ Query and cache key use the same trimmed value ....
+        String status = statusValue.trim();
+        // ✅ Served from the two-tier result cache, ES is only queried on a miss ....
+        return orderSearchResultCache.get(OrderSearchResultCache.statusKey(status), () -> {
+            // ✅ Build a native term query ....
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(q -> q.match(m -> m.field("status").query(status)))
+                    .build();
+
+            // ✅ Execute search ....
+            SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
+
+            // ✅ Convert SearchHits -> List<OrderDocument> ....
+            return searchHits.stream()
+                    .map(hit -> hit.getContent())
+                    .toList();
+        });
     }
 
     /**
@@ -184,12 +264,14 @@ public class OrdersPaginationService {
      *
      * ✅ Use Case: Get top-N results sorted by a field.
      * 🔑 Remember: Use PageRequest.of(page, size) for pagination.
+     * 🔑 If the index is sorted on total_amount desc we also send "track_total_hits": false so ES can stop early.
      */
     public List<OrderDocument> getOrdersBySortAndPaginationQueries() {
         NativeQuery query = NativeQuery.builder()
                 .withQuery(q -> q.matchAll(m -> m))
                 .withSort(Sort.by(Sort.Order.desc("total_amount")))
                 .withPageable(PageRequest.of(0, 5)) // page 0, size 5
+                .withTrackTotalHits(trackTotalHitsFor("total_amount", Sort.Direction.DESC))
                 .build();
 
         SearchHits<OrderDocument> searchHits = operations.search(query, OrderDocument.class);
@@ -210,11 +292,22 @@ public class OrdersPaginationService {
                 .withQuery(q -> q.matchAll(m -> m))
                 .withSort(Sort.by(Sort.Order.desc("totalAmount")))
                 .withPageable(PageRequest.of(0, size))
+                .withTrackTotalHits(trackTotalHitsFor("total_amount", Sort.Direction.DESC))
                 .build();
 
         return operations.search(query, OrderDocument.class);
     }
 
+    /**
+     * ✅ Early termination with index sorting.
+     * When the search sort equals the index sort, ES only needs the first "size" docs of every segment -
+     * unless it is asked for an exact hit count. So for matching sorts we return false (= "track_total_hits": false),
+     * otherwise null to keep the ES default (exact up to 10,000).
+     */
+    private Boolean trackTotalHitsFor(String esField, Sort.Direction direction) {
+        return ordersIndexService.matchesIndexSort(esField, direction) ? Boolean.FALSE : null;
+    }
+
     /**
      * ✅ Aggregation: Total revenue per customer
      */
@@ -0,0 +1,128 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.AggregationBreakdown;
+import co.elastic.clients.elasticsearch.core.search.AggregationProfile;
+import co.elastic.clients.elasticsearch.core.search.Collector;
+import co.elastic.clients.elasticsearch.core.search.QueryProfile;
+import co.elastic.clients.elasticsearch.core.search.SearchProfile;
+import co.elastic.clients.elasticsearch.core.search.ShardProfile;
+import com.spring.elasticsearch.learning.models.AggregationTiming;
+import com.spring.elasticsearch.learning.models.QueryTiming;
+import com.spring.elasticsearch.learning.models.SearchProfileSummary;
+import com.spring.elasticsearch.learning.models.ShardProfileSummary;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ✅ Profiles collected for the current HTTP request, created by ProfilingInterceptor when it carries ?profile=true.
+ *
+ * Like RequestDeadline it lives in the request attributes and travels to the bulkhead threads in the task's
+ * CapturedRequestContext, so ProfilingTransport finds it there, sends every search of the request with
+ * "profile": true and condenses what ES answers:
+ *
+ * GET orders_pagination/_search
+ * { "profile": true, "size": 0, "query": { ... }, "aggs": { ... } }
+ *
+ * "profile": { "shards": [ { "id": "[node][orders_pagination][0]",
+ *     "searches": [ { "query": [ ... ], "rewrite_time": 51443, "collector": [ ... ] } ],
+ *     "aggregations": [ { "type": "GlobalOrdinalsStringTermsAggregator", "description": "by_customer",
+ *                         "time_in_nanos": 3456789, "breakdown": { "initialize": ..., "collect": ..., "build_aggregation": ..., "reduce": ... },
+ *                         "children": [ ... ] } ] } ] }
+ *
+ * 🔑 Remember:
+ * - only searches that actually reach ES are profiled - answers from OrderSearchResultCache, the leaderboard or the
+ *   incremental aggregates come back with an empty profile list.
+ * - profiled searches skip the shard request cache and are slower, that's why this is opt-in per request.
+ */
+public final class QueryProfiling {
+
+    public static final String ATTRIBUTE = QueryProfiling.class.getName();
+
+    private static final int MAX_DESCRIPTION_CHARS = 200;
+
+    private final List<SearchProfileSummary> profiles = new ArrayList<>();
+
+    /**
+     * @return the profiling of the request being handled on this thread, or null (no request / not requested).
+     */
+    public static QueryProfiling current() {
+        CapturedRequestContext context = CapturedRequestContext.capture();
+        return context == null ? null : context.getProfiling();
+    }
+
+    public synchronized void record(String client, SearchRequest request, SearchResponse<?> response) {
+        if (response.profile() == null) {
+            return;
+        }
+        List<ShardProfileSummary> shards = new ArrayList<>();
+        for (ShardProfile shard : response.profile().shards()) {
+            shards.add(summarize(shard));
+        }
+        shards.sort(Comparator.comparingDouble(ShardProfileSummary::totalMillis).reversed());
+        profiles.add(new SearchProfileSummary(client, String.join(",", request.index()), response.took(),
+                response.timedOut(), shards));
+    }
+
+    public synchronized List<SearchProfileSummary> getProfiles() {
+        return List.copyOf(profiles);
+    }
+
+    private static ShardProfileSummary summarize(ShardProfile shard) {
+        long rewriteNanos = 0;
+        long queryNanos = 0;
+        long collectorNanos = 0;
+        String collector = null;
+        List<QueryTiming> queries = new ArrayList<>();
+        for (SearchProfile search : shard.searches()) {
+            rewriteNanos += search.rewriteTime();
+            for (QueryProfile query : search.query()) {
+                queryNanos += query.timeInNanos();
+                queries.add(new QueryTiming(query.type(), truncate(query.description()), millis(query.timeInNanos())));
+            }
+            for (Collector topCollector : search.collector()) {
+                collectorNanos += topCollector.timeInNanos();
+                collector = collector == null ? topCollector.name() : collector + "," + topCollector.name();
+            }
+        }
+
+        List<AggregationTiming> aggregations = new ArrayList<>();
+        long aggregationCollectNanos = 0;
+        long aggregationBuildNanos = 0;
+        for (AggregationProfile aggregation : shard.aggregations()) {
+            aggregationCollectNanos += aggregation.breakdown().collect();
+            aggregationBuildNanos += aggregation.breakdown().buildAggregation();
+            addAggregation(aggregations, null, aggregation);
+        }
+
+        // Collector time already contains query scoring + aggregation collect, only the bucket build comes after it ....
+        long searchNanos = collectorNanos > 0 ? collectorNanos : queryNanos + aggregationCollectNanos;
+        long totalNanos = rewriteNanos + searchNanos + aggregationBuildNanos;
+        return new ShardProfileSummary(shard.id(), millis(totalNanos), millis(rewriteNanos), millis(queryNanos),
+                collector, millis(collectorNanos), queries, aggregations);
+    }
+
+    private static void addAggregation(List<AggregationTiming> aggregations, String parent, AggregationProfile aggregation) {
+        String name = parent == null ? aggregation.description() : parent + " > " + aggregation.description();
+        AggregationBreakdown breakdown = aggregation.breakdown();
+        aggregations.add(new AggregationTiming(name, aggregation.type(), millis(aggregation.timeInNanos()),
+                millis(breakdown.initialize()), millis(breakdown.collect()),
+                millis(breakdown.buildAggregation()), millis(breakdown.reduce())));
+        for (AggregationProfile child : aggregation.children()) {
+            addAggregation(aggregations, name, child);
+        }
+    }
+
+    private static String truncate(String description) {
+        return description == null || description.length() <= MAX_DESCRIPTION_CHARS
+                ? description
+                : description.substring(0, MAX_DESCRIPTION_CHARS) + "...";
+    }
+
+    // Nanoseconds -> milliseconds, rounded to µs ....
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
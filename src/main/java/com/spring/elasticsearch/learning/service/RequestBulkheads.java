@@ -0,0 +1,91 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.spring.elasticsearch.learning.models.BulkheadStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Runs controller work on the bulkhead of its traffic class (see ExecutorConfig):
+ * - SEARCH: cheap interactive lookups (fetch-by-customer, match-by-status, ...)
+ * - AGGREGATION: dashboard aggregations
+ * - INGEST: writes
+ *
+ * Controllers return the CompletableFuture, so the Tomcat thread is released while the work waits for a
+ * slot in its own pool. A full pool + queue fails fast with ElasticsearchOverloadedException (503).
+ */
+@Service
+public class RequestBulkheads {
+
+    @Autowired
+    @Qualifier("searchRequestExecutor")
+    private ThreadPoolTaskExecutor searchExecutor;
+
+    @Autowired
+    @Qualifier("analyticsRequestExecutor")
+    private ThreadPoolTaskExecutor analyticsExecutor;
+
+    @Autowired
+    @Qualifier("ingestRequestExecutor")
+    private ThreadPoolTaskExecutor ingestExecutor;
+
+    private final Map<OperationType, ThreadPoolTaskExecutor> executors = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, AtomicLong> submitted = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, AtomicLong> rejected = new EnumMap<>(OperationType.class);
+
+    @PostConstruct
+    public void init() {
+        executors.put(OperationType.SEARCH, searchExecutor);
+        executors.put(OperationType.AGGREGATION, analyticsExecutor);
+        executors.put(OperationType.INGEST, ingestExecutor);
+        for (OperationType type : OperationType.values()) {
+            submitted.put(type, new AtomicLong());
+            rejected.put(type, new AtomicLong());
+        }
+    }
+
+    public <T> CompletableFuture<T> search(Supplier<T> work) {
+        return submit(OperationType.SEARCH, work);
+    }
+
+    public <T> CompletableFuture<T> analytics(Supplier<T> work) {
+        return submit(OperationType.AGGREGATION, work);
+    }
+
+    public <T> CompletableFuture<T> ingest(Supplier<T> work) {
+        return submit(OperationType.INGEST, work);
+    }
+
+    public <T> CompletableFuture<T> submit(OperationType type, Supplier<T> work) {
+        submitted.get(type).incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> ElasticsearchResilience.withOperationType(type, work), executors.get(type));
+        } catch (TaskRejectedException e) {
+            rejected.get(type).incrementAndGet();
+            return CompletableFuture.failedFuture(new ElasticsearchOverloadedException(type, type + " bulkhead is full"));
+        }
+    }
+
+    public List<BulkheadStats> getStats() {
+        List<BulkheadStats> stats = new ArrayList<>();
+        executors.forEach((type, executor) -> {
+            ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+            stats.add(new BulkheadStats(type.name(), pool.getActiveCount(), pool.getMaximumPoolSize(),
+                    pool.getQueue().size(), executor.getQueueCapacity(),
+                    submitted.get(type).get(), pool.getCompletedTaskCount(), rejected.get(type).get()));
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,62 @@
+package com.spring.elasticsearch.learning.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ✅ Latency budget of the current HTTP request, created by DeadlineInterceptor from the endpoint's @LatencyBudget.
+ *
+ * It lives in the request attributes and is copied into the CapturedRequestContext of every bulkhead task
+ * (RequestContextTaskDecorator), so ResilientElasticsearchTemplate can turn the remaining time into:
+ * - the search "timeout" (ES stops collecting and returns partial results with "timed_out": true)
+ * - the client socket timeout (we never wait on ES longer than the budget)
+ * - the X-Opaque-Id header, so the ES tasks of this request can be found and cancelled
+ */
+public final class RequestDeadline {
+
+    public static final String ATTRIBUTE = RequestDeadline.class.getName();
+
+    private final long budgetMillis;
+    private final long expiresAtNanos;
+    private final String opaqueId;
+    private final AtomicBoolean timedOut = new AtomicBoolean();
+
+    public RequestDeadline(long budgetMillis, String opaqueId) {
+        this.budgetMillis = budgetMillis;
+        this.expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.opaqueId = opaqueId;
+    }
+
+    /**
+     * @return the deadline of the request being handled on this thread, or null (no request / no budget).
+     */
+    public static RequestDeadline current() {
+        CapturedRequestContext context = CapturedRequestContext.capture();
+        return context == null ? null : context.getDeadline();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    // Set when ES answered with "timed_out": true, i.e. the response holds partial results ....
+    public void markTimedOut() {
+        timedOut.set(true);
+    }
+
+    public boolean isTimedOut() {
+        return timedOut.get();
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public String getOpaqueId() {
+        return opaqueId;
+    }
+}
@@ -0,0 +1,21 @@
+package com.spring.elasticsearch.learning.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * ✅ The request's latency budget ran out before Elasticsearch answered (or before the call could start).
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class RequestDeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestDeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public RequestDeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,117 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch.tasks.GroupBy;
+import co.elastic.clients.elasticsearch.tasks.ListResponse;
+import co.elastic.clients.elasticsearch.tasks.TaskInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ✅ Cancels the Elasticsearch search tasks of a request that nobody is waiting for anymore (client disconnected).
+ *
+ * GET _tasks?actions=*search*&detailed=true&group_by=none
+ * POST _tasks/<node>:<id>/_cancel      <- for every task whose X-Opaque-Id header is one of the pending request ids
+ *
+ * 🔑 Remember:
+ * - when the budget runs out our own socket timeout closes the HTTP connection, and ES already cancels a search
+ *   whose connection is closed. This is for the other case: the *caller* went away while ES is still working.
+ * - cancel() only queues the request id. A single drain at a time runs on searchCancelExecutor (one thread, no
+ *   request context, so it is not bound by the expired deadline itself) and answers every id queued so far with one
+ *   _tasks listing: a burst of disconnects costs one cluster-wide query, not one per request.
+ * - at most orders.search-cancel.max-pending ids wait; beyond that cancelling is skipped (ES finishes the search).
+ */
+@Service
+public class SearchTaskCanceller {
+
+    private static final Logger logger = LogManager.getLogger(SearchTaskCanceller.class);
+
+    @Autowired
+    private ElasticsearchOperations operations;
+
+    @Autowired
+    @Qualifier("searchCancelExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    @Value("${orders.search-cancel.max-pending:1000}")
+    private int maxPending;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public void cancel(String opaqueId) {
+        if (pending.size() >= maxPending) {
+            logger.debug("Too many pending cancellations, not cancelling request {}", opaqueId);
+            return;
+        }
+        pending.add(opaqueId);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (TaskRejectedException e) {
+            draining.set(false);
+            logger.warn("Could not schedule search task cancellation: {}", e.getMessage());
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!pending.isEmpty()) {
+                Set<String> opaqueIds = new HashSet<>(pending);
+                pending.removeAll(opaqueIds);
+                cancelTasks(opaqueIds);
+            }
+        } finally {
+            draining.set(false);
+        }
+        // An id queued between the last isEmpty() and the reset found draining still set ....
+        if (!pending.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void cancelTasks(Set<String> opaqueIds) {
+        try {
+            ElasticsearchTemplate template = (ElasticsearchTemplate) operations;
+            ListResponse tasks = template.execute(client -> client.tasks().list(l -> l
+                    .actions("*search*")
+                    .detailed(true)
+                    .groupBy(GroupBy.None)));
+
+            List<TaskInfo> matching = tasks.tasks() == null || !tasks.tasks().isFlat() ? List.of()
+                    : tasks.tasks().flat().stream()
+                    .filter(task -> task.cancellable() && opaqueIds.contains(task.headers().get("X-Opaque-Id")))
+                    .toList();
+
+            for (TaskInfo task : matching) {
+                String taskId = task.node() + ":" + task.id();
+                template.execute(client -> client.tasks().cancel(c -> c.taskId(taskId)));
+            }
+            if (!matching.isEmpty()) {
+                logger.info("Cancelled {} search task(s) of abandoned requests {}", matching.size(), opaqueIds);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not cancel search tasks of requests {}: {}", opaqueIds, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.ShardStatistics;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpGenerator;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.spring.elasticsearch.learning.models.SlowQueryStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ In-app slow-query log: which of our queries is slow, and with which parameters.
+ *
+ * Every request sent by the three Elasticsearch clients passes through record() (QueryObservingTransport):
+ *
+ * - fingerprint: endpoint + index + request body with every literal replaced by "?" (and literal arrays collapsed),
+ *   so getOrdersByCustomer("Alice") and ("Bob") share one fingerprint:
+ *     search orders_pagination {"query":{"term":{"customer":{"value":"?"}}}}
+ *   The body is serialized straight into a NormalizingJsonGenerator: one pass, the DSL with its literals is only
+ *   rendered for a request that is logged as slow.
+ * - NDJSON bodies (_bulk, _msearch) are the documents themselves: they are not rendered, every request of such an
+ *   endpoint shares one fingerprint and the slow log only shows the number of items (bulk operations / searches).
+ * - the stats are keyed on the 64 bit fingerprint hash; the normalized body kept for /slow-queries/top is cut at
+ *   orders.slow-query.max-dsl-chars like the logged DSL.
+ * - per fingerprint: rolling latency percentiles in lock-free LatencyHistograms (current + previous window,
+ *   rotated every orders.slow-query.window-ms).
+ * - requests slower than orders.slow-query.threshold-ms are logged (logger "slowquery") with the rendered DSL
+ *   including the literals, ES "took", shard statistics, response size and the X-Opaque-Id of the HTTP request.
+ * - the response size is the Content-Length of the HTTP response (-1 when ES sent it chunked), recorded by a
+ *   response interceptor of the RestClient (recordResponseBytes) under the X-Slow-Query-Call header that
+ *   QueryObservingTransport adds to every request - the typed response is never serialized again to measure it.
+ *
+ * 🔑 Remember: latency is measured around the HTTP call (queueing for a pooled connection included), "took" is
+ * what ES spent - a big gap between the two points at the client side, not at the query.
+ */
+@Service
+public class SlowQueryLog {
+
+    private static final Logger logger = LogManager.getLogger(SlowQueryLog.class);
+    private static final Logger slowQueryLogger = LogManager.getLogger("slowquery");
+
+    // Per-call id sent with every observed request, so the HTTP response size can be matched to it ....
+    public static final String CALL_ID_HEADER = "X-Slow-Query-Call";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String OTHER = "other";
+
+    @Value("${orders.slow-query.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orders.slow-query.threshold-ms:500}")
+    private long thresholdMs;
+
+    @Value("${orders.slow-query.max-fingerprints:1000}")
+    private int maxFingerprints;
+
+    @Value("${orders.slow-query.max-dsl-chars:10000}")
+    private int maxDslChars;
+
+    private final Map<String, FingerprintStats> stats = new ConcurrentHashMap<>();
+
+    // Call id -> Content-Length of its response, from the response interceptor until record() takes it ....
+    private final Map<String, Long> responseBytes = new ConcurrentHashMap<>();
+
+    private static final class FingerprintStats {
+        final String fingerprint;
+        final String client;
+        final String request;
+        final String normalizedBody;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong slowCount = new AtomicLong();
+        final AtomicLong maxMicros = new AtomicLong();
+        volatile long lastTookMillis = -1;
+        volatile LatencyHistogram current = new LatencyHistogram();
+        volatile LatencyHistogram previous = new LatencyHistogram();
+
+        FingerprintStats(String fingerprint, String client, String request, String normalizedBody) {
+            this.fingerprint = fingerprint;
+            this.client = client;
+            this.request = request;
+            this.normalizedBody = normalizedBody;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * ✅ Called by the RestClient response interceptor (ElasticsearchTransports) with the Content-Length of a response.
+     */
+    public void recordResponseBytes(String callId, long bytes) {
+        responseBytes.put(callId, bytes);
+    }
+
+    public <RequestT> void record(String client, Endpoint<RequestT, ?, ?> endpoint, RequestT request, TransportOptions options,
+                                  JsonpMapper mapper, long elapsedNanos, Object response, Throwable error) {
+        String callId = header(options, CALL_ID_HEADER);
+        Long bytes = callId == null ? null : responseBytes.remove(callId);
+        try {
+            String index = endpoint.pathParameters(request).getOrDefault("index", "");
+            String label = (endpoint.id() + " " + index).trim();
+            Object requestBody = endpoint.body(request);
+            String normalized = requestBody instanceof JsonpSerializable serializable && !(requestBody instanceof NdJsonpSerializable)
+                    ? normalize(serializable, mapper)
+                    : "";
+            String key = fingerprint(client + "|" + label + "|" + normalized);
+
+            FingerprintStats fingerprintStats = stats.get(key);
+            if (fingerprintStats == null) {
+                if (stats.size() >= maxFingerprints) {
+                    key = fingerprint(client + "|" + OTHER);
+                    fingerprintStats = stats.computeIfAbsent(key, k -> new FingerprintStats(k, client, OTHER, ""));
+                } else {
+                    String retained = cap(normalized);
+                    fingerprintStats = stats.computeIfAbsent(key, k -> new FingerprintStats(k, client, label, retained));
+                }
+            }
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+            fingerprintStats.current.record(micros);
+            fingerprintStats.count.incrementAndGet();
+            fingerprintStats.maxMicros.accumulateAndGet(micros, Math::max);
+            long took = took(response);
+            if (took >= 0) {
+                fingerprintStats.lastTookMillis = took;
+            }
+
+            long elapsedMillis = micros / 1000;
+            if (elapsedMillis >= thresholdMs) {
+                fingerprintStats.slowCount.incrementAndGet();
+                logSlowQuery(fingerprintStats, client, label, requestBody, elapsedMillis, took, response, error, options, mapper,
+                        bytes == null ? -1 : bytes);
+            }
+        } catch (RuntimeException e) {
+            // Never fail a request because of the slow-query log ....
+            logger.debug("Could not record query latency: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Slowest fingerprints by p99 (or "p95", "max", "count") over the current + previous window.
+     */
+    public List<SlowQueryStats> top(int size, String orderBy) {
+        Comparator<SlowQueryStats> comparator = switch (orderBy) {
+            case "p95" -> Comparator.comparingDouble(SlowQueryStats::p95Millis);
+            case "max" -> Comparator.comparingDouble(SlowQueryStats::maxMillis);
+            case "count" -> Comparator.comparingLong(SlowQueryStats::count);
+            default -> Comparator.comparingDouble(SlowQueryStats::p99Millis);
+        };
+        return stats.values().stream()
+                .map(SlowQueryLog::toStats)
+                .sorted(comparator.reversed())
+                .limit(size)
+                .toList();
+    }
+
+    /**
+     * ✅ Rolls the windows: percentiles cover between one and two windows of recent requests.
+     */
+    @Scheduled(fixedDelayString = "${orders.slow-query.window-ms:60000}")
+    public void rotate() {
+        for (FingerprintStats fingerprintStats : stats.values()) {
+            fingerprintStats.previous = fingerprintStats.current;
+            fingerprintStats.current = new LatencyHistogram();
+        }
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private void logSlowQuery(FingerprintStats fingerprintStats, String client, String label, Object requestBody, long elapsedMillis,
+                              long took, Object response, Throwable error, TransportOptions options, JsonpMapper mapper,
+                              long responseBytes) {
+        String shards = response instanceof ResponseBody<?> searchResponse ? shards(searchResponse.shards()) : "-";
+        String dsl;
+        if (requestBody instanceof NdJsonpSerializable ndJson) {
+            dsl = "<ndjson, " + items(ndJson) + " items>";
+        } else if (requestBody instanceof JsonpSerializable serializable) {
+            dsl = cap(JsonpUtils.toJsonString(serializable, mapper));
+        } else {
+            dsl = "-";
+        }
+        String opaqueId = header(options, "X-Opaque-Id");
+
+        slowQueryLogger.warn("Slow query {} [{}] {}: {} ms (took {} ms), shards {}, response {} bytes, opaque-id {}{} - {}",
+                fingerprintStats.fingerprint, client, label, elapsedMillis, took, shards, responseBytes,
+                opaqueId == null ? "-" : opaqueId, error == null ? "" : ", failed: " + error.getMessage(), dsl);
+    }
+
+    private String cap(String text) {
+        return text.length() > maxDslChars ? text.substring(0, maxDslChars) + "..." : text;
+    }
+
+    private static int items(NdJsonpSerializable ndJson) {
+        int items = 0;
+        for (Iterator<?> it = ndJson._serializables(); it.hasNext(); it.next()) {
+            items++;
+        }
+        return items;
+    }
+
+    private static SlowQueryStats toStats(FingerprintStats fingerprintStats) {
+        long[] counts = LatencyHistogram.emptyCounts();
+        fingerprintStats.previous.addTo(counts);
+        fingerprintStats.current.addTo(counts);
+        return new SlowQueryStats(fingerprintStats.fingerprint, fingerprintStats.client, fingerprintStats.request,
+                fingerprintStats.normalizedBody, fingerprintStats.count.get(), fingerprintStats.slowCount.get(),
+                LatencyHistogram.quantile(counts, 0.50) / 1000.0,
+                LatencyHistogram.quantile(counts, 0.95) / 1000.0,
+                LatencyHistogram.quantile(counts, 0.99) / 1000.0,
+                fingerprintStats.maxMicros.get() / 1000.0,
+                fingerprintStats.lastTookMillis);
+    }
+
+    /**
+     * ✅ Request body with every literal replaced by "?". Arrays of literals collapse to a single "?"
+     * (terms lookups with 2 or 20 values are the same query shape). Values of "field" / "fields" / "path" are kept:
+     * they name what is queried, so aggregating on customer and on status stay two fingerprints.
+     */
+    static String normalize(String json) {
+        StringWriter out = new StringWriter(json.length());
+        try (JsonParser parser = JSON.createParser(json);
+             JsonGenerator generator = new NormalizingJsonGenerator(JSON.createGenerator(out))) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        } catch (IOException e) {
+            return json;
+        }
+        return out.toString();
+    }
+
+    // Same as normalize(String), serializing the body straight into the normalizing generator ....
+    static String normalize(JsonpSerializable body, JsonpMapper mapper) {
+        if (!(mapper instanceof JacksonJsonpMapper jacksonMapper)) {
+            return normalize(JsonpUtils.toJsonString(body, mapper));
+        }
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = new NormalizingJsonGenerator(jacksonMapper.objectMapper().getFactory().createGenerator(out))) {
+            body.serialize(new JacksonJsonpGenerator(generator), mapper);
+        } catch (IOException e) {
+            return normalize(JsonpUtils.toJsonString(body, mapper));
+        }
+        return out.toString();
+    }
+
+    private static String fingerprint(String key) {
+        // FNV-1a 64 bit - stable across restarts, unlike String.hashCode() collisions on 32 bits ....
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+
+    private static long took(Object response) {
+        if (response instanceof ResponseBody<?> searchResponse) {
+            return searchResponse.took();
+        }
+        if (response instanceof BulkResponse bulkResponse) {
+            return bulkResponse.took();
+        }
+        return -1;
+    }
+
+    private static String shards(ShardStatistics shards) {
+        return shards.successful() + "/" + shards.total() + " ok, " + shards.skipped() + " skipped, " + shards.failed() + " failed";
+    }
+
+    private static String header(TransportOptions options, String name) {
+        if (options == null) {
+            return null;
+        }
+        return options.headers().stream()
+                .filter(header -> name.equalsIgnoreCase(header.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+}
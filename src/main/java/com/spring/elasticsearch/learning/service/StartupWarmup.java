@@ -0,0 +1,166 @@
+package com.spring.elasticsearch.learning.service;
+
+import com.spring.elasticsearch.learning.models.WarmupReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Warms the app and the Elasticsearch caches after a deploy, before the app reports ready.
+ *
+ * Spring Boot only switches the readiness state to ACCEPTING_TRAFFIC after every ApplicationRunner returned,
+ * so traffic routed on readiness (GET /orders/warmup/status, or /actuator/health/readiness with actuator) only
+ * arrives once this runner is done. It runs, on orders.warmup.concurrency parallel workers:
+ *
+ * - the dashboard aggregations listed in orders.warmup.aggregations (fills the shard request cache,
+ *   field data / global ordinals and the JIT-compiled decoding paths).
+ * - fetch-by-customer + daily sales of the top-K customers of the previous run (HotCustomerTracker),
+ *   which also fills OrderSearchResultCache.
+ * - the HotOrderStore warm-up scan.
+ *
+ * 🔑 Remember: a slow or failing warm-up must not keep the app out of rotation - tasks still running after
+ * orders.warmup.timeout-ms are cancelled, failures are only logged, and the report lists both.
+ */
+@Component
+@Order(10)
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LogManager.getLogger(StartupWarmup.class);
+
+    @Autowired
+    private OrderPaginationAggregations orderPaginationAggregations;
+
+    @Autowired
+    private OrdersPaginationService ordersPaginationService;
+
+    @Autowired
+    private HotCustomerTracker hotCustomerTracker;
+
+    @Autowired
+    private HotOrderStore hotOrderStore;
+
+    @Value("${orders.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orders.warmup.aggregations:total-revenue,orders-by-status,revenue-per-customer,paid-revenue-stats,top-customers,customer-order-stats-last-30-days,category-stats-last-30-days}")
+    private List<String> aggregations;
+
+    @Value("${orders.warmup.hot-customers.top-k:20}")
+    private int hotCustomersTopK;
+
+    @Value("${orders.warmup.concurrency:4}")
+    private int concurrency;
+
+    @Value("${orders.warmup.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private volatile WarmupReport report = new WarmupReport("PENDING", null, 0, 0, 0, List.of(), List.of(), List.of());
+
+    public WarmupReport getReport() {
+        return report;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        tasks.put("hot-order-store", hotOrderStore::warmUp);
+        List<String> hotCustomers = List.of();
+        if (enabled) {
+            for (String name : aggregations) {
+                Runnable aggregation = aggregationTask(name.trim());
+                if (aggregation == null) {
+                    logger.warn("Unknown warm-up aggregation '{}' ignored", name);
+                } else {
+                    tasks.put("aggregation:" + name.trim(), aggregation);
+                }
+            }
+            hotCustomers = hotCustomerTracker.topCustomers(hotCustomersTopK);
+            for (String customer : hotCustomers) {
+                tasks.put("customer:" + customer, () -> {
+                    ordersPaginationService.getOrdersByCustomerUsingTermQuery(customer);
+                    orderPaginationAggregations.getDailySalesForCustomerAggregate(customer);
+                });
+            }
+        }
+        report = new WarmupReport("RUNNING", startedAt, 0, tasks.size(), 0, List.of(), List.of(), hotCustomers);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        List<String> notFinished = new ArrayList<>();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "warmup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        tasks.forEach((name, task) -> futures.put(name, workers.submit(() -> {
+            try {
+                task.run();
+                succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.add(name);
+                logger.warn("Warm-up task {} failed: {}", name, e.getMessage());
+            }
+        })));
+
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                futures.forEach((name, future) -> {
+                    if (!future.isDone()) {
+                        notFinished.add(name);
+                    }
+                });
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        report = new WarmupReport("DONE", startedAt, durationMillis, tasks.size(), succeeded.get(),
+                List.copyOf(failed), List.copyOf(notFinished), hotCustomers);
+        logger.info("Warm-up finished in {} ms: {} of {} tasks succeeded, {} failed, {} not finished",
+                durationMillis, succeeded.get(), tasks.size(), failed.size(), notFinished.size());
+    }
+
+    private Runnable aggregationTask(String name) {
+        return switch (name) {
+            case "total-orders-count" -> orderPaginationAggregations::getTotalOrdersCount;
+            case "total-revenue" -> orderPaginationAggregations::getTotalRevenueFromOrders;
+            case "total-average" -> orderPaginationAggregations::getTotalAverageFromOrders;
+            case "min-max" -> orderPaginationAggregations::getMinAndMaxAmountFromOrders;
+            case "orders-by-status" -> orderPaginationAggregations::getOrdersGroupedByStatus;
+            case "revenue-per-customer" -> orderPaginationAggregations::getRevenuePerCustomer;
+            case "paid-revenue" -> orderPaginationAggregations::getTotalRevenueFromPaidOrders;
+            case "paid-revenue-stats" -> orderPaginationAggregations::getPaidRevenueStats;
+            case "top-customers" -> orderPaginationAggregations::getTopCustomersByRevenue;
+            case "customer-order-stats-last-30-days" -> orderPaginationAggregations::getCustomerOrderStatsLast30DaysAggregate;
+            case "category-stats-last-30-days" -> orderPaginationAggregations::getCategoryStatsLast30Days;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.spring.elasticsearch.learning.configuration;
+
+import com.spring.elasticsearch.learning.service.DashboardSessionPreference;
+import com.spring.elasticsearch.learning.service.QueryProfiling;
+import com.spring.elasticsearch.learning.service.RequestDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestContextTaskDecoratorTest {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        executor.shutdown();
+    }
+
+    @Test
+    void queuedTaskSeesRequestValuesAfterTheDispatchThreadHasLeft() throws Exception {
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        executor.initialize();
+
+        // Occupy the only bulkhead thread, so the next task has to wait in the queue ....
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DashboardSessionPreference.SESSION_HEADER, "s-1");
+        RequestDeadline deadline = new RequestDeadline(5000, "opaque-1");
+        request.setAttribute(RequestDeadline.ATTRIBUTE, deadline);
+        QueryProfiling profiling = new QueryProfiling();
+        request.setAttribute(QueryProfiling.ATTRIBUTE, profiling);
+        ServletRequestAttributes attributes = new ServletRequestAttributes(request);
+        RequestContextHolder.setRequestAttributes(attributes);
+
+        CompletableFuture<Object[]> seen = new CompletableFuture<>();
+        executor.execute(() -> seen.complete(new Object[]{RequestDeadline.current(), DashboardSessionPreference.current(),
+                QueryProfiling.current()}));
+
+        // What FrameworkServlet does once the handler returned the CompletableFuture ....
+        attributes.requestCompleted();
+        RequestContextHolder.resetRequestAttributes();
+        release.countDown();
+
+        Object[] values = seen.get(5, TimeUnit.SECONDS);
+        assertThat(values[0]).isSameAs(deadline);
+        assertThat(values[1]).isEqualTo("dashboard-s-1");
+        assertThat(values[2]).isSameAs(profiling);
+    }
+
+    @Test
+    void taskSubmittedWithoutRequestRunsWithoutContext() throws Exception {
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        executor.initialize();
+
+        CompletableFuture<RequestDeadline> seen = new CompletableFuture<>();
+        executor.execute(() -> seen.complete(RequestDeadline.current()));
+
+        assertThat(seen.get(5, TimeUnit.SECONDS)).isNull();
+    }
+}
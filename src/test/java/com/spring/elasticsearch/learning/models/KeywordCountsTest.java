@@ -0,0 +1,43 @@
+package com.spring.elasticsearch.learning.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordCountsTest {
+
+    @Test
+    void valuesBeyondAFullDictionaryAreStillCounted() throws Exception {
+        KeywordDictionary statuses = new KeywordDictionary("status", 2);
+        KeywordCounts counts = new KeywordCounts(statuses, 4);
+        counts.add("PAID", 12);
+        counts.add("PENDING", 3);
+        counts.add("REFUNDED", 2); // dictionary full ....
+        counts.add("REFUNDED", 1);
+
+        assertThat(statuses.codeOf("REFUNDED")).isEqualTo(KeywordDictionary.NOT_ENCODED);
+        assertThat(counts.get("REFUNDED")).isEqualTo(3);
+        assertThat(counts.size()).isEqualTo(3);
+        assertThat(counts.toMap()).containsExactly(Map.entry("PAID", 12L), Map.entry("PENDING", 3L), Map.entry("REFUNDED", 3L));
+        assertThat(new ObjectMapper().writeValueAsString(counts)).isEqualTo("{\"PAID\":12,\"PENDING\":3,\"REFUNDED\":3}");
+    }
+
+    @Test
+    void mergeKeepsEncodedAndOverflowCounts() {
+        KeywordDictionary statuses = new KeywordDictionary("status", 1);
+        KeywordCounts first = new KeywordCounts(statuses, 4);
+        first.add("PAID", 1);
+        first.add("PENDING", 2);
+        KeywordCounts second = new KeywordCounts(statuses, 4);
+        second.add("PAID", 10);
+        second.add("PENDING", 20);
+        second.add("CANCELLED", 5);
+
+        KeywordCounts merged = first.merge(second);
+
+        assertThat(merged.toMap()).containsExactly(Map.entry("PAID", 11L), Map.entry("PENDING", 22L), Map.entry("CANCELLED", 5L));
+    }
+}
@@ -0,0 +1,108 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.spring.elasticsearch.learning.models.ColumnarBuckets;
+import com.spring.elasticsearch.learning.models.CustomerOrderStats;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AggregationDecoderTest {
+
+    private static final int BUCKETS = 1000;
+
+    // Keeps the decoded results reachable, so the JIT can't drop the allocations being measured ....
+    private Object sink;
+
+    @Test
+    void decodesTermsBucketsIntoColumns() {
+        ColumnarBuckets columns = AggregationDecoder.decodeBuckets(cannedOrdersByCustomer(3), "avg_order_value", "max_order_value");
+
+        assertThat(columns.getKeys()).containsExactly("customer-0", "customer-1", "customer-2");
+        assertThat(columns.getDocCounts()).containsExactly(100, 101, 102);
+        assertThat(columns.getMetrics().get("avg_order_value")).containsExactly(10.5, 11.5, 12.5);
+        assertThat(columns.getMetrics().get("max_order_value")).containsExactly(20.0, 21.0, 22.0);
+    }
+
+    @Test
+    void missingAggregateDecodesToNoBuckets() {
+        assertThat(AggregationDecoder.decodeBuckets(null, "avg_order_value").getKeys()).isEmpty();
+    }
+
+    /**
+     * Allocation check over a canned 1000-bucket response: the columnar decode allocates its arrays only, the Map of
+     * CustomerOrderStats (what the non-columnar endpoint builds) an entry + a DTO per bucket on top.
+     */
+    @Test
+    void columnarDecodingAllocatesLessThanOneDtoPerBucket() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Aggregate aggregate = cannedOrdersByCustomer(BUCKETS);
+        long columnar = allocatedPerCall(threads,
+                () -> AggregationDecoder.decodeBuckets(aggregate, "avg_order_value", "max_order_value"));
+        long perBucketDtos = allocatedPerCall(threads, () -> toCustomerOrderStats(aggregate));
+
+        assertThat(columnar).isLessThan(perBucketDtos / 2);
+    }
+
+    private long allocatedPerCall(com.sun.management.ThreadMXBean threads, Supplier<Object> decode) {
+        for (int i = 0; i < 2_000; i++) {
+            sink = decode.get(); // warm-up ....
+        }
+        long threadId = Thread.currentThread().getId();
+        int calls = 200;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            sink = decode.get();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / calls;
+    }
+
+    // Same walk as OrderPaginationAggregations.getCustomerOrderStatsLast30Days() ....
+    private static Map<String, CustomerOrderStats> toCustomerOrderStats(Aggregate aggregate) {
+        Map<String, CustomerOrderStats> result = new LinkedHashMap<>();
+        for (StringTermsBucket bucket : aggregate.sterms().buckets().array()) {
+            result.put(bucket.key().stringValue(), new CustomerOrderStats(bucket.docCount(),
+                    bucket.aggregations().get("avg_order_value").avg().value(),
+                    bucket.aggregations().get("max_order_value").max().value()));
+        }
+        return result;
+    }
+
+    // A search response as ES sends it with typed_keys (what the Java client asks for) ....
+    private static Aggregate cannedOrdersByCustomer(int buckets) {
+        StringBuilder json = new StringBuilder("{\"took\":12,\"timed_out\":false,"
+                + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+                + "\"hits\":{\"total\":{\"value\":0,\"relation\":\"eq\"},\"max_score\":null,\"hits\":[]},"
+                + "\"aggregations\":{\"sterms#orders_by_customer\":{\"doc_count_error_upper_bound\":0,"
+                + "\"sum_other_doc_count\":0,\"buckets\":[");
+        for (int i = 0; i < buckets; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":\"customer-").append(i).append("\",\"doc_count\":").append(100 + i)
+                    .append(",\"avg#avg_order_value\":{\"value\":").append(10.5 + i)
+                    .append("},\"max#max_order_value\":{\"value\":").append(20.0 + i).append("}}");
+        }
+        json.append("]}}}");
+
+        JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+        JsonpDeserializer<SearchResponse<Void>> deserializer =
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Void.class));
+        SearchResponse<Void> response = deserializer.deserialize(
+                mapper.jsonProvider().createParser(new StringReader(json.toString())), mapper);
+        return response.aggregations().get("orders_by_customer");
+    }
+}
@@ -0,0 +1,67 @@
+package com.spring.elasticsearch.learning.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 8; value++) {
+            assertThat(LatencyHistogram.index(value)).isEqualTo(value);
+            assertThat(LatencyHistogram.upperBound(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void eachPowerOfTwoIsSplitInFourSubBuckets() {
+        // [8, 16) -> 4 buckets of 2 µs ....
+        assertThat(LatencyHistogram.index(8)).isEqualTo(8);
+        assertThat(LatencyHistogram.index(9)).isEqualTo(8);
+        assertThat(LatencyHistogram.index(10)).isEqualTo(9);
+        assertThat(LatencyHistogram.index(15)).isEqualTo(11);
+        assertThat(LatencyHistogram.index(16)).isEqualTo(12);
+        assertThat(LatencyHistogram.upperBound(8)).isEqualTo(9);
+        assertThat(LatencyHistogram.upperBound(11)).isEqualTo(15);
+    }
+
+    @Test
+    void upperBoundHoldsTheValueWithinTwentyFivePercent() {
+        int previousIndex = -1;
+        for (long value = 0; value < 1_000_000; value += value < 1000 ? 1 : 997) {
+            int index = LatencyHistogram.index(value);
+            long upper = LatencyHistogram.upperBound(index);
+            assertThat(index).isGreaterThanOrEqualTo(previousIndex);
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat(upper - value).isLessThanOrEqualTo(value / 4);
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBound(index - 1)).isLessThan(value);
+            }
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    void largestValueFitsTheLastBucket() {
+        int last = LatencyHistogram.emptyCounts().length - 1;
+        assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isEqualTo(last);
+        assertThat(LatencyHistogram.upperBound(last)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void quantileReturnsTheUpperBoundOfTheBucketHoldingTheRank() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(10_000);
+        long[] counts = LatencyHistogram.emptyCounts();
+        histogram.addTo(counts);
+
+        assertThat(LatencyHistogram.quantile(counts, 0.50)).isEqualTo(LatencyHistogram.upperBound(LatencyHistogram.index(100)));
+        assertThat(LatencyHistogram.quantile(counts, 0.99)).isEqualTo(LatencyHistogram.upperBound(LatencyHistogram.index(100)));
+        assertThat(LatencyHistogram.quantile(counts, 1.0)).isEqualTo(LatencyHistogram.upperBound(LatencyHistogram.index(10_000)));
+        assertThat(LatencyHistogram.quantile(LatencyHistogram.emptyCounts(), 0.99)).isZero();
+    }
+}
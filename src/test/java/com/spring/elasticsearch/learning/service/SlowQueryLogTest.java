@@ -0,0 +1,78 @@
+package com.spring.elasticsearch.learning.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    @Test
+    void literalsAreReplaced() {
+        assertThat(SlowQueryLog.normalize("{\"query\":{\"term\":{\"customer\":{\"value\":\"Alice\"}}},\"size\":10}"))
+                .isEqualTo("{\"query\":{\"term\":{\"customer\":{\"value\":\"?\"}}},\"size\":\"?\"}");
+    }
+
+    @Test
+    void sameShapeWithOtherValuesGivesTheSameFingerprint() {
+        assertThat(SlowQueryLog.normalize("{\"query\":{\"range\":{\"total_amount\":{\"gte\":10,\"lt\":20.5}}}}"))
+                .isEqualTo(SlowQueryLog.normalize("{\"query\":{\"range\":{\"total_amount\":{\"gte\":7,\"lt\":99}}}}"));
+    }
+
+    @Test
+    void literalArraysCollapseToOneValue() {
+        assertThat(SlowQueryLog.normalize("{\"terms\":{\"customer\":[\"A\",\"B\",\"C\"]}}"))
+                .isEqualTo("{\"terms\":{\"customer\":[\"?\"]}}");
+        assertThat(SlowQueryLog.normalize("{\"terms\":{\"customer\":[\"A\"]}}"))
+                .isEqualTo(SlowQueryLog.normalize("{\"terms\":{\"customer\":[\"A\",\"B\",\"C\",\"D\"]}}"));
+    }
+
+    @Test
+    void objectsInArraysKeepTheirShape() {
+        assertThat(SlowQueryLog.normalize("{\"must\":[{\"term\":{\"status\":\"PAID\"}},\"x\",\"y\",{\"exists\":{\"field\":\"customer\"}}]}"))
+                .isEqualTo("{\"must\":[{\"term\":{\"status\":\"?\"}},\"?\",{\"exists\":{\"field\":\"customer\"}}]}");
+    }
+
+    @Test
+    void objectsInArraysKeepEveryValue() {
+        assertThat(SlowQueryLog.normalize("{\"sort\":[{\"total_amount\":\"desc\",\"order_date\":\"asc\"}]}"))
+                .isEqualTo("{\"sort\":[{\"total_amount\":\"?\",\"order_date\":\"?\"}]}");
+    }
+
+    @Test
+    void structuralFieldNamesAreKept() {
+        assertThat(SlowQueryLog.normalize("{\"aggs\":{\"a\":{\"terms\":{\"field\":\"customer\",\"size\":5}}}}"))
+                .isEqualTo("{\"aggs\":{\"a\":{\"terms\":{\"field\":\"customer\",\"size\":\"?\"}}}}");
+        assertThat(SlowQueryLog.normalize("{\"multi_match\":{\"query\":\"shoes\",\"fields\":[\"category\",\"customer\"]}}"))
+                .isEqualTo("{\"multi_match\":{\"query\":\"?\",\"fields\":[\"category\",\"customer\"]}}");
+        assertThat(SlowQueryLog.normalize("{\"aggs\":{\"a\":{\"terms\":{\"field\":\"status\"}}}}"))
+                .isNotEqualTo(SlowQueryLog.normalize("{\"aggs\":{\"a\":{\"terms\":{\"field\":\"customer\"}}}}"));
+    }
+
+    @Test
+    void serializedRequestIsNormalizedLikeItsRenderedDsl() {
+        JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+        SearchRequest request = SearchRequest.of(s -> s
+                .index("orders_pagination")
+                .query(q -> q.bool(b -> b
+                        .filter(f -> f.terms(t -> t.field("customer").terms(v -> v.value(List.of(FieldValue.of("A"), FieldValue.of("B"))))))
+                        .filter(f -> f.range(r -> r.field("order_date").gte(JsonData.of("2024-12-01"))))))
+                .aggregations("by_status", a -> a.terms(t -> t.field("status").size(5)))
+                .size(10));
+
+        assertThat(SlowQueryLog.normalize(request, mapper))
+                .isEqualTo(SlowQueryLog.normalize(JsonpUtils.toJsonString(request, mapper)))
+                .contains("\"customer\":[\"?\"]", "\"gte\":\"?\"", "\"field\":\"status\"");
+    }
+
+    @Test
+    void invalidJsonIsReturnedAsIs() {
+        assertThat(SlowQueryLog.normalize("{\"query\":")).isEqualTo("{\"query\":");
+    }
+}